@@ -0,0 +1,28 @@
+package com.wilson.cmpe272.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Whether this node is configured to run next to others. A node counts as clustered as soon as any of its
+ * stores is shared: {@code jwt.blacklist.store=jdbc}, {@code verification.lockout.store=jdbc} or
+ * {@code totp.replay-guard.mode=cluster}. Per-node caches of user state use this to pick safe defaults, since
+ * a change made on another node never reaches them.
+ */
+@Component
+public class ClusterSettings {
+
+    @Value("${jwt.blacklist.store:memory}")
+    private String blacklistStore;
+
+    @Value("${verification.lockout.store:memory}")
+    private String lockoutStore;
+
+    @Value("${totp.replay-guard.mode:local}")
+    private String replayGuardMode;
+
+    public boolean isClustered() {
+        return "jdbc".equalsIgnoreCase(blacklistStore) || "jdbc".equalsIgnoreCase(lockoutStore)
+            || "cluster".equalsIgnoreCase(replayGuardMode);
+    }
+}
@@ -0,0 +1,97 @@
+package com.wilson.cmpe272.config;
+
+import com.wilson.cmpe272.entity.User;
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Hibernate second-level and natural-id caches for {@link User}, held in a local (per node) Ehcache
+ * through JCache.
+ * <p>
+ * The entity and natural-id regions hold up to {@code hibernate-cache.max-entries} users each and expire
+ * entries {@code hibernate-cache.ttl-seconds} after they were written, which bounds how long a change made
+ * by another node can go unseen. Writes always start from the locked row, so staleness only affects reads,
+ * but those include a user's status on another node. Unless {@code hibernate-cache.enabled} is set, the cache
+ * is therefore off on a node configured for a cluster (see {@link ClusterSettings}).
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(HibernateCacheConfig.class);
+
+    // Empty when not set, so the default can follow the cluster settings below
+    @Value("${hibernate-cache.enabled:}")
+    private String enabledSetting;
+
+    @Autowired
+    private ClusterSettings clusterSettings;
+
+    @Value("${hibernate-cache.max-entries:10000}")
+    private long maxEntries;
+
+    @Value("${hibernate-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${hibernate-cache.statistics:true}")
+    private boolean statistics;
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheCustomizer() {
+        boolean enabled = enabledSetting.isBlank() ? !clusterSettings.isClustered() : Boolean.parseBoolean(enabledSetting.trim());
+        return properties -> {
+            properties.put(AvailableSettings.GENERATE_STATISTICS, statistics);
+            // Statistics alone would also log a metrics summary for every session at INFO
+            properties.put(AvailableSettings.LOG_SESSION_METRICS, false);
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, enabled);
+            if (!enabled) {
+                if (enabledSetting.isBlank()) {
+                    logger.info("Hibernate second-level cache disabled by default on a clustered node; "
+                        + "set hibernate-cache.enabled=true to accept up to {}s of cross-node staleness", ttlSeconds);
+                } else {
+                    logger.info("Hibernate second-level cache disabled");
+                }
+                return;
+            }
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            // Hibernate closes the manager when the session factory shuts down
+            properties.put(ConfigSettings.CACHE_MANAGER, createCacheManager());
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            logger.info("Hibernate second-level cache enabled (up to {} users, {}s lifetime)", maxEntries, ttlSeconds);
+        };
+    }
+
+    private CacheManager createCacheManager() {
+        CacheConfiguration<Object, Object> bounded = CacheConfigurationBuilder
+            .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(maxEntries))
+            .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ttlSeconds)))
+            .build();
+
+        ConfigurationBuilder configuration = ConfigurationBuilder.newConfigurationBuilder()
+            .withClassLoader(getClass().getClassLoader())
+            .withCache(User.CACHE_REGION, bounded)
+            .withCache(User.NATURAL_ID_CACHE_REGION, bounded);
+
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        // A URI of its own so several application contexts in one JVM (tests) do not share regions
+        return provider.getCacheManager(URI.create("urn:cmpe272:hibernate-cache:" + UUID.randomUUID()), configuration.build());
+    }
+}
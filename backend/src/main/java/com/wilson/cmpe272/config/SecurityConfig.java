@@ -1,7 +1,12 @@
 package com.wilson.cmpe272.config;
 
+import com.wilson.cmpe272.service.AdminTokenFilter;
+import com.wilson.cmpe272.service.BoundedPasswordEncoder;
 import com.wilson.cmpe272.service.JwtAuthenticationFilter;
+import com.wilson.cmpe272.service.PasswordHashingPolicy;
+import com.wilson.cmpe272.service.RateLimitFilter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -11,9 +16,8 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
@@ -28,12 +32,35 @@ public class SecurityConfig {
     @Autowired
     private UserDetailsService userDetailsService;
     
+    @Autowired
+    private UserDetailsPasswordService userDetailsPasswordService;
+    
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
     
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    @Autowired
+    private PasswordHashingPolicy passwordHashingPolicy;
+    
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+    
+    @Autowired
+    private AdminTokenFilter adminTokenFilter;
+    
+    @Value("${password-hashing.threads:0}")
+    private int passwordHashingThreads;
+    
+    @Value("${password-hashing.queue-capacity:64}")
+    private int passwordHashingQueueCapacity;
+    
+    @Value("${password-hashing.queue-timeout-ms:2000}")
+    private long passwordHashingQueueTimeoutMillis;
+    
+    // BCrypt runs on its own bounded pool so a login burst cannot occupy every request thread
+    @Bean(destroyMethod = "shutdown")
+    public BoundedPasswordEncoder passwordEncoder() {
+        return new BoundedPasswordEncoder(passwordHashingPolicy.createEncoder(), passwordHashingThreads,
+            passwordHashingQueueCapacity, passwordHashingQueueTimeoutMillis);
     }
     
     @Bean
@@ -41,6 +68,8 @@ public class SecurityConfig {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
         authProvider.setPasswordEncoder(passwordEncoder());
+        // Re-hashes outdated passwords after a successful login
+        authProvider.setUserDetailsPasswordService(userDetailsPasswordService);
         return authProvider;
     }
     
@@ -59,10 +88,14 @@ public class SecurityConfig {
                                "/api/auth/resend-code", "/actuator/health", "/h2-console/**").permitAll()
                 .requestMatchers("/api/auth/change-password", "/api/auth/change-2fa", 
                                "/api/auth/authenticator-qr", "/api/auth/logout", "/api/auth/profile").authenticated()
+                .requestMatchers("/api/admin/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
             )
             .authenticationProvider(authenticationProvider())
-            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+            .addFilterBefore(adminTokenFilter, JwtAuthenticationFilter.class)
+            // Runs before anything reads the body, loads a user or checks a password
+            .addFilterBefore(rateLimitFilter, JwtAuthenticationFilter.class);
         
         // For H2 Console - only enable in dev profile
         String activeProfile = System.getenv("SPRING_PROFILES_ACTIVE");
@@ -0,0 +1,136 @@
+package com.wilson.cmpe272.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wilson.cmpe272.dto.UserSearchResponse;
+import com.wilson.cmpe272.service.BulkUserImporter;
+import com.wilson.cmpe272.service.UserExporter;
+import com.wilson.cmpe272.service.UserImportReader;
+import com.wilson.cmpe272.service.UserSearchService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Operator endpoints, authenticated by the {@code X-Admin-Token} header (see {@code admin.api-token}).
+ */
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
+
+    public static final String EXPORT_WATERMARK_HEADER = "X-Export-Watermark";
+
+    @Autowired
+    private BulkUserImporter bulkUserImporter;
+
+    @Autowired
+    private UserExporter userExporter;
+
+    @Autowired
+    private UserSearchService userSearchService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Finds users by any combination of email prefix, status, 2FA method, verification state and creation date
+     * range ({@code createdFrom} inclusive, {@code createdTo} exclusive). Pass the response's {@code nextCursor}
+     * as {@code cursor} to fetch the next page.
+     */
+    @GetMapping("/users")
+    public ResponseEntity<?> searchUsers(
+            @RequestParam(required = false) String emailPrefix,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String twoFactorMethod,
+            @RequestParam(required = false) String emailVerified,
+            @RequestParam(required = false) String createdFrom,
+            @RequestParam(required = false) String createdTo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            UserSearchService.Criteria criteria = UserSearchService.Criteria.parse(
+                emailPrefix, status, twoFactorMethod, emailVerified, createdFrom, createdTo);
+            UserSearchResponse page = userSearchService.search(criteria, cursor, limit);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    /**
+     * Streams NDJSON or CSV users from the request body into the users table. The format comes from the
+     * {@code format} parameter, or else from the Content-Type ({@code application/x-ndjson} or {@code text/csv}).
+     */
+    @PostMapping("/users/import")
+    public ResponseEntity<Map<String, Object>> importUsers(
+            InputStream body,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+            @RequestParam(required = false) String format,
+            @RequestParam(defaultValue = "false") boolean sendVerificationEmails) {
+        UserImportReader.Format importFormat;
+        try {
+            String requested = format != null ? format : contentType == null ? "" : contentType.split(";")[0];
+            importFormat = UserImportReader.Format.parse(requested);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Set format=ndjson or format=csv"));
+        }
+        logger.info("Bulk user import requested ({}, verification emails: {})", importFormat, sendVerificationEmails);
+        try {
+            return ResponseEntity.ok(bulkUserImporter.importUsers(body, importFormat, sendVerificationEmails));
+        } catch (IllegalStateException e) {
+            logger.warn("Bulk user import rejected - {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Bulk user import failed - Error: {}", e.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of("message", "Import failed: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Streams users as NDJSON (the default) or CSV, without credentials. With {@code since} (ISO date-time) only
+     * users updated at or after it are included. The {@code X-Export-Watermark} header carries the value to pass
+     * as {@code since} on the next incremental run. The last line is a trailer (see {@link UserExporter}); a body
+     * without it was cut short.
+     */
+    @GetMapping("/users/export")
+    public void exportUsers(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            HttpServletResponse response) throws IOException {
+        UserImportReader.Format exportFormat;
+        try {
+            exportFormat = UserImportReader.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), Map.of("message", "Set format=ndjson or format=csv"));
+            return;
+        }
+        // Taken before the first page is read, so rows changed while this export streams are exported again next time
+        LocalDateTime watermark = userExporter.watermark();
+        boolean csv = exportFormat == UserImportReader.Format.CSV;
+        response.setContentType(csv ? "text/csv;charset=UTF-8" : "application/x-ndjson;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users." + (csv ? "csv" : "ndjson") + "\"");
+        response.setHeader(EXPORT_WATERMARK_HEADER, watermark.toString());
+        logger.info("User export requested ({}, since {})", exportFormat, since);
+        userExporter.export(response.getOutputStream(), exportFormat, since);
+    }
+}
@@ -2,11 +2,14 @@ package com.wilson.cmpe272.controller;
 
 import com.wilson.cmpe272.dto.*;
 import com.wilson.cmpe272.service.AuthService;
+import com.wilson.cmpe272.service.TooManyRequestsException;
 import com.wilson.cmpe272.entity.User;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -28,6 +31,9 @@ public class AuthController {
             AuthResponse response = authService.signup(signupRequest);
             logger.info("Signup successful for email: {}", signupRequest.getEmail());
             return ResponseEntity.ok(response);
+        } catch (TooManyRequestsException e) {
+            logger.warn("Signup throttled for email: {} - {}", signupRequest.getEmail(), e.getMessage());
+            return tooManyRequests(e);
         } catch (Exception e) {
             logger.error("Signup failed for email: {} - Error: {}", signupRequest.getEmail(), e.getMessage());
             return ResponseEntity.badRequest().body(new AuthResponse(e.getMessage()));
@@ -41,6 +47,9 @@ public class AuthController {
             AuthResponse response = authService.initiateLogin(loginRequest.getEmail(), loginRequest.getPassword());
             logger.info("Login initiation successful for email: {}", loginRequest.getEmail());
             return ResponseEntity.ok(response);
+        } catch (TooManyRequestsException e) {
+            logger.warn("Login initiation throttled for email: {} - {}", loginRequest.getEmail(), e.getMessage());
+            return tooManyRequests(e);
         } catch (Exception e) {
             logger.error("Login initiation failed for email: {} - Error: {}", loginRequest.getEmail(), e.getMessage());
             return ResponseEntity.badRequest().body(new AuthResponse(e.getMessage()));
@@ -54,6 +63,9 @@ public class AuthController {
             AuthResponse response = authService.completeLogin(verificationRequest);
             logger.info("Login completion successful for email: {}", verificationRequest.getEmail());
             return ResponseEntity.ok(response);
+        } catch (TooManyRequestsException e) {
+            logger.warn("Login completion throttled for email: {} - {}", verificationRequest.getEmail(), e.getMessage());
+            return tooManyRequests(e);
         } catch (Exception e) {
             logger.error("Login completion failed for email: {} - Error: {}", verificationRequest.getEmail(), e.getMessage());
             return ResponseEntity.badRequest().body(new AuthResponse(e.getMessage()));
@@ -67,6 +79,9 @@ public class AuthController {
             AuthResponse response = authService.verifyEmail(verificationRequest);
             logger.info("Email verification successful for email: {}", verificationRequest.getEmail());
             return ResponseEntity.ok(response);
+        } catch (TooManyRequestsException e) {
+            logger.warn("Email verification throttled for email: {} - {}", verificationRequest.getEmail(), e.getMessage());
+            return tooManyRequests(e);
         } catch (Exception e) {
             logger.error("Email verification failed for email: {} - Error: {}", verificationRequest.getEmail(), e.getMessage());
             return ResponseEntity.badRequest().body(new AuthResponse(e.getMessage()));
@@ -81,6 +96,9 @@ public class AuthController {
             AuthResponse response = authService.changePassword(changePasswordRequest);
             logger.info("Password change successful");
             return ResponseEntity.ok(response);
+        } catch (TooManyRequestsException e) {
+            logger.warn("Password change throttled - {}", e.getMessage());
+            return tooManyRequests(e);
         } catch (Exception e) {
             logger.error("Password change failed - Error: {}", e.getMessage());
             return ResponseEntity.badRequest().body(new AuthResponse(e.getMessage()));
@@ -99,6 +117,9 @@ public class AuthController {
                 response.setMessage("Changing 2FA method to authenticator app. Verification required.");
             }
             return ResponseEntity.ok(response);
+        } catch (TooManyRequestsException e) {
+            logger.warn("2FA method change throttled - {}", e.getMessage());
+            return tooManyRequests(e);
         } catch (Exception e) {
             logger.error("2FA method change failed - Error: {}", e.getMessage());
             return ResponseEntity.badRequest().body(new AuthResponse(e.getMessage()));
@@ -127,6 +148,9 @@ public class AuthController {
             AuthResponse response = authService.resendVerificationCode(email, type);
             logger.info("Verification code resent successfully for email: {}, type: {}", email, type);
             return ResponseEntity.ok(response);
+        } catch (TooManyRequestsException e) {
+            logger.warn("Resend verification code throttled for email: {} - {}", email, e.getMessage());
+            return tooManyRequests(e);
         } catch (Exception e) {
             logger.error("Resend verification code failed for email: {}, type: {} - Error: {}", email, type, e.getMessage());
             return ResponseEntity.badRequest().body(new AuthResponse(e.getMessage()));
@@ -153,6 +177,9 @@ public class AuthController {
             AuthResponse response = authService.verifyAuthenticatorCode(verificationRequest);
             logger.info("Authenticator code verification successful for email: {}", verificationRequest.getEmail());
             return ResponseEntity.ok(response);
+        } catch (TooManyRequestsException e) {
+            logger.warn("Authenticator code verification throttled for email: {} - {}", verificationRequest.getEmail(), e.getMessage());
+            return tooManyRequests(e);
         } catch (Exception e) {
             logger.error("Authenticator code verification failed for email: {} - Error: {}", verificationRequest.getEmail(), e.getMessage());
             return ResponseEntity.badRequest().body(new AuthResponse(e.getMessage()));
@@ -171,4 +198,10 @@ public class AuthController {
             return ResponseEntity.badRequest().body(new AuthResponse(e.getMessage()));
         }
     }
+    
+    private ResponseEntity<AuthResponse> tooManyRequests(TooManyRequestsException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+            .body(new AuthResponse(e.getMessage()));
+    }
 }
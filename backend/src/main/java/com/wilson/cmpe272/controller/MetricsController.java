@@ -0,0 +1,110 @@
+package com.wilson.cmpe272.controller;
+
+import com.wilson.cmpe272.service.BoundedPasswordEncoder;
+import com.wilson.cmpe272.service.BulkUserImporter;
+import com.wilson.cmpe272.service.EmailDispatcher;
+import com.wilson.cmpe272.service.EmailOutboxRelay;
+import com.wilson.cmpe272.service.EntityCacheStatistics;
+import com.wilson.cmpe272.service.LoginChallengeService;
+import com.wilson.cmpe272.service.LoginTelemetryWriter;
+import com.wilson.cmpe272.service.PasswordHashingPolicy;
+import com.wilson.cmpe272.service.PendingRegistrationStore;
+import com.wilson.cmpe272.service.RateLimitFilter;
+import com.wilson.cmpe272.service.TokenBlacklistService;
+import com.wilson.cmpe272.service.TotpReplayGuard;
+import com.wilson.cmpe272.service.UserCache;
+import com.wilson.cmpe272.service.UserExporter;
+import com.wilson.cmpe272.service.UserSearchService;
+import com.wilson.cmpe272.service.VerificationLockoutService;
+import com.wilson.cmpe272.service.VirtualThreadPinningMonitor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Operational metrics for in-process caches and queues, used to size them in production.
+ * Requires an authenticated request.
+ */
+@RestController
+@RequestMapping("/actuator")
+public class MetricsController {
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private EntityCacheStatistics entityCacheStatistics;
+
+    @Autowired
+    private TokenBlacklistService tokenBlacklistService;
+
+    @Autowired
+    private EmailDispatcher emailDispatcher;
+
+    @Autowired
+    private EmailOutboxRelay emailOutboxRelay;
+
+    @Autowired
+    private TotpReplayGuard totpReplayGuard;
+
+    @Autowired
+    private BoundedPasswordEncoder passwordEncoder;
+
+    @Autowired
+    private PasswordHashingPolicy passwordHashingPolicy;
+
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
+    @Autowired
+    private VerificationLockoutService verificationLockoutService;
+
+    @Autowired
+    private LoginChallengeService loginChallengeService;
+
+    @Autowired
+    private PendingRegistrationStore pendingRegistrationStore;
+
+    @Autowired
+    private LoginTelemetryWriter loginTelemetryWriter;
+
+    @Autowired
+    private BulkUserImporter bulkUserImporter;
+
+    @Autowired
+    private UserExporter userExporter;
+
+    @Autowired
+    private UserSearchService userSearchService;
+
+    @Autowired
+    private VirtualThreadPinningMonitor virtualThreadPinningMonitor;
+
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> metrics() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("userCache", userCache.getStats());
+        response.put("hibernateCache", entityCacheStatistics.getStats());
+        response.put("tokenBlacklist", tokenBlacklistService.getStats());
+        response.put("email", emailDispatcher.getStats());
+        response.put("emailOutbox", emailOutboxRelay.getStats());
+        response.put("totpReplayGuard", totpReplayGuard.getStats());
+        response.put("passwordHashing", passwordEncoder.getStats());
+        response.put("passwordHashes", passwordHashingPolicy.getStats());
+        response.put("rateLimit", rateLimitFilter.getStats());
+        response.put("verificationLockout", verificationLockoutService.getStats());
+        response.put("loginChallenge", loginChallengeService.getStats());
+        response.put("pendingRegistrations", pendingRegistrationStore.getStats());
+        response.put("loginTelemetry", loginTelemetryWriter.getStats());
+        response.put("bulkImport", bulkUserImporter.getStats());
+        response.put("userExport", userExporter.getStats());
+        response.put("userSearch", userSearchService.getStats());
+        response.put("virtualThreads", virtualThreadPinningMonitor.getStats());
+        return ResponseEntity.ok(response);
+    }
+}
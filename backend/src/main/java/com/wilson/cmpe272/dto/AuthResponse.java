@@ -15,6 +15,7 @@ public class AuthResponse {
     private Boolean requiresTwoFactor;
     private String message;
     private String qrCode;
+    private String challenge;
     
     // Constructors
     public AuthResponse() {}
@@ -134,6 +135,14 @@ public class AuthResponse {
         this.qrCode = qrCode;
     }
     
+    public String getChallenge() {
+        return challenge;
+    }
+    
+    public void setChallenge(String challenge) {
+        this.challenge = challenge;
+    }
+    
     public void setUser(User user) {
         this.id = user.getId();
         this.email = user.getEmail();
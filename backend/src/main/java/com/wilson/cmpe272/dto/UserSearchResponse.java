@@ -0,0 +1,36 @@
+package com.wilson.cmpe272.dto;
+
+import java.util.List;
+
+public class UserSearchResponse {
+    
+    private List<UserSummary> users;
+    
+    // Opaque cursor for the next page; null on the last page
+    private String nextCursor;
+    
+    // Constructors
+    public UserSearchResponse() {}
+    
+    public UserSearchResponse(List<UserSummary> users, String nextCursor) {
+        this.users = users;
+        this.nextCursor = nextCursor;
+    }
+    
+    // Getters and Setters
+    public List<UserSummary> getUsers() {
+        return users;
+    }
+    
+    public void setUsers(List<UserSummary> users) {
+        this.users = users;
+    }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,104 @@
+package com.wilson.cmpe272.dto;
+
+import com.wilson.cmpe272.entity.User;
+
+import java.time.LocalDateTime;
+
+// One account in an admin search result; carries no credentials
+public class UserSummary {
+    
+    private Long id;
+    private String email;
+    private String firstName;
+    private String lastName;
+    private User.TwoFactorMethod twoFactorMethod;
+    private Boolean isTwoFactorEnabled;
+    private Boolean isEmailVerified;
+    private User.UserStatus status;
+    private LocalDateTime createdAt;
+    private LocalDateTime lastLoginAt;
+    
+    // Constructors
+    public UserSummary() {}
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getEmail() {
+        return email;
+    }
+    
+    public void setEmail(String email) {
+        this.email = email;
+    }
+    
+    public String getFirstName() {
+        return firstName;
+    }
+    
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+    
+    public String getLastName() {
+        return lastName;
+    }
+    
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+    
+    public User.TwoFactorMethod getTwoFactorMethod() {
+        return twoFactorMethod;
+    }
+    
+    public void setTwoFactorMethod(User.TwoFactorMethod twoFactorMethod) {
+        this.twoFactorMethod = twoFactorMethod;
+    }
+    
+    public Boolean getIsTwoFactorEnabled() {
+        return isTwoFactorEnabled;
+    }
+    
+    public void setIsTwoFactorEnabled(Boolean isTwoFactorEnabled) {
+        this.isTwoFactorEnabled = isTwoFactorEnabled;
+    }
+    
+    public Boolean getIsEmailVerified() {
+        return isEmailVerified;
+    }
+    
+    public void setIsEmailVerified(Boolean isEmailVerified) {
+        this.isEmailVerified = isEmailVerified;
+    }
+    
+    public User.UserStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(User.UserStatus status) {
+        this.status = status;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getLastLoginAt() {
+        return lastLoginAt;
+    }
+    
+    public void setLastLoginAt(LocalDateTime lastLoginAt) {
+        this.lastLoginAt = lastLoginAt;
+    }
+}
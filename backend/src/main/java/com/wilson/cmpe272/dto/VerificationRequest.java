@@ -12,6 +12,9 @@ public class VerificationRequest {
     @NotBlank(message = "Verification code is required")
     private String code;
     
+    // Signed login challenge returned by /login; only used with login.challenge.mode=signed
+    private String challenge;
+    
     // Constructors
     public VerificationRequest() {}
     
@@ -36,4 +39,12 @@ public class VerificationRequest {
     public void setCode(String code) {
         this.code = code;
     }
+    
+    public String getChallenge() {
+        return challenge;
+    }
+    
+    public void setChallenge(String challenge) {
+        this.challenge = challenge;
+    }
 }
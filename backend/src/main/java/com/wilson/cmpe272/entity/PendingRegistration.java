@@ -0,0 +1,179 @@
+package com.wilson.cmpe272.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A signup awaiting email verification. Becomes a {@link User} once the code is confirmed; until then it
+ * lives in memory or in this overflow table and is discarded when {@code expiresAt} passes.
+ */
+@Entity
+@Table(name = "pending_registrations", indexes = {
+    @Index(name = "idx_pending_registrations_expires_at", columnList = "expires_at")
+})
+public class PendingRegistration {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(unique = true, nullable = false)
+    private String email;
+    
+    // Already hashed
+    @Column(nullable = false)
+    private String password;
+    
+    @Column(name = "first_name")
+    private String firstName;
+    
+    @Column(name = "last_name")
+    private String lastName;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "two_factor_method")
+    private User.TwoFactorMethod twoFactorMethod;
+    
+    @Column(name = "two_factor_secret")
+    private String twoFactorSecret;
+    
+    @Column(name = "verification_code")
+    private String verificationCode;
+    
+    @Column(name = "verification_expires_at")
+    private LocalDateTime verificationExpiresAt;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+    
+    // Constructors
+    public PendingRegistration() {}
+    
+    public PendingRegistration(String email, String password, String firstName, String lastName,
+                               User.TwoFactorMethod twoFactorMethod, LocalDateTime expiresAt) {
+        this.email = email;
+        this.password = password;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.twoFactorMethod = twoFactorMethod;
+        this.expiresAt = expiresAt;
+        this.createdAt = LocalDateTime.now();
+    }
+    
+    /**
+     * The account this registration turns into, not yet saved.
+     */
+    public User toUser() {
+        User user = new User(email, password);
+        user.setFirstName(firstName);
+        user.setLastName(lastName);
+        user.setTwoFactorMethod(twoFactorMethod);
+        user.setTwoFactorSecret(twoFactorSecret);
+        user.setIsTwoFactorEnabled(twoFactorMethod != null);
+        return user;
+    }
+    
+    public boolean isExpired(LocalDateTime now) {
+        return !expiresAt.isAfter(now);
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getEmail() {
+        return email;
+    }
+    
+    public void setEmail(String email) {
+        this.email = email;
+    }
+    
+    public String getPassword() {
+        return password;
+    }
+    
+    public void setPassword(String password) {
+        this.password = password;
+    }
+    
+    public String getFirstName() {
+        return firstName;
+    }
+    
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+    
+    public String getLastName() {
+        return lastName;
+    }
+    
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+    
+    public User.TwoFactorMethod getTwoFactorMethod() {
+        return twoFactorMethod;
+    }
+    
+    public void setTwoFactorMethod(User.TwoFactorMethod twoFactorMethod) {
+        this.twoFactorMethod = twoFactorMethod;
+    }
+    
+    public String getTwoFactorSecret() {
+        return twoFactorSecret;
+    }
+    
+    public void setTwoFactorSecret(String twoFactorSecret) {
+        this.twoFactorSecret = twoFactorSecret;
+    }
+    
+    public String getVerificationCode() {
+        return verificationCode;
+    }
+    
+    public void setVerificationCode(String verificationCode) {
+        this.verificationCode = verificationCode;
+    }
+    
+    public LocalDateTime getVerificationExpiresAt() {
+        return verificationExpiresAt;
+    }
+    
+    public void setVerificationExpiresAt(LocalDateTime verificationExpiresAt) {
+        this.verificationExpiresAt = verificationExpiresAt;
+    }
+    
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+    
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
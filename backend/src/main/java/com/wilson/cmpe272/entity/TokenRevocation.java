@@ -0,0 +1,89 @@
+package com.wilson.cmpe272.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+@Entity
+@Table(name = "token_revocations", indexes = {
+    @Index(name = "idx_token_revocations_digest", columnList = "digest_high, digest_low"),
+    @Index(name = "idx_token_revocations_expires_at", columnList = "expires_at"),
+    @Index(name = "idx_token_revocations_created_at", columnList = "created_at, id")
+})
+public class TokenRevocation {
+    
+    // Breaks ties in replication order between rows recorded in the same microsecond
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "digest_high", nullable = false)
+    private Long digestHigh;
+    
+    @Column(name = "digest_low", nullable = false)
+    private Long digestLow;
+    
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+    
+    // Publishing node's clock; nodes re-read a window of this behind the newest row they have seen.
+    // Truncated to what every supported database stores, so a node's position matches the row exactly
+    @Column(name = "created_at")
+    private Instant createdAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
+    
+    // Constructors
+    public TokenRevocation() {}
+    
+    public TokenRevocation(Long digestHigh, Long digestLow, Instant expiresAt) {
+        this.digestHigh = digestHigh;
+        this.digestLow = digestLow;
+        this.expiresAt = expiresAt;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getDigestHigh() {
+        return digestHigh;
+    }
+    
+    public void setDigestHigh(Long digestHigh) {
+        this.digestHigh = digestHigh;
+    }
+    
+    public Long getDigestLow() {
+        return digestLow;
+    }
+    
+    public void setDigestLow(Long digestLow) {
+        this.digestLow = digestLow;
+    }
+    
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+    
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+    
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
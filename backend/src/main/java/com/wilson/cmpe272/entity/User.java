@@ -4,6 +4,10 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.GrantedAuthority;
@@ -14,17 +18,35 @@ import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+    // Keyset order of incremental exports (UserExporter)
+    @Index(name = "idx_users_updated_at", columnList = "updated_at, id"),
+    // Admin search (UserSearchService) pages newest first by (created_at, id), behind each equality filter
+    @Index(name = "idx_users_created_at", columnList = "created_at, id"),
+    @Index(name = "idx_users_status_created_at", columnList = "status, created_at, id"),
+    @Index(name = "idx_users_two_factor_created_at", columnList = "two_factor_method, created_at, id"),
+    @Index(name = "idx_users_verified_created_at", columnList = "is_email_verified, created_at, id")
+})
+// Second-level cached by id and by email (see HibernateCacheConfig for the region limits)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.CACHE_REGION)
+@NaturalIdCache(region = User.NATURAL_ID_CACHE_REGION)
 public class User implements UserDetails {
     
     private static final Logger logger = LoggerFactory.getLogger(User.class);
     
+    public static final String CACHE_REGION = "users";
+    
+    public static final String NATURAL_ID_CACHE_REGION = "users-by-email";
+    
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
+    // Never changes after signup; lookups by email resolve through the natural-id cache
+    @NaturalId
     @Email
     @NotBlank
     @Column(unique = true, nullable = false)
@@ -70,12 +92,24 @@ public class User implements UserDetails {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
-    @Column(name = "last_login_at")
+    // Written only by LoginTelemetryWriter's single-column update, never by entity saves, so a login does not
+    // rewrite the whole row and a stale cached copy cannot move it backwards
+    @Column(name = "last_login_at", insertable = false, updatable = false)
     private LocalDateTime lastLoginAt;
     
     @Enumerated(EnumType.STRING)
     private UserStatus status = UserStatus.ACTIVE;
     
+    // Bumped whenever credentials, 2FA settings, status or email verification change so stateless JWT principals
+    // can be detected as stale (see SecurityVersionService)
+    @Column(name = "security_version")
+    private Integer securityVersion = 0;
+    
+    // Last TOTP time step accepted for this user; written only by the replay guard's conditional update,
+    // never by entity saves, so a stale cached copy cannot move it backwards
+    @Column(name = "last_totp_step", insertable = false, updatable = false)
+    private Long lastTotpStep;
+    
     public enum TwoFactorMethod {
         EMAIL, AUTHENTICATOR_APP
     }
@@ -99,10 +133,31 @@ public class User implements UserDetails {
     public User() {}
     
     public User(String email, String password) {
-        this.email = email;
+        this.email = normalizeEmail(email);
         this.password = password;
     }
     
+    // Detached field-by-field copy, used to hand out cached users without sharing mutable state
+    public User(User other) {
+        this.id = other.id;
+        this.email = other.email;
+        this.password = other.password;
+        this.firstName = other.firstName;
+        this.lastName = other.lastName;
+        this.twoFactorMethod = other.twoFactorMethod;
+        this.twoFactorSecret = other.twoFactorSecret;
+        this.isTwoFactorEnabled = other.isTwoFactorEnabled;
+        this.isEmailVerified = other.isEmailVerified;
+        this.emailVerificationCode = other.emailVerificationCode;
+        this.emailVerificationExpiresAt = other.emailVerificationExpiresAt;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.lastLoginAt = other.lastLoginAt;
+        this.status = other.status;
+        this.securityVersion = other.securityVersion;
+        this.lastTotpStep = other.lastTotpStep;
+    }
+    
     // UserDetails implementation
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
@@ -160,7 +215,13 @@ public class User implements UserDetails {
     }
     
     public void setEmail(String email) {
-        this.email = email;
+        this.email = normalizeEmail(email);
+    }
+    
+    // Emails are stored trimmed and lower-cased, so the unique index on email also rejects case and
+    // whitespace variants of an address
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
     }
     
     public String getPassword() {
@@ -270,4 +331,20 @@ public class User implements UserDetails {
     public void setStatus(UserStatus status) {
         this.status = status;
     }
+    
+    public Integer getSecurityVersion() {
+        return securityVersion;
+    }
+    
+    public void setSecurityVersion(Integer securityVersion) {
+        this.securityVersion = securityVersion;
+    }
+    
+    public Long getLastTotpStep() {
+        return lastTotpStep;
+    }
+    
+    public void setLastTotpStep(Long lastTotpStep) {
+        this.lastTotpStep = lastTotpStep;
+    }
 }
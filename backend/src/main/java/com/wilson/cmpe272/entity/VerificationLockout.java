@@ -0,0 +1,84 @@
+package com.wilson.cmpe272.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "verification_lockouts", indexes = {
+    @Index(name = "idx_verification_lockouts_locked_until", columnList = "locked_until")
+})
+public class VerificationLockout {
+    
+    // Pages replication reads; nodes re-read every lockout still in force, since ids can become visible out of order
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private String email;
+    
+    @Column(name = "locked_until", nullable = false)
+    private Instant lockedUntil;
+    
+    @Column(name = "lockout_level", nullable = false)
+    private Integer lockoutLevel;
+    
+    @Column(name = "created_at")
+    private Instant createdAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = Instant.now();
+    }
+    
+    // Constructors
+    public VerificationLockout() {}
+    
+    public VerificationLockout(String email, Instant lockedUntil, Integer lockoutLevel) {
+        this.email = email;
+        this.lockedUntil = lockedUntil;
+        this.lockoutLevel = lockoutLevel;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getEmail() {
+        return email;
+    }
+    
+    public void setEmail(String email) {
+        this.email = email;
+    }
+    
+    public Instant getLockedUntil() {
+        return lockedUntil;
+    }
+    
+    public void setLockedUntil(Instant lockedUntil) {
+        this.lockedUntil = lockedUntil;
+    }
+    
+    public Integer getLockoutLevel() {
+        return lockoutLevel;
+    }
+    
+    public void setLockoutLevel(Integer lockoutLevel) {
+        this.lockoutLevel = lockoutLevel;
+    }
+    
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,59 @@
+package com.wilson.cmpe272.repository;
+
+import com.wilson.cmpe272.entity.EmailOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+    
+    @Query("SELECT e.id FROM EmailOutbox e WHERE e.status = com.wilson.cmpe272.entity.EmailOutbox.Status.PENDING " +
+           "AND e.nextAttemptAt <= :now AND (e.claimExpiresAt IS NULL OR e.claimExpiresAt < :now) ORDER BY e.id")
+    List<Long> findClaimableIds(@Param("now") Instant now, Pageable pageable);
+    
+    // Conditional claim: the predicate is re-checked under the row lock, so each row goes to exactly one
+    // claimant even when several workers picked the same candidates (portable stand-in for SKIP LOCKED)
+    @Transactional
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.claimToken = :claimToken, e.claimExpiresAt = :leaseUntil " +
+           "WHERE e.id IN :ids AND e.status = com.wilson.cmpe272.entity.EmailOutbox.Status.PENDING " +
+           "AND (e.claimExpiresAt IS NULL OR e.claimExpiresAt < :now)")
+    int claim(@Param("ids") Collection<Long> ids, @Param("claimToken") String claimToken,
+              @Param("now") Instant now, @Param("leaseUntil") Instant leaseUntil);
+    
+    List<EmailOutbox> findByClaimToken(String claimToken);
+    
+    // Restarts the lease on one row just before it is sent; 0 means another worker has re-claimed it since
+    @Transactional
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.claimExpiresAt = :leaseUntil " +
+           "WHERE e.id = :id AND e.claimToken = :claimToken AND e.status = com.wilson.cmpe272.entity.EmailOutbox.Status.PENDING")
+    int renewClaim(@Param("id") Long id, @Param("claimToken") String claimToken, @Param("leaseUntil") Instant leaseUntil);
+    
+    // Only applies while the caller still holds the claim
+    @Transactional
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = :status, e.attempts = :attempts, e.nextAttemptAt = :nextAttemptAt, " +
+           "e.lastError = :lastError, e.sentAt = :sentAt, e.claimToken = NULL, e.claimExpiresAt = NULL " +
+           "WHERE e.id = :id AND e.claimToken = :claimToken")
+    int release(@Param("id") Long id, @Param("claimToken") String claimToken, @Param("status") EmailOutbox.Status status,
+                @Param("attempts") Integer attempts, @Param("nextAttemptAt") Instant nextAttemptAt,
+                @Param("lastError") String lastError, @Param("sentAt") Instant sentAt);
+    
+    long countByStatus(EmailOutbox.Status status);
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM EmailOutbox e WHERE (e.status = com.wilson.cmpe272.entity.EmailOutbox.Status.SENT AND e.sentAt < :before) " +
+           "OR (e.status = com.wilson.cmpe272.entity.EmailOutbox.Status.FAILED AND e.createdAt < :before)")
+    int deleteFinishedBefore(@Param("before") Instant before);
+}
@@ -0,0 +1,28 @@
+package com.wilson.cmpe272.repository;
+
+import com.wilson.cmpe272.entity.PendingRegistration;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface PendingRegistrationRepository extends JpaRepository<PendingRegistration, Long> {
+    
+    Optional<PendingRegistration> findByEmail(String email);
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM PendingRegistration p WHERE p.email = :email AND p.expiresAt <= :now")
+    int deleteExpiredByEmail(@Param("email") String email, @Param("now") LocalDateTime now);
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM PendingRegistration p WHERE p.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,32 @@
+package com.wilson.cmpe272.repository;
+
+import com.wilson.cmpe272.entity.TokenRevocation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocation, Long> {
+    
+    // Keyset page in (created_at, id) order, served by idx_token_revocations_created_at
+    @Query("SELECT r FROM TokenRevocation r WHERE r.createdAt > :createdAt OR (r.createdAt = :createdAt AND r.id > :id) "
+        + "ORDER BY r.createdAt, r.id")
+    List<TokenRevocation> findAfter(@Param("createdAt") Instant createdAt, @Param("id") Long id, Pageable pageable);
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TokenRevocation r WHERE r.digestHigh = :high AND r.digestLow = :low")
+    int deleteByDigest(@Param("high") Long high, @Param("low") Long low);
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TokenRevocation r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") Instant now);
+}
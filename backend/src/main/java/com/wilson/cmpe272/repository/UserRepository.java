@@ -1,27 +1,34 @@
 package com.wilson.cmpe272.repository;
 
 import com.wilson.cmpe272.entity.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
     
-    Optional<User> findByEmail(String email);
+    // The row as committed, locked until the transaction ends; a locking query is never answered from the
+    // second-level cache. Every write to a user starts here rather than from a cached copy
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u WHERE u.email = :email")
+    Optional<User> findByEmailForUpdate(@Param("email") String email);
     
-    boolean existsByEmail(String email);
+    @Query("SELECT u.lastTotpStep FROM User u WHERE u.id = :id")
+    Long findLastTotpStepById(@Param("id") Long id);
     
-    @Query("SELECT u FROM User u WHERE u.email = :email AND u.emailVerificationCode = :code AND u.emailVerificationExpiresAt > :now")
-    Optional<User> findByEmailAndEmailVerificationCode(@Param("email") String email, 
-                                                      @Param("code") String code, 
-                                                      @Param("now") LocalDateTime now);
-    
-    
-    @Query("SELECT u FROM User u WHERE u.email = :email AND u.isEmailVerified = true")
-    Optional<User> findByEmailAndEmailVerified(@Param("email") String email);
+    // Unverified signups whose code has expired, in id order so a migration can walk them in batches. Locked, so
+    // a node running the same migration waits for the batch and then finds its rows gone
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u WHERE u.id > :afterId AND (u.isEmailVerified = false OR u.isEmailVerified IS NULL) "
+        + "AND (u.emailVerificationExpiresAt IS NULL OR u.emailVerificationExpiresAt < :now) ORDER BY u.id")
+    List<User> findUnverifiedExpiredForUpdate(@Param("afterId") Long afterId, @Param("now") LocalDateTime now, Pageable pageable);
 }
@@ -0,0 +1,30 @@
+package com.wilson.cmpe272.repository;
+
+import com.wilson.cmpe272.entity.User;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Email lookups resolved through Hibernate's natural-id API instead of JPQL, so repeated lookups are
+ * answered by the second-level cache rather than a SELECT (a JPQL query always goes to the database).
+ */
+public interface UserRepositoryCustom {
+    
+    Optional<User> findByEmail(String email);
+    
+    boolean existsByEmail(String email);
+    
+    Optional<User> findByEmailAndEmailVerificationCode(String email, String code, LocalDateTime now);
+    
+    Optional<User> findByEmailAndEmailVerified(String email);
+    
+    // Replaces the hash only if it is still the one the caller verified; returns 0 if the password changed meanwhile
+    int replacePassword(Long id, String currentHash, String newHash);
+    
+    // Rewrites the stored email only if it is still currentEmail; returns 0 if it changed meanwhile
+    int replaceEmail(Long id, String currentEmail, String newEmail);
+    
+    // Only ever moves the step forward; returns 0 if this or a later step was already recorded
+    int advanceLastTotpStep(Long id, Long step);
+}
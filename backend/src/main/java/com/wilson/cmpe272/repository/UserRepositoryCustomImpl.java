@@ -0,0 +1,77 @@
+package com.wilson.cmpe272.repository;
+
+import com.wilson.cmpe272.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+    
+    // Plain JDBC on purpose: an HQL bulk UPDATE makes Hibernate evict every cached user
+    private static final String ADVANCE_LAST_TOTP_STEP =
+        "UPDATE users SET last_totp_step = ? WHERE id = ? AND (last_totp_step IS NULL OR last_totp_step < ?)";
+    
+    private static final String REPLACE_PASSWORD = "UPDATE users SET password = ? WHERE id = ? AND password = ?";
+    
+    private static final String REPLACE_EMAIL = "UPDATE users SET email = ? WHERE id = ? AND email = ?";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<User> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).loadOptional(User.normalizeEmail(email));
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public boolean existsByEmail(String email) {
+        return findByEmail(email).isPresent();
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<User> findByEmailAndEmailVerificationCode(String email, String code, LocalDateTime now) {
+        return findByEmail(email).filter(user -> code != null && code.equals(user.getEmailVerificationCode())
+            && user.getEmailVerificationExpiresAt() != null && user.getEmailVerificationExpiresAt().isAfter(now));
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<User> findByEmailAndEmailVerified(String email) {
+        return findByEmail(email).filter(user -> Boolean.TRUE.equals(user.getIsEmailVerified()));
+    }
+    
+    @Override
+    public int replacePassword(Long id, String currentHash, String newHash) {
+        int updated = jdbcTemplate.update(REPLACE_PASSWORD, newHash, id, currentHash);
+        // The statement bypasses the second-level cache, so drop this user's cached entity
+        entityManager.getEntityManagerFactory().getCache().evict(User.class, id);
+        return updated;
+    }
+    
+    @Override
+    public int replaceEmail(Long id, String currentEmail, String newEmail) {
+        int updated = jdbcTemplate.update(REPLACE_EMAIL, newEmail, id, currentEmail);
+        entityManager.getEntityManagerFactory().getCache().evict(User.class, id);
+        return updated;
+    }
+    
+    @Override
+    public int advanceLastTotpStep(Long id, Long step) {
+        return jdbcTemplate.update(ADVANCE_LAST_TOTP_STEP, step, id, step);
+    }
+}
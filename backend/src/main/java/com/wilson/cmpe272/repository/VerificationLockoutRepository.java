@@ -0,0 +1,24 @@
+package com.wilson.cmpe272.repository;
+
+import com.wilson.cmpe272.entity.VerificationLockout;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface VerificationLockoutRepository extends JpaRepository<VerificationLockout, Long> {
+    
+    List<VerificationLockout> findByLockedUntilAfterAndIdGreaterThanOrderByIdAsc(Instant now, Long id, Pageable pageable);
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM VerificationLockout l WHERE l.lockedUntil < :before")
+    int deleteExpired(@Param("before") Instant before);
+}
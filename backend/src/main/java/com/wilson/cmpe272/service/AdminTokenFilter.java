@@ -0,0 +1,55 @@
+package com.wilson.cmpe272.service;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Authenticates operator requests to {@code /api/admin/**} by the {@code X-Admin-Token} header, which must
+ * equal {@code admin.api-token}. Leaving the setting empty (the default) disables the admin API.
+ */
+@Component
+public class AdminTokenFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminTokenFilter.class);
+
+    public static final String HEADER = "X-Admin-Token";
+
+    @Value("${admin.api-token:}")
+    private String apiToken;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + "/api/admin/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String token = request.getHeader(HEADER);
+        if (token != null && !apiToken.isEmpty() && MessageDigest.isEqual(
+                token.getBytes(StandardCharsets.UTF_8), apiToken.getBytes(StandardCharsets.UTF_8))) {
+            UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                "admin", null, List.of(new SimpleGrantedAuthority("ROLE_ADMIN")));
+            SecurityContextHolder.getContext().setAuthentication(authentication);
+            logger.info("Admin request authenticated: {} {}", request.getMethod(), request.getRequestURI());
+        } else if (token != null) {
+            logger.warn("Rejected admin token for request: {} {}", request.getMethod(), request.getRequestURI());
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -1,11 +1,13 @@
 package com.wilson.cmpe272.service;
 
 import com.wilson.cmpe272.dto.*;
+import com.wilson.cmpe272.entity.PendingRegistration;
 import com.wilson.cmpe272.entity.User;
 import com.wilson.cmpe272.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -13,6 +15,9 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 import jakarta.servlet.http.HttpServletRequest;
@@ -20,6 +25,8 @@ import jakarta.servlet.http.HttpServletRequest;
 import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Service
 public class AuthService {
@@ -44,8 +51,33 @@ public class AuthService {
     @Autowired
     private TokenBlacklistService tokenBlacklistService;
     
+    @Autowired
+    private SecurityVersionService securityVersionService;
+    
+    @Autowired
+    private EmailDispatcher emailDispatcher;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private UserCache userCache;
+    
+    @Autowired
+    private VerificationLockoutService verificationLockoutService;
+    
+    @Autowired
+    private LoginChallengeService loginChallengeService;
+    
+    @Autowired
+    private PendingRegistrationStore pendingRegistrationStore;
+    
+    @Autowired
+    private LoginTelemetryWriter loginTelemetryWriter;
+    
     public AuthResponse signup(SignupRequest signupRequest) {
         logger.info("Starting signup process for email: {}", signupRequest.getEmail());
+        signupRequest.setEmail(User.normalizeEmail(signupRequest.getEmail()));
         
         // Validate password confirmation
         if (!signupRequest.getPassword().equals(signupRequest.getConfirmPassword())) {
@@ -53,10 +85,13 @@ public class AuthService {
             throw new IllegalArgumentException("Password and confirmation do not match");
         }
         
-        // Check if user already exists
-        if (userRepository.existsByEmail(signupRequest.getEmail())) {
-            logger.warn("Signup attempted with existing email: {}", signupRequest.getEmail());
-            throw new IllegalArgumentException("User with this email already exists");
+        if (pendingRegistrationStore.isEnabled()) {
+            // No user row is written until verification, so an existing account has to be checked for here
+            if (userRepository.existsByEmail(signupRequest.getEmail())) {
+                logger.warn("Signup attempted with existing email: {}", signupRequest.getEmail());
+                throw new IllegalArgumentException("User with this email already exists");
+            }
+            return signupPending(signupRequest);
         }
         
         // Create new user
@@ -77,14 +112,70 @@ public class AuthService {
             user.setIsTwoFactorEnabled(true);
         }
 
-        // Send email verification
+        // Single INSERT: a duplicate email is rejected by the unique index on users.email rather than by a
+        // prior existsByEmail check, which cost a round trip and still let concurrent signups through
         logger.info("Sending email verification code to: {}", signupRequest.getEmail());
-        twoFactorService.sendEmailVerificationCode(user);
+        User savedUser;
+        try {
+            savedUser = withEmailTransaction(() -> {
+                String verificationCode = twoFactorService.assignEmailVerificationCode(user);
+                User inserted = userRepository.save(user);
+                sendSignupVerificationCode(inserted, verificationCode);
+                return inserted;
+            });
+        } catch (DataIntegrityViolationException e) {
+            if (!userRepository.existsByEmail(signupRequest.getEmail())) {
+                throw e;
+            }
+            logger.warn("Signup attempted with existing email: {}", signupRequest.getEmail());
+            throw new IllegalArgumentException("User with this email already exists");
+        }
+        userCache.put(savedUser);
+        logger.info("User account created successfully with ID: {} for email: {}", savedUser.getId(), signupRequest.getEmail());
+        
+        return new AuthResponse(savedUser, "User created successfully. Please check your email for verification code.");
+    }
+    
+    // Sent only once the row exists, so a duplicate signup never mails the account's owner. Outside the outbox
+    // there is no transaction to roll back, so a failed send removes the row again and the signup can be retried
+    private void sendSignupVerificationCode(User user, String verificationCode) {
+        try {
+            twoFactorService.sendEmailVerificationCode(user, verificationCode);
+        } catch (RuntimeException e) {
+            if (!emailDispatcher.isOutbox()) {
+                userRepository.delete(user);
+            }
+            throw e;
+        }
+    }
+    
+    // Pending registrations: nothing is written to users until the email is verified
+    private AuthResponse signupPending(SignupRequest signupRequest) {
+        if (pendingRegistrationStore.find(signupRequest.getEmail()).isPresent()) {
+            logger.warn("Signup attempted with email awaiting verification: {}", signupRequest.getEmail());
+            throw new IllegalArgumentException("User with this email already exists");
+        }
+        
+        logger.info("Creating pending registration for email: {}", signupRequest.getEmail());
+        PendingRegistration registration = new PendingRegistration(signupRequest.getEmail(),
+            passwordEncoder.encode(signupRequest.getPassword()), signupRequest.getFirstName(), signupRequest.getLastName(),
+            signupRequest.getTwoFactorMethod(), pendingRegistrationStore.expiryFor(LocalDateTime.now()));
+        if (signupRequest.getTwoFactorMethod() == User.TwoFactorMethod.AUTHENTICATOR_APP) {
+            registration.setTwoFactorSecret(twoFactorService.generateSecretKey());
+        }
         
-        user = userRepository.save(user);
-        logger.info("User account created successfully with ID: {} for email: {}", user.getId(), signupRequest.getEmail());
+        logger.info("Sending email verification code to: {}", signupRequest.getEmail());
+        boolean added = withEmailTransaction(() -> {
+            twoFactorService.sendEmailVerificationCode(registration);
+            return pendingRegistrationStore.add(registration);
+        });
+        if (!added) {
+            logger.warn("Concurrent signup for email awaiting verification: {}", signupRequest.getEmail());
+            throw new IllegalArgumentException("User with this email already exists");
+        }
+        logger.info("Pending registration created for email: {}", signupRequest.getEmail());
         
-        return new AuthResponse(user, "User created successfully. Please check your email for verification code.");
+        return new AuthResponse(registration.toUser(), "User created successfully. Please check your email for verification code.");
     }
     
     // First step of login - validate credentials and send verification code
@@ -99,17 +190,34 @@ public class AuthService {
             User user = (User) authentication.getPrincipal();
             logger.info("User authentication successful for email: {}", email);
             
+            AuthResponse response = new AuthResponse("Verification code sent to your email");
+            
             // Send 2FA code
             logger.info("Sending 2FA code for user: {}", email);
-            twoFactorService.sendTwoFactorCode(user);
-            userRepository.save(user);
+            if (loginChallengeService.isSigned()) {
+                // The code travels sealed in the challenge; the user row is not written until the login succeeds
+                String code = withEmailTransaction(() -> twoFactorService.sendLoginCode(user));
+                response.setChallenge(loginChallengeService.issue(user, code));
+            } else {
+                // As in signup, the code is stored before it is sent, so a failed write never leaves a mailed code
+                // that cannot be used
+                withEmailTransaction(() -> {
+                    String code = twoFactorService.assignTwoFactorCode(user);
+                    if (code != null) {
+                        storeVerificationCode(user);
+                    }
+                    twoFactorService.sendTwoFactorCode(user, code);
+                    return null;
+                });
+            }
             
-            AuthResponse response = new AuthResponse("Verification code sent to your email");
             response.setRequiresTwoFactor(true);
             response.setUser(user); // Include user information including 2FA method
             logger.info("Verification code sent successfully for user: {} with 2FA method: {}", email, user.getTwoFactorMethod());
             return response;
             
+        } catch (TooManyRequestsException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Login initiation failed for email: {} - Error: {}", email, e.getMessage());
             throw new BadCredentialsException("Invalid email or password");
@@ -119,25 +227,41 @@ public class AuthService {
     // Second step of login - verify the code and complete login
     public AuthResponse completeLogin(VerificationRequest verificationRequest) {
         logger.info("Completing login process for email: {}", verificationRequest.getEmail());
-        
-        User user = userRepository.findByEmail(verificationRequest.getEmail())
-                .orElseThrow(() -> {
-                    logger.warn("Login completion failed - user not found: {}", verificationRequest.getEmail());
-                    return new IllegalArgumentException("User not found");
-                });
+        verificationLockoutService.reserveAttempt(verificationRequest.getEmail());
+        Supplier<RuntimeException> notFound = () -> {
+            logger.warn("Login completion failed - user not found: {}", verificationRequest.getEmail());
+            verificationLockoutService.recordFailure(verificationRequest.getEmail());
+            return new IllegalArgumentException("User not found");
+        };
         
         // Verify 2FA code
         logger.debug("Verifying 2FA code for user: {}", verificationRequest.getEmail());
-        if (!twoFactorService.verifyTwoFactorCode(user, verificationRequest.getCode())) {
-            logger.warn("Invalid 2FA code provided for user: {}", verificationRequest.getEmail());
-            throw new BadCredentialsException("Invalid verification code");
+        User user;
+        if (loginChallengeService.isSigned()) {
+            user = userCache.findByEmail(verificationRequest.getEmail()).orElseThrow(notFound);
+            verifyLoginChallenge(user, verificationRequest);
+        } else {
+            // Stored mode: the code lives on the row, so it is checked against the row as committed
+            user = updateUser(verificationRequest.getEmail(), notFound, locked -> {
+                if (twoFactorService.verifyTwoFactorCode(locked, verificationRequest.getCode())) {
+                    return locked;
+                }
+                logger.warn("Invalid 2FA code provided for user: {}", verificationRequest.getEmail());
+                recordVerificationFailure(locked, locked.getTwoFactorMethod() == User.TwoFactorMethod.EMAIL);
+                return null;
+            });
+            if (user == null) {
+                throw new BadCredentialsException("Invalid verification code");
+            }
         }
+        verificationLockoutService.recordSuccess(user.getEmail());
         logger.info("2FA verification successful for user: {}", verificationRequest.getEmail());
         
-        // Update last login
+        // Update last login (a single-column write, batched with other logins)
         logger.debug("Updating last login time for user: {}", verificationRequest.getEmail());
-        user.setLastLoginAt(LocalDateTime.now());
-        userRepository.save(user);
+        LocalDateTime loginAt = LocalDateTime.now();
+        loginTelemetryWriter.recordLogin(user.getId(), loginAt);
+        user.setLastLoginAt(loginAt);
         
         // Generate JWT token
         logger.debug("Generating JWT token for user: {}", verificationRequest.getEmail());
@@ -149,29 +273,81 @@ public class AuthService {
     
     public AuthResponse verifyEmail(VerificationRequest verificationRequest) {
         logger.info("Email verification attempt for email: {}", verificationRequest.getEmail());
-        User user = userRepository.findByEmail(verificationRequest.getEmail())
-                .orElseThrow(() -> {
-                    logger.warn("Email verification failed - user not found: {}", verificationRequest.getEmail());
-                    return new IllegalArgumentException("User not found");
-                });
-        
-        if (twoFactorService.verifyEmailCode(user, verificationRequest.getCode())) {
+        verificationLockoutService.reserveAttempt(verificationRequest.getEmail());
+        if (pendingRegistrationStore.isEnabled()) {
+            Optional<PendingRegistration> registration = pendingRegistrationStore.find(verificationRequest.getEmail());
+            if (registration.isPresent()) {
+                return completeRegistration(registration.get(), verificationRequest.getCode());
+            }
+        }
+        boolean verified = updateUser(verificationRequest.getEmail(), () -> {
+            logger.warn("Email verification failed - user not found: {}", verificationRequest.getEmail());
+            verificationLockoutService.recordFailure(verificationRequest.getEmail());
+            return new IllegalArgumentException("User not found");
+        }, user -> {
+            if (!twoFactorService.verifyEmailCode(user, verificationRequest.getCode())) {
+                logger.warn("Email verification failed - invalid or expired code for user: {}", verificationRequest.getEmail());
+                recordVerificationFailure(user, true);
+                return false;
+            }
             logger.info("Email verification successful for user: {}", verificationRequest.getEmail());
+            verificationLockoutService.recordSuccess(user.getEmail());
             user.setIsEmailVerified(true);
             user.setEmailVerificationCode(null);
             user.setEmailVerificationExpiresAt(null);
             user.setIsTwoFactorEnabled(true);
             user.setTwoFactorMethod(User.TwoFactorMethod.EMAIL);
-            userRepository.save(user);
-            
-            return new AuthResponse("Email verified successfully");
-        } else {
-            logger.warn("Email verification failed - invalid or expired code for user: {}", verificationRequest.getEmail());
+            securityVersionService.bumpSecurityVersion(user);
+            return true;
+        });
+        
+        if (!verified) {
             throw new IllegalArgumentException("Invalid or expired verification code");
         }
+        return new AuthResponse("Email verified successfully");
     }
     
     
+    // Materializes the user row from a verified pending registration, with the same settings verifyEmail gives
+    private AuthResponse completeRegistration(PendingRegistration registration, String code) {
+        if (!twoFactorService.verifyEmailCode(registration, code)) {
+            logger.warn("Email verification failed - invalid or expired code for pending registration: {}", registration.getEmail());
+            if (verificationLockoutService.recordFailure(registration.getEmail())
+                    && verificationLockoutService.isInvalidateCode() && registration.getVerificationCode() != null) {
+                registration.setVerificationCode(null);
+                registration.setVerificationExpiresAt(null);
+                pendingRegistrationStore.update(registration);
+                logger.info("Outstanding verification code invalidated after lockout for pending registration: {}", registration.getEmail());
+            }
+            throw new IllegalArgumentException("Invalid or expired verification code");
+        }
+        logger.info("Email verification successful for pending registration: {}", registration.getEmail());
+        verificationLockoutService.recordSuccess(registration.getEmail());
+        
+        User user = registration.toUser();
+        user.setIsEmailVerified(true);
+        user.setIsTwoFactorEnabled(true);
+        user.setTwoFactorMethod(User.TwoFactorMethod.EMAIL);
+        try {
+            userCache.put(userRepository.save(user));
+        } catch (DataIntegrityViolationException e) {
+            if (!userRepository.existsByEmail(registration.getEmail())) {
+                // Not a duplicate: keep the registration so the code can be submitted again
+                logger.error("Email verification failed - could not create user for pending registration: {} - Error: {}",
+                    registration.getEmail(), e.getMessage());
+                throw e;
+            }
+            logger.warn("Email verification failed - email already registered: {}", registration.getEmail());
+            pendingRegistrationStore.complete(registration);
+            throw new IllegalArgumentException("User with this email already exists");
+        }
+        // Only once the user row exists, so a failed insert leaves the registration to retry
+        pendingRegistrationStore.complete(registration);
+        logger.info("User account created from pending registration for email: {}", registration.getEmail());
+        
+        return new AuthResponse("Email verified successfully");
+    }
+    
     public AuthResponse changePassword(ChangePasswordRequest changePasswordRequest) {
         User user = getCurrentUser();
         logger.info("Password change request for user: {}", user.getEmail());
@@ -190,8 +366,13 @@ public class AuthService {
         
         // Update password
         logger.info("Updating password for user: {}", user.getEmail());
-        user.setPassword(passwordEncoder.encode(changePasswordRequest.getNewPassword()));
-        userRepository.save(user);
+        String encodedPassword = passwordEncoder.encode(changePasswordRequest.getNewPassword());
+        updateUser(user.getEmail(), () -> new RuntimeException("User not found"), locked -> {
+            checkPasswordUnchanged(user, locked, changePasswordRequest.getCurrentPassword(), "Current password is incorrect");
+            locked.setPassword(encodedPassword);
+            securityVersionService.bumpSecurityVersion(locked);
+            return locked;
+        });
         logger.info("Password changed successfully for user: {}", user.getEmail());
         
         return new AuthResponse("Password changed successfully");
@@ -207,23 +388,26 @@ public class AuthService {
             throw new IllegalArgumentException("Password is incorrect");
         }
         
-        // Setup new 2FA method
-        if (change2FARequest.getNewTwoFactorMethod() == User.TwoFactorMethod.AUTHENTICATOR_APP) {
-            logger.info("Setting up authenticator app for user: {}", user.getEmail());
-            twoFactorService.setupAuthenticatorApp(user);
-            // Don't enable 2FA yet - wait for verification
-            user.setIsTwoFactorEnabled(false);
-        } else {
-            // For other methods, enable immediately
-            user.setIsTwoFactorEnabled(true);
-            user.setTwoFactorMethod(change2FARequest.getNewTwoFactorMethod());
-        }
-        
-        userRepository.save(user);
+        User updated = updateUser(user.getEmail(), () -> new RuntimeException("User not found"), locked -> {
+            checkPasswordUnchanged(user, locked, change2FARequest.getPassword(), "Password is incorrect");
+            // Setup new 2FA method
+            if (change2FARequest.getNewTwoFactorMethod() == User.TwoFactorMethod.AUTHENTICATOR_APP) {
+                logger.info("Setting up authenticator app for user: {}", locked.getEmail());
+                twoFactorService.setupAuthenticatorApp(locked);
+                // Don't enable 2FA yet - wait for verification
+                locked.setIsTwoFactorEnabled(false);
+            } else {
+                // For other methods, enable immediately
+                locked.setIsTwoFactorEnabled(true);
+                locked.setTwoFactorMethod(change2FARequest.getNewTwoFactorMethod());
+            }
+            securityVersionService.bumpSecurityVersion(locked);
+            return locked;
+        });
         logger.info("2FA method changed successfully for user: {}", user.getEmail());
         
         if (change2FARequest.getNewTwoFactorMethod() == User.TwoFactorMethod.AUTHENTICATOR_APP) {
-            String qrCodeUrl = twoFactorService.getAuthenticatorAppQrCode(user);
+            String qrCodeUrl = twoFactorService.getAuthenticatorAppQrCode(updated);
             AuthResponse response = new AuthResponse("Authenticator app setup initiated. Please scan the QR code and verify with a code from your authenticator app.");
             response.setQrCode(qrCodeUrl);
             return response;
@@ -250,36 +434,54 @@ public class AuthService {
     
     public AuthResponse verifyAuthenticatorCode(VerificationRequest verificationRequest) {
         logger.info("Authenticator code verification attempt for email: {}", verificationRequest.getEmail());
-        User user = userRepository.findByEmail(verificationRequest.getEmail())
-                .orElseThrow(() -> {
-                    logger.warn("Authenticator verification failed - user not found: {}", verificationRequest.getEmail());
-                    return new IllegalArgumentException("User not found");
-                });
-        
-        // Check if user has authenticator app setup
-        if (user.getTwoFactorSecret() == null) {
-            logger.warn("Authenticator verification failed - authenticator app not properly set up for user: {}", verificationRequest.getEmail());
-            throw new IllegalArgumentException("Authenticator app is not properly set up");
-        }
-        
-        // Verify the authenticator code
-        if (twoFactorService.verifyTotpCode(user, verificationRequest.getCode())) {
+        verificationLockoutService.reserveAttempt(verificationRequest.getEmail());
+        boolean verified = updateUser(verificationRequest.getEmail(), () -> {
+            logger.warn("Authenticator verification failed - user not found: {}", verificationRequest.getEmail());
+            verificationLockoutService.recordFailure(verificationRequest.getEmail());
+            return new IllegalArgumentException("User not found");
+        }, user -> {
+            // Check if user has authenticator app setup
+            if (user.getTwoFactorSecret() == null) {
+                logger.warn("Authenticator verification failed - authenticator app not properly set up for user: {}", verificationRequest.getEmail());
+                throw new IllegalArgumentException("Authenticator app is not properly set up");
+            }
+            
+            // Verify the authenticator code
+            if (!twoFactorService.verifyTotpCode(user, verificationRequest.getCode())) {
+                logger.warn("Authenticator code verification failed - invalid code for user: {}", verificationRequest.getEmail());
+                recordVerificationFailure(user, false);
+                return false;
+            }
             logger.info("Authenticator code verification successful for user: {}", verificationRequest.getEmail());
+            verificationLockoutService.recordSuccess(user.getEmail());
             // Enable 2FA for the user
             user.setIsTwoFactorEnabled(true);
             user.setTwoFactorMethod(User.TwoFactorMethod.AUTHENTICATOR_APP);
-            userRepository.save(user);
-            
-            return new AuthResponse("Authenticator app verified and enabled successfully");
-        } else {
-            logger.warn("Authenticator code verification failed - invalid code for user: {}", verificationRequest.getEmail());
+            securityVersionService.bumpSecurityVersion(user);
+            return true;
+        });
+        
+        if (!verified) {
             throw new IllegalArgumentException("Invalid authenticator code");
         }
+        return new AuthResponse("Authenticator app verified and enabled successfully");
     }
     
     public AuthResponse resendVerificationCode(String email, String type) {
         logger.info("Resend verification code request for email: {}, type: {}", email, type);
-        User user = userRepository.findByEmail(email)
+        if ("email".equals(type) && pendingRegistrationStore.isEnabled()) {
+            Optional<PendingRegistration> registration = pendingRegistrationStore.find(email);
+            if (registration.isPresent()) {
+                logger.info("Resending email verification code to pending registration: {}", email);
+                withEmailTransaction(() -> {
+                    twoFactorService.sendEmailVerificationCode(registration.get());
+                    pendingRegistrationStore.update(registration.get());
+                    return null;
+                });
+                return new AuthResponse("Email verification code sent");
+            }
+        }
+        User user = userCache.findByEmail(email)
                 .orElseThrow(() -> {
                     logger.warn("Resend verification code failed - user not found: {}", email);
                     return new IllegalArgumentException("User not found");
@@ -287,8 +489,10 @@ public class AuthService {
         
         if ("email".equals(type)) {
             logger.info("Resending email verification code to: {}", email);
-            twoFactorService.sendEmailVerificationCode(user);
-            userRepository.save(user);
+            withEmailTransaction(() -> {
+                twoFactorService.sendEmailVerificationCode(user);
+                return storeVerificationCode(user);
+            });
             return new AuthResponse("Email verification code sent");
         }
         
@@ -302,8 +506,9 @@ public class AuthService {
             // Extract JWT token from request
             String token = extractTokenFromRequest();
             if (token != null) {
-                // Add token to blacklist
-                tokenBlacklistService.blacklistToken(token);
+                // Add token to blacklist until its own expiration (claims are already cached by the JWT filter)
+                VerifiedClaims claims = jwtService.verifyToken(token);
+                tokenBlacklistService.blacklistDigest(claims.getDigest(), claims.getExpiration());
                 logger.info("Token added to blacklist during logout");
             }
             
@@ -340,8 +545,8 @@ public class AuthService {
             User currentUser = getCurrentUser();
             String userEmail = currentUser.getEmail();
             
-            // Fetch fresh user data from database to ensure we have the latest information
-            User user = userRepository.findByEmail(userEmail)
+            // Fetch fresh user data (the user cache is refreshed on every save) to ensure we have the latest information
+            User user = userCache.findByEmail(userEmail)
                     .orElseThrow(() -> {
                         logger.warn("User not found in database: {}", userEmail);
                         return new RuntimeException("User not found");
@@ -360,15 +565,102 @@ public class AuthService {
         }
     }
     
+    // Principals built from JWT claims carry no password hash or TOTP secret, so those load the persisted entity
     private User getCurrentUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null) {
             logger.error("No authentication found in SecurityContext");
             throw new RuntimeException("User not authenticated");
         }
-        User user = (User) authentication.getPrincipal();
-        logger.debug("Retrieved current user: {}, Status: {}, IsEmailVerified: {}, IsEnabled: {}", 
-            user.getEmail(), user.getStatus(), user.getIsEmailVerified(), user.isEnabled());
-        return user;
+        if (authentication.getPrincipal() instanceof User user) {
+            logger.debug("Retrieved current user: {}, Status: {}, IsEmailVerified: {}, IsEnabled: {}", 
+                user.getEmail(), user.getStatus(), user.getIsEmailVerified(), user.isEnabled());
+            return user;
+        }
+        if (!(authentication.getPrincipal() instanceof ClaimsUserPrincipal principal)) {
+            logger.error("Unexpected principal type in SecurityContext: {}", authentication.getPrincipal().getClass().getName());
+            throw new RuntimeException("User not authenticated");
+        }
+        logger.debug("Loading persisted user for stateless principal: {}", principal.getEmail());
+        return userCache.findByEmail(principal.getEmail())
+                .orElseThrow(() -> {
+                    logger.warn("User not found in database: {}", principal.getEmail());
+                    return new RuntimeException("User not found");
+                });
+    }
+    
+    // Signed mode: the emailed code is checked against the challenge, authenticator codes as usual
+    private void verifyLoginChallenge(User user, VerificationRequest verificationRequest) {
+        LoginChallengeCodec.Challenge challenge = loginChallengeService.open(verificationRequest.getChallenge(), user);
+        boolean emailCode = challenge.getKind() == LoginChallengeCodec.EMAIL_CODE;
+        boolean valid = emailCode
+            ? loginChallengeService.matchesCode(challenge, verificationRequest.getCode())
+            : twoFactorService.verifyTotpCode(user, verificationRequest.getCode());
+        if (!valid) {
+            logger.warn("Invalid 2FA code provided for user: {}", verificationRequest.getEmail());
+            if (verificationLockoutService.recordFailure(user.getEmail()) && emailCode
+                    && verificationLockoutService.isInvalidateCode()) {
+                loginChallengeService.revoke(challenge);
+                logger.info("Outstanding login challenge invalidated after lockout for user: {}", user.getEmail());
+            }
+            throw new BadCredentialsException("Invalid verification code");
+        }
+        if (!loginChallengeService.consume(challenge)) {
+            logger.warn("Login challenge used concurrently for user: {}", verificationRequest.getEmail());
+            throw new BadCredentialsException("Verification code already used. Please log in again.");
+        }
+    }
+    
+    // Counts a wrong code; when that uses up the attempts, optionally burn the outstanding email code as well.
+    // Called with the locked row from updateUser, so clearing the code is written when that transaction commits
+    private void recordVerificationFailure(User user, boolean emailCode) {
+        if (verificationLockoutService.recordFailure(user.getEmail()) && emailCode
+                && verificationLockoutService.isInvalidateCode() && user.getEmailVerificationCode() != null) {
+            user.setEmailVerificationCode(null);
+            user.setEmailVerificationExpiresAt(null);
+            logger.info("Outstanding verification code invalidated after lockout for user: {}", user.getEmail());
+        }
+    }
+    
+    // Writes never start from a cached copy, which may predate a change made on another node: the row is re-read
+    // under a lock inside the transaction, handed to work, and put in the user cache once the transaction commits.
+    // Nested in withEmailTransaction it joins the outbox transaction
+    private <T> T updateUser(String email, Supplier<? extends RuntimeException> notFound, Function<User, T> work) {
+        return transactionTemplate.execute(status -> {
+            User user = userRepository.findByEmailForUpdate(User.normalizeEmail(email)).orElseThrow(notFound);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    userCache.put(user);
+                }
+            });
+            return work.apply(user);
+        });
+    }
+    
+    // Writes just the code the caller assigned to its (possibly cached) copy, leaving the rest of the row as committed
+    private User storeVerificationCode(User user) {
+        return updateUser(user.getEmail(), () -> new IllegalArgumentException("User not found"), locked -> {
+            locked.setEmailVerificationCode(user.getEmailVerificationCode());
+            locked.setEmailVerificationExpiresAt(user.getEmailVerificationExpiresAt());
+            return locked;
+        });
+    }
+    
+    // The password was checked against a cached hash; if the row's hash has changed since, check it again
+    private void checkPasswordUnchanged(User cached, User locked, String password, String message) {
+        if (!locked.getPassword().equals(cached.getPassword()) && !passwordEncoder.matches(password, locked.getPassword())) {
+            logger.warn("Password changed concurrently for user: {}", locked.getEmail());
+            throw new IllegalArgumentException(message);
+        }
+    }
+    
+    // In outbox mode the new code and its outbox row must commit together; the other modes run without a
+    // transaction so no connection is held open across a synchronous SMTP send
+    private <T> T withEmailTransaction(Supplier<T> work) {
+        if (emailDispatcher.isOutbox()) {
+            return transactionTemplate.execute(status -> work.get());
+        }
+        return work.get();
     }
 }
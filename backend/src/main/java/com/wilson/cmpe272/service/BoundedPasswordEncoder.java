@@ -0,0 +1,149 @@
+package com.wilson.cmpe272.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a CPU-heavy {@link PasswordEncoder} (BCrypt) on a dedicated, CPU-sized pool instead of the request thread.
+ * <p>
+ * Callers still block for the result, but at most {@code threads} hashes run at once and at most
+ * {@code queueCapacity} wait behind them. Anything beyond that, or a request that waited longer than the
+ * queue timeout without being picked up, fails fast with {@link TooManyRequestsException}, so a login
+ * burst turns into 429s instead of occupying every servlet thread and starving cheap endpoints.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoundedPasswordEncoder.class);
+
+    private static final long RETRY_AFTER_SECONDS = 1;
+
+    private final PasswordEncoder delegate;
+    private final int threads;
+    private final long queueTimeoutMillis;
+    private final ThreadPoolExecutor executor;
+
+    private final LatencyHistogram encodeLatency = new LatencyHistogram();
+    private final LatencyHistogram matchesLatency = new LatencyHistogram();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    /**
+     * @param threads concurrent hashes; {@code 0} or less uses one per available processor
+     * @param queueCapacity requests allowed to wait for a free thread
+     * @param queueTimeoutMillis how long a request may wait in the queue before it is rejected
+     */
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long queueTimeoutMillis) {
+        this.delegate = delegate;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        logger.info("Password hashing pool started with {} threads (queue capacity {}, queue timeout {} ms)",
+            this.threads, queueCapacity, queueTimeoutMillis);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> delegate.encode(rawPassword), encodeLatency);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> delegate.matches(rawPassword, encodedPassword), matchesLatency);
+    }
+
+    // Only inspects the stored hash's cost factor, so it stays on the calling thread
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T execute(Callable<T> operation, LatencyHistogram latency) {
+        long submittedAt = System.nanoTime();
+        // Set by whichever side gets there first: the worker starting the hash, or the caller giving up on it
+        AtomicBoolean claimed = new AtomicBoolean();
+        FutureTask<T> task = new FutureTask<>(() -> {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            long startedAt = System.nanoTime();
+            queueWait.record(startedAt - submittedAt);
+            try {
+                return operation.call();
+            } finally {
+                latency.record(System.nanoTime() - startedAt);
+            }
+        });
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new TooManyRequestsException("Server is busy, please try again shortly", RETRY_AFTER_SECONDS);
+        }
+        try {
+            try {
+                return task.get(queueTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (claimed.compareAndSet(false, true)) {
+                    // Still queued: drop it so the worker never spends CPU on a request nobody is waiting for
+                    executor.remove(task);
+                    timedOut.incrementAndGet();
+                    throw new TooManyRequestsException("Server is busy, please try again shortly", RETRY_AFTER_SECONDS);
+                }
+                // Already running; a single hash is short, so wait for it
+                return task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            claimed.set(true);
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Password hashing failed", cause);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", threads);
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("rejected", rejected.get());
+        stats.put("timedOutInQueue", timedOut.get());
+        stats.put("encodeLatency", encodeLatency.snapshot());
+        stats.put("matchesLatency", matchesLatency.snapshot());
+        stats.put("queueWait", queueWait.snapshot());
+        return stats;
+    }
+}
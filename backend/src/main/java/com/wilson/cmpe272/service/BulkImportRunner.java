@@ -0,0 +1,71 @@
+package com.wilson.cmpe272.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Command-line bulk import: starting the application with {@code --bulk-import.file=users.ndjson} imports
+ * the file through {@link BulkUserImporter} and then exits (status 1 on failure), e.g.
+ * <pre>
+ * java -jar cmpe272.jar --spring.main.web-application-type=none --bulk-import.file=/data/users.csv
+ * </pre>
+ * The format follows the file extension unless {@code bulk-import.format} is set. Does nothing when no file
+ * is given.
+ */
+@Component
+public class BulkImportRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkImportRunner.class);
+
+    @Autowired
+    private BulkUserImporter bulkUserImporter;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Value("${bulk-import.file:}")
+    private String file;
+
+    @Value("${bulk-import.format:}")
+    private String format;
+
+    @Value("${bulk-import.send-verification-emails:false}")
+    private boolean sendVerificationEmails;
+
+    @Value("${bulk-import.exit-when-done:true}")
+    private boolean exitWhenDone;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (file.isEmpty()) {
+            return;
+        }
+        Path path = Path.of(file);
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        String importFormat = !format.isEmpty() ? format : name.substring(name.lastIndexOf('.') + 1);
+        int status = 0;
+        logger.info("Importing users from {}", path);
+        try (InputStream input = Files.newInputStream(path)) {
+            bulkUserImporter.importUsers(input, UserImportReader.Format.parse(importFormat), sendVerificationEmails);
+        } catch (Exception e) {
+            logger.error("Import from {} failed - Error: {}", path, e.getMessage());
+            status = 1;
+        }
+        if (exitWhenDone) {
+            int exitCode = status;
+            System.exit(SpringApplication.exit(context, () -> exitCode));
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package com.wilson.cmpe272.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wilson.cmpe272.entity.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Provisions users in bulk from an NDJSON or CSV stream (see {@link UserImportReader} for the fields), for
+ * migrating existing accounts without going through signup one user at a time.
+ * <p>
+ * Records are processed in chunks of {@code bulk-import.batch-size}: plain-text passwords in a chunk are
+ * hashed in parallel on a fork-join pool of {@code bulk-import.hash-threads}, and the chunk is written as one
+ * JDBC batch INSERT. The transaction is committed every {@code bulk-import.commit-interval} rows, so memory
+ * use is bounded by one chunk no matter how large the input is. Pre-hashed passwords ({@code passwordHash},
+ * either {@code {id}}-prefixed or a bare bcrypt hash) are stored as they are. Emails that already exist, in
+ * the table or earlier in the input, are skipped and counted. Verification emails go out only on request,
+ * after the rows are committed; verified records never get one.
+ * <p>
+ * On MySQL add {@code rewriteBatchedStatements=true} to the JDBC URL so each batch is sent as one statement.
+ */
+@Service
+public class BulkUserImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkUserImporter.class);
+
+    private static final String INSERT_USER = "INSERT INTO users (email, password, first_name, last_name, "
+        + "two_factor_method, two_factor_secret, is_two_factor_enabled, is_email_verified, email_verification_code, "
+        + "email_verification_expires_at, created_at, updated_at, status, security_version) "
+        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final Pattern BARE_BCRYPT = Pattern.compile("^\\$2[aby]?\\$\\d{2}\\$[./A-Za-z0-9]{53}$");
+
+    private static final Set<String> HASH_IDS = Set.of("bcrypt", "argon2", "pbkdf2");
+
+    private static final int LOGGED_ERRORS = 20;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PasswordHashingPolicy passwordHashingPolicy;
+
+    @Autowired
+    private TwoFactorService twoFactorService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${bulk-import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${bulk-import.commit-interval:10000}")
+    private int commitInterval;
+
+    @Value("${bulk-import.hash-threads:0}")
+    private int hashThreads;
+
+    @Value("${bulk-import.progress-interval:100000}")
+    private long progressInterval;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong currentRows = new AtomicLong();
+    private volatile Map<String, Object> lastResult;
+
+    /**
+     * Imports every record in the input. Only one import runs at a time; a second call fails with
+     * {@link IllegalStateException} while one is in progress.
+     */
+    public Map<String, Object> importUsers(InputStream input, UserImportReader.Format format,
+                                           boolean sendVerificationEmails) throws IOException, SQLException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A bulk import is already running");
+        }
+        ForkJoinPool hashPool = null;
+        try {
+            currentRows.set(0);
+            int threads = hashThreads > 0 ? hashThreads : Runtime.getRuntime().availableProcessors();
+            hashPool = new ForkJoinPool(threads);
+            // Creating the run builds its password encoder, which can fail; that too must release the import slot
+            Run run = new Run(sendVerificationEmails, hashPool);
+            logger.info("Bulk import started ({}, batch size {}, commit every {} rows, {} hashing threads, verification emails {})",
+                format, batchSize, commitInterval, threads, sendVerificationEmails ? "on" : "off");
+            importRecords(input, format, run);
+            Map<String, Object> result = run.result();
+            lastResult = result;
+            logger.info("Bulk import finished: {}", result);
+            return result;
+        } finally {
+            if (hashPool != null) {
+                hashPool.shutdownNow();
+            }
+            running.set(false);
+        }
+    }
+
+    private void importRecords(InputStream input, UserImportReader.Format format, Run run) throws IOException, SQLException {
+        try (UserImportReader reader = new UserImportReader(input, format, objectMapper);
+             Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_USER)) {
+                run.connection = connection;
+                run.insert = insert;
+                List<Pending> chunk = new ArrayList<>(batchSize);
+                UserImportReader.Record record;
+                while ((record = reader.next()) != null) {
+                    run.read++;
+                    Pending pending = toPending(record, run);
+                    if (pending != null) {
+                        chunk.add(pending);
+                    }
+                    if (chunk.size() == batchSize) {
+                        run.writeChunk(chunk);
+                    }
+                    if (progressInterval > 0 && run.read % progressInterval == 0) {
+                        run.logProgress();
+                    }
+                }
+                run.writeChunk(chunk);
+                run.commit();
+            } catch (IOException | SQLException | RuntimeException e) {
+                connection.rollback();
+                logger.error("Bulk import failed after {} records; rows since the last commit were rolled back - Error: {}",
+                    run.read, e.getMessage());
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    // Validates a record and turns it into a user row; returns null (and counts it) when it is unusable
+    private Pending toPending(UserImportReader.Record record, Run run) {
+        if (record.getError() != null) {
+            return run.invalid(record, record.getError());
+        }
+        String email = User.normalizeEmail(record.get("email"));
+        if (email == null || email.indexOf('@') <= 0 || email.chars().anyMatch(Character::isWhitespace)) {
+            return run.invalid(record, "missing or malformed email");
+        }
+        String password = record.get("password");
+        String passwordHash = record.get("passwordHash");
+        if (passwordHash != null) {
+            if (!isSupportedHash(passwordHash)) {
+                return run.invalid(record, "unsupported password hash format");
+            }
+        } else if (password == null || password.length() < 6) {
+            return run.invalid(record, "password missing or shorter than 6 characters");
+        }
+
+        User user = new User(email, passwordHash);
+        user.setFirstName(record.get("firstName"));
+        user.setLastName(record.get("lastName"));
+        user.setIsEmailVerified(Boolean.parseBoolean(record.get("emailVerified")));
+        try {
+            // Login always sends a second factor, so accounts without one get email codes, as verifyEmail sets
+            String method = record.get("twoFactorMethod");
+            user.setTwoFactorMethod(method == null ? User.TwoFactorMethod.EMAIL : User.TwoFactorMethod.valueOf(method.trim()));
+        } catch (IllegalArgumentException e) {
+            return run.invalid(record, "unknown twoFactorMethod");
+        }
+        if (user.getTwoFactorMethod() == User.TwoFactorMethod.AUTHENTICATOR_APP) {
+            if (record.get("twoFactorSecret") == null) {
+                return run.invalid(record, "AUTHENTICATOR_APP requires twoFactorSecret");
+            }
+            user.setTwoFactorSecret(record.get("twoFactorSecret"));
+        }
+        user.setIsTwoFactorEnabled(true);
+        return new Pending(user, passwordHash == null ? password : null);
+    }
+
+    static boolean isSupportedHash(String hash) {
+        if (hash.startsWith("{")) {
+            int end = hash.indexOf('}');
+            return end > 1 && end < hash.length() - 1 && HASH_IDS.contains(hash.substring(1, end));
+        }
+        // Bare bcrypt hashes are matched by the default encoder and re-hashed on the next login
+        return BARE_BCRYPT.matcher(hash).matches();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", running.get());
+        if (running.get()) {
+            stats.put("recordsRead", currentRows.get());
+        }
+        if (lastResult != null) {
+            stats.put("lastImport", lastResult);
+        }
+        return stats;
+    }
+
+    private static final class Pending {
+        final User user;
+        final String password;
+        String verificationCode;
+
+        Pending(User user, String password) {
+            this.user = user;
+            this.password = password;
+        }
+    }
+
+    // State of one import
+    private final class Run {
+        final boolean sendVerificationEmails;
+        final ForkJoinPool hashPool;
+        final PasswordEncoder encoder = passwordHashingPolicy.createEncoder();
+        final long startNanos = System.nanoTime();
+        final List<Pending> unsentEmails = new ArrayList<>();
+        Connection connection;
+        PreparedStatement insert;
+        long read;
+        long inserted;
+        long duplicates;
+        long invalid;
+        long hashed;
+        long batches;
+        long sinceCommit;
+
+        Run(boolean sendVerificationEmails, ForkJoinPool hashPool) {
+            this.sendVerificationEmails = sendVerificationEmails;
+            this.hashPool = hashPool;
+        }
+
+        Pending invalid(UserImportReader.Record record, String reason) {
+            invalid++;
+            if (invalid <= LOGGED_ERRORS) {
+                logger.warn("Bulk import skipped line {}: {}", record.getLine(), reason);
+            }
+            return null;
+        }
+
+        void writeChunk(List<Pending> chunk) throws SQLException {
+            currentRows.set(read);
+            if (chunk.isEmpty()) {
+                return;
+            }
+            List<Pending> rows = dropDuplicates(chunk);
+            chunk.clear();
+            if (rows.isEmpty()) {
+                return;
+            }
+            hashPasswords(rows);
+
+            LocalDateTime now = LocalDateTime.now();
+            for (Pending row : rows) {
+                if (sendVerificationEmails && !row.user.getIsEmailVerified()) {
+                    row.verificationCode = twoFactorService.assignEmailVerificationCode(row.user);
+                }
+                bind(row.user, now);
+                insert.addBatch();
+            }
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                insert.executeBatch();
+                inserted += rows.size();
+                queueEmails(rows);
+            } catch (BatchUpdateException e) {
+                // Usually a signup for one of these emails committed in the meantime; redo the rows one by one
+                insert.clearBatch();
+                connection.rollback(savepoint);
+                insertOneByOne(rows, now);
+            }
+            batches++;
+            sinceCommit += rows.size();
+            if (sinceCommit >= commitInterval) {
+                commit();
+            }
+        }
+
+        // Skips emails already in the table (including rows this import has not committed yet) or repeated
+        // within the chunk; one IN query per chunk
+        private List<Pending> dropDuplicates(List<Pending> chunk) throws SQLException {
+            Set<String> seen = new HashSet<>();
+            List<Pending> unique = new ArrayList<>(chunk.size());
+            for (Pending row : chunk) {
+                if (seen.add(row.user.getEmail())) {
+                    unique.add(row);
+                }
+            }
+            StringBuilder sql = new StringBuilder("SELECT email FROM users WHERE email IN (");
+            for (int i = 0; i < unique.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(')');
+            Set<String> existing = new HashSet<>();
+            try (PreparedStatement select = connection.prepareStatement(sql.toString())) {
+                for (int i = 0; i < unique.size(); i++) {
+                    select.setString(i + 1, unique.get(i).user.getEmail());
+                }
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        existing.add(User.normalizeEmail(resultSet.getString(1)));
+                    }
+                }
+            }
+            if (!existing.isEmpty()) {
+                unique.removeIf(row -> existing.contains(row.user.getEmail()));
+            }
+            duplicates += chunk.size() - unique.size();
+            return unique;
+        }
+
+        private void hashPasswords(List<Pending> rows) {
+            List<Pending> plain = rows.stream().filter(row -> row.password != null).toList();
+            if (plain.isEmpty()) {
+                return;
+            }
+            try {
+                // A parallel stream started inside the pool runs on the pool's threads
+                hashPool.submit(() -> plain.parallelStream().forEach(row -> row.user.setPassword(encoder.encode(row.password))))
+                    .get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while hashing passwords", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Password hashing failed", e.getCause());
+            }
+            hashed += plain.size();
+        }
+
+        private void insertOneByOne(List<Pending> rows, LocalDateTime now) throws SQLException {
+            for (Pending row : rows) {
+                bind(row.user, now);
+                Savepoint savepoint = connection.setSavepoint();
+                try {
+                    insert.executeUpdate();
+                    inserted++;
+                    queueEmails(List.of(row));
+                } catch (SQLException e) {
+                    connection.rollback(savepoint);
+                    if (e.getSQLState() == null || !e.getSQLState().startsWith("23")) {
+                        throw e;
+                    }
+                    duplicates++;
+                }
+            }
+        }
+
+        private void bind(User user, LocalDateTime now) throws SQLException {
+            Timestamp timestamp = Timestamp.valueOf(now);
+            insert.setString(1, user.getEmail());
+            insert.setString(2, user.getPassword());
+            insert.setString(3, user.getFirstName());
+            insert.setString(4, user.getLastName());
+            insert.setString(5, user.getTwoFactorMethod().name());
+            insert.setString(6, user.getTwoFactorSecret());
+            insert.setBoolean(7, user.getIsTwoFactorEnabled());
+            insert.setBoolean(8, user.getIsEmailVerified());
+            insert.setString(9, user.getEmailVerificationCode());
+            if (user.getEmailVerificationExpiresAt() == null) {
+                insert.setNull(10, Types.TIMESTAMP);
+            } else {
+                insert.setTimestamp(10, Timestamp.valueOf(user.getEmailVerificationExpiresAt()));
+            }
+            insert.setTimestamp(11, timestamp);
+            insert.setTimestamp(12, timestamp);
+            insert.setString(13, User.UserStatus.ACTIVE.name());
+            insert.setInt(14, 0);
+        }
+
+        private void queueEmails(List<Pending> rows) {
+            for (Pending row : rows) {
+                if (row.verificationCode != null) {
+                    unsentEmails.add(row);
+                }
+            }
+        }
+
+        void commit() throws SQLException {
+            connection.commit();
+            sinceCommit = 0;
+            // Mailed only once the rows are durable, so nobody gets a code for an account that was rolled back
+            for (Pending row : unsentEmails) {
+                try {
+                    twoFactorService.sendEmailVerificationCode(row.user, row.verificationCode);
+                } catch (RuntimeException e) {
+                    logger.error("Bulk import could not send verification email to: {} - Error: {}",
+                        row.user.getEmail(), e.getMessage());
+                }
+            }
+            unsentEmails.clear();
+        }
+
+        void logProgress() {
+            long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+            logger.info("Bulk import progress: {} records read, {} inserted, {} duplicates, {} invalid ({} records/s)",
+                read, inserted, duplicates, invalid, read * 1000 / elapsedMillis);
+        }
+
+        Map<String, Object> result() {
+            long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("read", read);
+            result.put("inserted", inserted);
+            result.put("duplicates", duplicates);
+            result.put("invalid", invalid);
+            result.put("passwordsHashed", hashed);
+            result.put("batches", batches);
+            result.put("elapsedMillis", elapsedMillis);
+            result.put("rowsPerSecond", inserted * 1000 / elapsedMillis);
+            return result;
+        }
+    }
+}
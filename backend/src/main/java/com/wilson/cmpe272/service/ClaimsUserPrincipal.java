@@ -0,0 +1,90 @@
+package com.wilson.cmpe272.service;
+
+import com.wilson.cmpe272.entity.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * User principal rebuilt from verified JWT claims without a database round trip.
+ * It is not a {@link User}: it carries no password hash or TOTP secret and cannot be handed to
+ * {@code UserRepository}; callers that need the full entity load it by email instead.
+ * Enabled and locked follow the same rules as {@link User}.
+ */
+class ClaimsUserPrincipal implements UserDetails {
+
+    private final Long id;
+    private final String email;
+    private final User.UserStatus status;
+    private final Boolean isEmailVerified;
+    private final User.TwoFactorMethod twoFactorMethod;
+    private final Boolean isTwoFactorEnabled;
+    private final Integer securityVersion;
+
+    ClaimsUserPrincipal(Long id, String email, User.UserStatus status, Boolean isEmailVerified,
+                        User.TwoFactorMethod twoFactorMethod, Boolean isTwoFactorEnabled, Integer securityVersion) {
+        this.id = id;
+        this.email = email;
+        this.status = status;
+        this.isEmailVerified = isEmailVerified;
+        this.twoFactorMethod = twoFactorMethod;
+        this.isTwoFactorEnabled = isTwoFactorEnabled;
+        this.securityVersion = securityVersion;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"));
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return status != User.UserStatus.SUSPENDED;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return status == User.UserStatus.ACTIVE && Boolean.TRUE.equals(isEmailVerified);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public User.UserStatus getStatus() {
+        return status;
+    }
+
+    public Boolean getIsEmailVerified() {
+        return isEmailVerified;
+    }
+
+    public User.TwoFactorMethod getTwoFactorMethod() {
+        return twoFactorMethod;
+    }
+
+    public Boolean getIsTwoFactorEnabled() {
+        return isTwoFactorEnabled;
+    }
+
+    public Integer getSecurityVersion() {
+        return securityVersion;
+    }
+}
@@ -0,0 +1,336 @@
+package com.wilson.cmpe272.service;
+
+import com.wilson.cmpe272.entity.EmailOutbox;
+import com.wilson.cmpe272.repository.EmailOutboxRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers outgoing mail either on the calling thread ({@code email.dispatch.mode=sync}, the default) or
+ * through a bounded in-process queue drained by a dedicated worker pool ({@code async}), so request threads
+ * never wait on the SMTP handshake. Queued mail is retried with jittered exponential backoff and, once out
+ * of attempts, written to the dead-letter log. A full queue rejects new mail with {@link TooManyRequestsException}.
+ * <p>
+ * In {@code outbox} mode mail is written to the {@code email_outbox} table inside the caller's transaction
+ * and delivered later by {@link EmailOutboxRelay}.
+ * <p>
+ * With {@code spring.threads.virtual.enabled} the queue workers are virtual threads, and the SMTP exchange
+ * itself is handed to a small platform-thread pool whenever the sender is a virtual thread: Jakarta Mail's
+ * transport holds monitors across network I/O, which would pin the caller's carrier thread for the whole send.
+ */
+@Service
+public class EmailDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailDispatcher.class);
+
+    // Mail that could not be delivered after all retries; route this logger to its own appender to alert on it
+    private static final Logger deadLetterLogger = LoggerFactory.getLogger("com.wilson.cmpe272.email.deadletter");
+
+    private static final long QUEUE_FULL_RETRY_AFTER_SECONDS = 5;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Value("${email.dispatch.mode:sync}")
+    private String mode;
+
+    @Value("${email.dispatch.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${email.dispatch.worker-threads:4}")
+    private int workerThreads;
+
+    @Value("${email.dispatch.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${email.dispatch.initial-backoff-ms:1000}")
+    private long initialBackoffMillis;
+
+    @Value("${email.dispatch.max-backoff-ms:60000}")
+    private long maxBackoffMillis;
+
+    @Value("${email.dispatch.transport-threads:4}")
+    private int transportThreads;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private ThreadPoolExecutor workers;
+    private ScheduledExecutorService retryScheduler;
+
+    // Jobs waiting out their backoff; whoever removes a job (the retry timer or shutdown) requeues it
+    private final Set<EmailJob> awaitingRetry = ConcurrentHashMap.newKeySet();
+
+    // Platform threads that perform SMTP sends for virtual-thread callers; null unless virtual threads are enabled
+    private ExecutorService transport;
+
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong offloadedSends = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        if (virtualThreads) {
+            transport = Executors.newFixedThreadPool(transportThreads, VirtualThreads.platformFactory("email-transport"));
+            logger.info("Virtual-thread mail sends run on {} platform transport threads", transportThreads);
+        }
+        if (!isAsync()) {
+            logger.info("Email dispatch mode: {}", isOutbox() ? "outbox" : "sync");
+            return;
+        }
+        workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), VirtualThreads.factory("email-dispatch", virtualThreads));
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(
+            VirtualThreads.factory("email-dispatch-retry", virtualThreads));
+        logger.info("Email dispatch mode: async ({} {} workers, queue capacity {}, up to {} attempts)",
+            workerThreads, virtualThreads ? "virtual" : "platform", queueCapacity, maxAttempts);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (workers != null) {
+            drainWorkers();
+        }
+        if (transport != null) {
+            transport.shutdown();
+        }
+    }
+
+    // Mail waiting for a retry gets one last attempt now instead of being dropped with its timer
+    private void drainWorkers() {
+        retryScheduler.shutdownNow();
+        for (EmailJob job : awaitingRetry) {
+            if (awaitingRetry.remove(job)) {
+                try {
+                    workers.execute(job);
+                } catch (RejectedExecutionException e) {
+                    deadLetter(job, "application shut down before delivery");
+                }
+            }
+        }
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                List<Runnable> pending = workers.shutdownNow();
+                for (Runnable job : pending) {
+                    deadLetter((EmailJob) job, "application shut down before delivery");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isAsync() {
+        return "async".equalsIgnoreCase(mode);
+    }
+
+    public boolean isOutbox() {
+        return "outbox".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * Sends the message now (sync mode), queues it for delivery (async mode) or records it in the outbox
+     * as part of the current transaction (outbox mode).
+     * In sync mode delivery failures propagate to the caller exactly as before.
+     */
+    public void dispatch(SimpleMailMessage message, String description) {
+        if (isOutbox()) {
+            emailOutboxRepository.save(new EmailOutbox(message.getFrom(), recipient(message),
+                message.getSubject(), message.getText(), description));
+            logger.info("{} recorded in outbox for: {}", description, recipient(message));
+            return;
+        }
+        if (!isAsync()) {
+            send(message, description);
+            return;
+        }
+        try {
+            workers.execute(new EmailJob(message, description));
+            logger.info("{} queued for delivery to: {}", description, recipient(message));
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            logger.warn("Email queue full ({} pending), rejecting {} to: {}", workers.getQueue().size(), description, recipient(message));
+            throw new TooManyRequestsException("Too many pending emails, please try again shortly", QUEUE_FULL_RETRY_AFTER_SECONDS);
+        }
+    }
+
+    // Sends immediately on the calling thread, recording latency and failures; used by the outbox relay
+    public void deliver(SimpleMailMessage message, String description) {
+        send(message, description);
+    }
+
+    private void send(SimpleMailMessage message, String description) {
+        long start = System.nanoTime();
+        try {
+            if (transport != null && Thread.currentThread().isVirtual()) {
+                sendOnTransportThread(message);
+            } else {
+                mailSender.send(message);
+            }
+            sent.incrementAndGet();
+            logger.info("{} sent successfully to: {}", description, recipient(message));
+        } catch (RuntimeException e) {
+            failedAttempts.incrementAndGet();
+            logger.error("Failed to send {} to: {} - Error: {}", description, recipient(message), e.getMessage());
+            throw e;
+        } finally {
+            sendLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    // The virtual caller parks on the future, which releases its carrier thread while the platform thread is pinned
+    private void sendOnTransportThread(SimpleMailMessage message) {
+        offloadedSends.incrementAndGet();
+        Future<?> result = transport.submit(() -> mailSender.send(message));
+        try {
+            result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new MailSendException("Mail transport failed", e.getCause());
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new MailSendException("Interrupted while sending mail", e);
+        }
+    }
+
+    private void attempt(EmailJob job) {
+        job.attempts++;
+        try {
+            send(job.message, job.description);
+        } catch (RuntimeException e) {
+            job.lastError = e.getMessage();
+            scheduleRetry(job);
+        }
+    }
+
+    private void scheduleRetry(EmailJob job) {
+        if (job.attempts >= maxAttempts) {
+            deadLetter(job, job.lastError);
+            return;
+        }
+        long delay = retryDelayMillis(job.attempts);
+        retried.incrementAndGet();
+        logger.info("Retrying {} to: {} in {} ms (attempt {} of {})", job.description, recipient(job.message), delay, job.attempts + 1, maxAttempts);
+        awaitingRetry.add(job);
+        try {
+            retryScheduler.schedule(() -> requeue(job), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            if (awaitingRetry.remove(job)) {
+                deadLetter(job, "application shutting down");
+            }
+        }
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    // Equal jitter: half the exponential delay is fixed, the other half random, so retries from an outage spread out
+    public long retryDelayMillis(int attempts) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(20, Math.max(0, attempts - 1)));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    private void requeue(EmailJob job) {
+        if (!awaitingRetry.remove(job)) {
+            return;
+        }
+        try {
+            workers.execute(job);
+        } catch (RejectedExecutionException e) {
+            // Queue still full: count it as a failed attempt and back off again
+            job.attempts++;
+            job.lastError = "email queue full";
+            scheduleRetry(job);
+        }
+    }
+
+    private void deadLetter(EmailJob job, String reason) {
+        deadLetter(recipient(job.message), job.message.getSubject(), job.description, job.attempts, reason);
+    }
+
+    public void deadLetter(String recipient, String subject, String description, int attempts, String reason) {
+        deadLettered.incrementAndGet();
+        // The body carries a one-time code, so only the envelope is logged
+        deadLetterLogger.error("Undeliverable email - to: {}, subject: {}, type: {}, attempts: {}, last error: {}",
+            recipient, subject, description, attempts, reason);
+    }
+
+    private static String recipient(SimpleMailMessage message) {
+        return message.getTo() == null ? "" : String.join(",", Arrays.asList(message.getTo()));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", isAsync() ? "async" : isOutbox() ? "outbox" : "sync");
+        if (workers != null) {
+            stats.put("queueDepth", workers.getQueue().size());
+            stats.put("queueCapacity", queueCapacity);
+            stats.put("activeWorkers", workers.getActiveCount());
+        }
+        stats.put("sent", sent.get());
+        stats.put("failedAttempts", failedAttempts.get());
+        stats.put("retried", retried.get());
+        stats.put("deadLettered", deadLettered.get());
+        stats.put("rejected", rejected.get());
+        if (transport != null) {
+            stats.put("offloadedSends", offloadedSends.get());
+        }
+        stats.put("sendLatency", sendLatency.snapshot());
+        return stats;
+    }
+
+    private final class EmailJob implements Runnable {
+        private final SimpleMailMessage message;
+        private final String description;
+        private int attempts;
+        private String lastError;
+
+        private EmailJob(SimpleMailMessage message, String description) {
+            this.message = message;
+            this.description = description;
+        }
+
+        @Override
+        public void run() {
+            attempt(this);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.wilson.cmpe272.service;
+
+import com.wilson.cmpe272.entity.User;
+import com.wilson.cmpe272.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites emails stored before signup started normalizing them (see {@link User#normalizeEmail}), so every
+ * lookup by the normalized address finds its row on any database collation. Rows are read in id-ordered pages of
+ * {@code id, email} and compared in Java, because whether {@code email <> LOWER(email)} sees a case difference
+ * depends on the column's collation. Each rewrite is a conditional single-row UPDATE, so nodes running the job at
+ * the same time, or a signup racing it, cannot clobber each other. A row whose normalized address already belongs
+ * to another account is left alone and logged; those accounts need merging by hand.
+ * <p>
+ * Runs in the background once the application has started. After a run that logs nothing left to rewrite,
+ * {@code user-email.normalize-existing=false} skips the scan on later starts.
+ */
+@Component
+public class EmailNormalizationMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailNormalizationMigration.class);
+
+    private static final String PAGE = "SELECT id, email FROM users WHERE id > ? ORDER BY id LIMIT ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${user-email.normalize-existing:true}")
+    private boolean normalizeExisting;
+
+    @Value("${user-email.normalize-batch-size:1000}")
+    private int batchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    void normalizeOnStartup() {
+        if (!normalizeExisting) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                normalize();
+            } catch (Exception e) {
+                logger.error("Email normalization failed - Error: {}", e.getMessage());
+            }
+        }, "email-normalization");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Normalizes every stored email. Returns the counts of rewritten rows and of rows left alone because the
+     * normalized address is taken.
+     */
+    public Map<String, Long> normalize() {
+        long start = System.currentTimeMillis();
+        long afterId = 0;
+        long rewritten = 0;
+        long conflicts = 0;
+        List<StoredEmail> page;
+        do {
+            page = jdbcTemplate.query(PAGE, (rs, rowNum) -> new StoredEmail(rs.getLong("id"), rs.getString("email")),
+                afterId, batchSize);
+            for (StoredEmail stored : page) {
+                String normalized = User.normalizeEmail(stored.email);
+                if (normalized == null || normalized.equals(stored.email)) {
+                    continue;
+                }
+                try {
+                    rewritten += userRepository.replaceEmail(stored.id, stored.email, normalized);
+                } catch (DataIntegrityViolationException e) {
+                    conflicts++;
+                    logger.warn("Email of user {} not normalized: {} already belongs to another account", stored.id, normalized);
+                }
+                userCache.evict(normalized);
+            }
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).id;
+            }
+        } while (page.size() == batchSize);
+
+        if (rewritten > 0) {
+            // Cached natural ids still map the old spellings
+            entityManagerFactory.getCache().unwrap(Cache.class).evictNaturalIdData(User.class);
+        }
+        logger.info("Email normalization finished in {} ms: {} rewritten, {} left for a manual merge",
+            System.currentTimeMillis() - start, rewritten, conflicts);
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("rewritten", rewritten);
+        result.put("conflicts", conflicts);
+        return result;
+    }
+
+    private record StoredEmail(long id, String email) {
+    }
+}
@@ -0,0 +1,216 @@
+package com.wilson.cmpe272.service;
+
+import com.wilson.cmpe272.entity.EmailOutbox;
+import com.wilson.cmpe272.repository.EmailOutboxRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers mail recorded in the {@code email_outbox} table ({@code email.dispatch.mode=outbox}).
+ * <p>
+ * Each relay worker repeatedly claims a batch of due rows with a conditional update (claim token plus
+ * lease), sends them through {@link EmailDispatcher#deliver} and releases them as SENT, or back to PENDING
+ * with a backoff. Just before each send the worker restarts that row's lease, which fails if the row was
+ * re-claimed after the batch lease ran out, so a slow batch skips the row instead of sending it twice; release
+ * likewise only applies while the claim token still matches. If a node dies between sending and releasing,
+ * the lease lapses and the row is sent again (at-least-once). Sent and failed rows, codes included, are deleted
+ * after {@code email.outbox.retention-hours}. Throughput scales with {@code email.outbox.relay-workers}
+ * across all nodes.
+ */
+@Service
+public class EmailOutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxRelay.class);
+
+    // Consecutive lost claim races before a worker waits for the next poll
+    private static final int MAX_CLAIM_RACES = 3;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private EmailDispatcher emailDispatcher;
+
+    @Value("${email.outbox.relay.enabled:true}")
+    private boolean relayEnabled;
+
+    @Value("${email.outbox.relay-workers:2}")
+    private int relayWorkers;
+
+    @Value("${email.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${email.outbox.poll-interval-ms:500}")
+    private long pollIntervalMillis;
+
+    @Value("${email.outbox.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${email.outbox.retention-hours:24}")
+    private long retentionHours;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private final String nodeId = resolveNodeId();
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong claimRacesLost = new AtomicLong();
+    private final AtomicLong claimsLapsed = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        if (!emailDispatcher.isOutbox() || !relayEnabled) {
+            return;
+        }
+        scheduler = Executors.newScheduledThreadPool(relayWorkers + 1,
+            VirtualThreads.factory("email-outbox-relay", virtualThreads));
+        for (int i = 0; i < relayWorkers; i++) {
+            // Stagger workers so they do not all race for the same candidates on every tick
+            long initialDelay = pollIntervalMillis * i / relayWorkers;
+            scheduler.scheduleWithFixedDelay(this::drain, initialDelay, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        scheduler.scheduleWithFixedDelay(this::purgeFinished, 1, 60, TimeUnit.MINUTES);
+        logger.info("Email outbox relay started on node {} with {} workers (batch size {}, poll interval {} ms)",
+            nodeId, relayWorkers, batchSize, pollIntervalMillis);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            // Rows claimed by an interrupted batch are picked up again once their lease lapses
+            scheduler.shutdownNow();
+        }
+    }
+
+    // Keeps claiming batches until no due rows are left
+    private void drain() {
+        try {
+            int racesLost = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                Instant now = Instant.now();
+                List<Long> candidates = emailOutboxRepository.findClaimableIds(now, PageRequest.of(0, batchSize));
+                if (candidates.isEmpty()) {
+                    return;
+                }
+                String claimToken = nodeId + ":" + UUID.randomUUID();
+                int claimed = emailOutboxRepository.claim(candidates, claimToken, now, now.plusSeconds(leaseSeconds));
+                if (claimed == 0) {
+                    // Another worker took these rows first; the next query sees what is left
+                    claimRacesLost.incrementAndGet();
+                    if (++racesLost >= MAX_CLAIM_RACES) {
+                        return;
+                    }
+                    continue;
+                }
+                racesLost = 0;
+                logger.debug("Claimed {} outbox rows with token {}", claimed, claimToken);
+                for (EmailOutbox row : emailOutboxRepository.findByClaimToken(claimToken)) {
+                    deliver(row, claimToken);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Email outbox relay pass failed - Error: {}", e.getMessage());
+        }
+    }
+
+    private void deliver(EmailOutbox row, String claimToken) {
+        if (emailOutboxRepository.renewClaim(row.getId(), claimToken, Instant.now().plusSeconds(leaseSeconds)) == 0) {
+            // The batch lease ran out before this row's turn and another worker has taken it over
+            claimsLapsed.incrementAndGet();
+            logger.debug("Skipping outbox row {} - claim lapsed before it was sent", row.getId());
+            return;
+        }
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom(row.getSender());
+        message.setTo(row.getRecipient());
+        message.setSubject(row.getSubject());
+        message.setText(row.getBody());
+        int attempts = row.getAttempts() + 1;
+        try {
+            emailDispatcher.deliver(message, row.getDescription());
+        } catch (RuntimeException e) {
+            if (attempts >= emailDispatcher.getMaxAttempts()) {
+                failed.incrementAndGet();
+                release(row, claimToken, EmailOutbox.Status.FAILED, attempts, row.getNextAttemptAt(), e.getMessage(), null);
+                emailDispatcher.deadLetter(row.getRecipient(), row.getSubject(), row.getDescription(), attempts, e.getMessage());
+            } else {
+                retried.incrementAndGet();
+                Instant nextAttempt = Instant.now().plusMillis(emailDispatcher.retryDelayMillis(attempts));
+                release(row, claimToken, EmailOutbox.Status.PENDING, attempts, nextAttempt, e.getMessage(), null);
+            }
+            return;
+        }
+        sent.incrementAndGet();
+        release(row, claimToken, EmailOutbox.Status.SENT, attempts, row.getNextAttemptAt(), null, Instant.now());
+    }
+
+    private void release(EmailOutbox row, String claimToken, EmailOutbox.Status status, int attempts,
+                         Instant nextAttemptAt, String lastError, Instant sentAt) {
+        String error = lastError == null ? null : lastError.substring(0, Math.min(lastError.length(), 1000));
+        int updated = emailOutboxRepository.release(row.getId(), claimToken, status, attempts, nextAttemptAt, error, sentAt);
+        if (updated == 0) {
+            // Lease ran out mid-batch and another worker re-claimed the row; it may be sent twice
+            logger.warn("Lost claim on outbox row {} before it was released as {}", row.getId(), status);
+        }
+    }
+
+    // Rows carry plaintext codes, so delivered and dead-lettered ones are not kept past the retention period
+    private void purgeFinished() {
+        try {
+            int purged = emailOutboxRepository.deleteFinishedBefore(Instant.now().minus(retentionHours, ChronoUnit.HOURS));
+            logger.debug("Purged {} sent or failed outbox rows", purged);
+        } catch (Exception e) {
+            logger.error("Email outbox purge failed - Error: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        boolean running = scheduler != null;
+        stats.put("relayRunning", running);
+        if (running) {
+            stats.put("pending", emailOutboxRepository.countByStatus(EmailOutbox.Status.PENDING));
+            stats.put("failed", emailOutboxRepository.countByStatus(EmailOutbox.Status.FAILED));
+            stats.put("relayWorkers", relayWorkers);
+            stats.put("sentByThisNode", sent.get());
+            stats.put("retriedByThisNode", retried.get());
+            stats.put("failedByThisNode", failed.get());
+            stats.put("claimRacesLost", claimRacesLost.get());
+            stats.put("claimsLapsed", claimsLapsed.get());
+        }
+        return stats;
+    }
+
+    private static String resolveNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
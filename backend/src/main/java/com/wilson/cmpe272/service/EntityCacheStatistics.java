@@ -0,0 +1,53 @@
+package com.wilson.cmpe272.service;
+
+import com.wilson.cmpe272.entity.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exposes Hibernate's second-level cache counters for the {@link User} regions.
+ */
+@Service
+public class EntityCacheStatistics {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    public Map<String, Object> getStats() {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        Statistics statistics = sessionFactory.getStatistics();
+        boolean enabled = sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("statisticsEnabled", statistics.isStatisticsEnabled());
+        if (!statistics.isStatisticsEnabled() || !enabled) {
+            return stats;
+        }
+        stats.put(User.CACHE_REGION, regionStats(statistics.getDomainDataRegionStatistics(User.CACHE_REGION)));
+        stats.put(User.NATURAL_ID_CACHE_REGION, regionStats(statistics.getDomainDataRegionStatistics(User.NATURAL_ID_CACHE_REGION)));
+        // Work that still reached the database
+        stats.put("entityLoads", statistics.getEntityLoadCount());
+        stats.put("naturalIdQueries", statistics.getNaturalIdQueryExecutionCount());
+        stats.put("queryExecutions", statistics.getQueryExecutionCount());
+        return stats;
+    }
+
+    private Map<String, Object> regionStats(CacheRegionStatistics region) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hits = region.getHitCount();
+        long misses = region.getMissCount();
+        stats.put("size", region.getElementCountInMemory());
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("puts", region.getPutCount());
+        stats.put("hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        return stats;
+    }
+}
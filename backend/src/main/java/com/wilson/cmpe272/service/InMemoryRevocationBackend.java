@@ -0,0 +1,42 @@
+package com.wilson.cmpe272.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Node-local revocations only (the default): the blacklist's in-memory store is the single source of truth.
+ */
+@Service
+@ConditionalOnProperty(name = "jwt.blacklist.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRevocationBackend implements RevocationBackend {
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    @Override
+    public void publish(TokenDigest digest, long expiresAtEpochSeconds) {
+    }
+
+    @Override
+    public List<RevocationEvent> fetchAfter(long recordedAtEpochMicros, long sequence, int limit) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void remove(TokenDigest digest) {
+    }
+
+    @Override
+    public void clear() {
+    }
+
+    @Override
+    public int purgeExpired(long nowEpochSeconds) {
+        return 0;
+    }
+}
@@ -0,0 +1,67 @@
+package com.wilson.cmpe272.service;
+
+import com.wilson.cmpe272.entity.TokenRevocation;
+import com.wilson.cmpe272.repository.TokenRevocationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Revocations shared across nodes through the application's datasource ({@code token_revocations} table).
+ */
+@Service
+@ConditionalOnProperty(name = "jwt.blacklist.store", havingValue = "jdbc")
+public class JdbcRevocationBackend implements RevocationBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcRevocationBackend.class);
+
+    @Autowired
+    private TokenRevocationRepository tokenRevocationRepository;
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    @Override
+    public void publish(TokenDigest digest, long expiresAtEpochSeconds) {
+        tokenRevocationRepository.save(new TokenRevocation(digest.getHigh(), digest.getLow(),
+            Instant.ofEpochSecond(expiresAtEpochSeconds)));
+        logger.debug("Revocation published to shared store");
+    }
+
+    @Override
+    public List<RevocationEvent> fetchAfter(long recordedAtEpochMicros, long sequence, int limit) {
+        List<TokenRevocation> rows = tokenRevocationRepository.findAfter(
+            Instant.EPOCH.plus(recordedAtEpochMicros, ChronoUnit.MICROS), sequence, PageRequest.of(0, limit));
+        List<RevocationEvent> events = new ArrayList<>(rows.size());
+        for (TokenRevocation row : rows) {
+            events.add(new RevocationEvent(row.getId(), row.getDigestHigh(), row.getDigestLow(),
+                row.getExpiresAt().getEpochSecond(), ChronoUnit.MICROS.between(Instant.EPOCH, row.getCreatedAt())));
+        }
+        return events;
+    }
+
+    @Override
+    public void remove(TokenDigest digest) {
+        tokenRevocationRepository.deleteByDigest(digest.getHigh(), digest.getLow());
+    }
+
+    @Override
+    public void clear() {
+        tokenRevocationRepository.deleteAllInBatch();
+    }
+
+    @Override
+    public int purgeExpired(long nowEpochSeconds) {
+        return tokenRevocationRepository.deleteExpired(Instant.ofEpochSecond(nowEpochSeconds));
+    }
+}
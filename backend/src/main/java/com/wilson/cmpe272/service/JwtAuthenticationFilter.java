@@ -1,5 +1,7 @@
 package com.wilson.cmpe272.service;
 
+import com.wilson.cmpe272.config.ClusterSettings;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -7,6 +9,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -28,6 +31,26 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsService userDetailsService;
     
+    @Autowired
+    private SecurityVersionService securityVersionService;
+    
+    @Autowired
+    private ClusterSettings clusterSettings;
+    
+    // When enabled, the principal is rebuilt from token claims instead of loading the user on every request
+    @Value("${jwt.stateless-authentication.enabled:false}")
+    private boolean statelessAuthentication;
+    
+    // Stale claims are only detected for changes made on this node (SecurityVersionService), so on a cluster a
+    // password change, suspension or 2FA change on one node would not reach the others until the token expired
+    @PostConstruct
+    void checkStatelessMode() {
+        if (statelessAuthentication && clusterSettings.isClustered()) {
+            throw new IllegalStateException("jwt.stateless-authentication.enabled cannot be used on a clustered node "
+                + "(a shared jwt.blacklist.store, verification.lockout.store or totp.replay-guard.mode is configured)");
+        }
+    }
+    
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
                                   FilterChain filterChain) throws ServletException, IOException {
@@ -35,6 +58,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
         final String userEmail;
+        final VerifiedClaims claims;
         
         logger.debug("Processing request: {} {}", request.getMethod(), request.getRequestURI());
         
@@ -48,7 +72,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         logger.debug("Extracting JWT token from Authorization header");
         
         try {
-            userEmail = jwtService.extractUsername(jwt);
+            // Verify signature and parse claims once; the result is reused for validation below
+            claims = jwtService.verifyToken(jwt);
+            userEmail = claims.getSubject();
             logger.debug("Extracted username from JWT: {}", userEmail);
         } catch (Exception e) {
             logger.warn("Failed to extract username from JWT token: {}", e.getMessage());
@@ -59,9 +85,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             logger.debug("Loading user details for authentication: {}", userEmail);
             try {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+                UserDetails userDetails = resolvePrincipal(userEmail, claims);
                 
-                if (jwtService.validateToken(jwt, userDetails)) {
+                if (jwtService.validateToken(jwt, claims, userDetails)) {
                     logger.info("JWT token validated successfully for user: {}. User enabled: {}. Account non-locked: {}",
                         userEmail, userDetails.isEnabled(), userDetails.isAccountNonLocked());
                     
@@ -85,4 +111,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         filterChain.doFilter(request, response);
     }
+    
+    private UserDetails resolvePrincipal(String userEmail, VerifiedClaims claims) {
+        if (statelessAuthentication && jwtService.hasPrincipalClaims(claims)) {
+            Long userId = jwtService.extractUserId(claims);
+            if (!securityVersionService.isStale(userId, jwtService.extractSecurityVersion(claims))) {
+                logger.debug("Building principal from JWT claims for user: {}", userEmail);
+                return jwtService.buildPrincipal(claims);
+            }
+            logger.info("Account changed since token was issued, loading current user details for: {}", userEmail);
+        }
+        return this.userDetailsService.loadUserByUsername(userEmail);
+    }
 }
@@ -1,5 +1,6 @@
 package com.wilson.cmpe272.service;
 
+import com.wilson.cmpe272.entity.User;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import org.slf4j.Logger;
@@ -9,10 +10,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
 import javax.crypto.SecretKey;
+import java.util.ArrayDeque;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 @Service
@@ -20,22 +24,58 @@ public class JwtService {
     
     private static final Logger logger = LoggerFactory.getLogger(JwtService.class);
     
+    // Principal claims embedded at issue time so requests can authenticate without loading the user
+    static final String CLAIM_USER_ID = "uid";
+    static final String CLAIM_STATUS = "status";
+    static final String CLAIM_EMAIL_VERIFIED = "emailVerified";
+    static final String CLAIM_TWO_FACTOR_METHOD = "twoFactorMethod";
+    static final String CLAIM_TWO_FACTOR_ENABLED = "twoFactorEnabled";
+    static final String CLAIM_SECURITY_VERSION = "securityVersion";
+    
     @Value("${jwt.secret}")
     private String secret;
     
     @Value("${jwt.expiration}")
     private Long expiration;
     
+    // Upper bound on verified tokens kept in memory; repeat requests with a cached token skip HS256 verification
+    @Value("${jwt.claims-cache.max-size:10000}")
+    private int claimsCacheMaxSize;
+    
     @Autowired
     private TokenBlacklistService tokenBlacklistService;
     
+    // Key and parser are immutable and thread-safe, so they are built once instead of per call
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+    
+    private final ConcurrentHashMap<TokenDigest, VerifiedClaims> claimsCache = new ConcurrentHashMap<>();
+    
+    // Cached claims in the order this node first verified them, which is not expiry order: a token issued long ago
+    // or elsewhere can be first seen just before it expires. Eviction only looks at the head, so an expired entry
+    // behind a live one stays until it reaches the head; lookups check expiry, so it is never served. Guarded by
+    // itself; only touched after a signature check, never on a cache hit
+    private final ArrayDeque<VerifiedClaims> claimsByAge = new ArrayDeque<>();
+    
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        jwtParser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        logger.info("JWT signing key and parser initialized. Claims cache max size: {}", claimsCacheMaxSize);
+    }
+    
     private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+        return signingKey;
     }
     
     public String generateToken(UserDetails userDetails) {
         logger.debug("Generating JWT token for user: {}", userDetails.getUsername());
         Map<String, Object> claims = new HashMap<>();
+        if (userDetails instanceof User user) {
+            addPrincipalClaims(claims, user);
+        }
         String token = createToken(claims, userDetails.getUsername());
         logger.info("JWT token generated successfully for user: {}", userDetails.getUsername());
         return token;
@@ -48,6 +88,41 @@ public class JwtService {
         return token;
     }
     
+    private void addPrincipalClaims(Map<String, Object> claims, User user) {
+        claims.put(CLAIM_USER_ID, user.getId());
+        claims.put(CLAIM_STATUS, user.getStatus() != null ? user.getStatus().name() : null);
+        claims.put(CLAIM_EMAIL_VERIFIED, Boolean.TRUE.equals(user.getIsEmailVerified()));
+        claims.put(CLAIM_TWO_FACTOR_METHOD, user.getTwoFactorMethod() != null ? user.getTwoFactorMethod().name() : null);
+        claims.put(CLAIM_TWO_FACTOR_ENABLED, Boolean.TRUE.equals(user.getIsTwoFactorEnabled()));
+        claims.put(CLAIM_SECURITY_VERSION, SecurityVersionService.versionOf(user.getSecurityVersion()));
+    }
+    
+    public boolean hasPrincipalClaims(VerifiedClaims verifiedClaims) {
+        Claims claims = verifiedClaims.getClaims();
+        return claims.get(CLAIM_USER_ID) != null && claims.get(CLAIM_SECURITY_VERSION) != null;
+    }
+    
+    public Long extractUserId(VerifiedClaims verifiedClaims) {
+        return verifiedClaims.getClaims().get(CLAIM_USER_ID, Long.class);
+    }
+    
+    public Integer extractSecurityVersion(VerifiedClaims verifiedClaims) {
+        return verifiedClaims.getClaims().get(CLAIM_SECURITY_VERSION, Integer.class);
+    }
+    
+    // Rebuilds the authenticated principal purely from verified claims (no database access)
+    public UserDetails buildPrincipal(VerifiedClaims verifiedClaims) {
+        Claims claims = verifiedClaims.getClaims();
+        String status = claims.get(CLAIM_STATUS, String.class);
+        String twoFactorMethod = claims.get(CLAIM_TWO_FACTOR_METHOD, String.class);
+        return new ClaimsUserPrincipal(extractUserId(verifiedClaims), verifiedClaims.getSubject(),
+            status != null ? User.UserStatus.valueOf(status) : null,
+            claims.get(CLAIM_EMAIL_VERIFIED, Boolean.class),
+            twoFactorMethod != null ? User.TwoFactorMethod.valueOf(twoFactorMethod) : null,
+            claims.get(CLAIM_TWO_FACTOR_ENABLED, Boolean.class),
+            extractSecurityVersion(verifiedClaims));
+    }
+    
     private String createToken(Map<String, Object> claims, String subject) {
         logger.debug("Creating JWT token for subject: {}", subject);
         String token = Jwts.builder()
@@ -85,38 +160,96 @@ public class JwtService {
     
     private Claims extractAllClaims(String token) {
         logger.debug("Extracting all claims from JWT token");
+        return verifyToken(token).getClaims();
+    }
+    
+    /**
+     * Verifies the token signature and parses its claims exactly once.
+     * Results are cached by token digest until the token's own expiration, so later requests
+     * carrying the same token skip signature verification entirely.
+     */
+    public VerifiedClaims verifyToken(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("JWT token is empty");
+        }
+        TokenDigest digest = TokenDigest.of(token);
+        long now = System.currentTimeMillis();
+        
+        VerifiedClaims cached = claimsCache.get(digest);
+        if (cached != null) {
+            if (!cached.isExpired(now)) {
+                logger.debug("JWT claims served from verification cache");
+                return cached;
+            }
+            claimsCache.remove(digest, cached);
+        }
+        
         try {
-            Claims claims = Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
-            logger.debug("All claims extracted successfully");
-            return claims;
+            Claims claims = jwtParser.parseSignedClaims(token).getPayload();
+            VerifiedClaims verified = new VerifiedClaims(digest, claims);
+            cacheVerifiedClaims(verified, now);
+            logger.debug("JWT token verified and claims parsed successfully");
+            return verified;
         } catch (JwtException e) {
             logger.error("Failed to extract claims from JWT token: {}", e.getMessage());
             throw e;
         }
     }
     
-    private Boolean isTokenExpired(String token) {
-        logger.debug("Checking if JWT token is expired");
-        Boolean expired = extractExpiration(token).before(new Date());
-        logger.debug("Token expired: {}", expired);
-        return expired;
+    private void cacheVerifiedClaims(VerifiedClaims verified, long now) {
+        if (claimsCacheMaxSize <= 0) {
+            return;
+        }
+        claimsCache.put(verified.getDigest(), verified);
+        synchronized (claimsByAge) {
+            claimsByAge.addLast(verified);
+            evictClaims(now);
+        }
+    }
+    
+    // Drops expired entries at the head and, past the size limit, the earliest seen. Entries already removed from
+    // the map (expired on lookup) are still in the deque and are dropped from it here, so the deque is bounded by
+    // the limit too
+    private void evictClaims(long now) {
+        VerifiedClaims oldest;
+        int evicted = 0;
+        while ((oldest = claimsByAge.peekFirst()) != null
+                && (claimsByAge.size() > claimsCacheMaxSize || oldest.isExpired(now))) {
+            claimsByAge.pollFirst();
+            claimsCache.remove(oldest.getDigest(), oldest);
+            evicted++;
+        }
+        if (evicted > 0) {
+            logger.debug("JWT claims cache evicted {} entries. Current size: {}", evicted, claimsCache.size());
+        }
+    }
+    
+    public int getClaimsCacheSize() {
+        return claimsCache.size();
     }
     
     public Boolean validateToken(String token, UserDetails userDetails) {
+        final VerifiedClaims claims;
+        try {
+            claims = verifyToken(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            logger.warn("JWT token validation failed: {}", e.getMessage());
+            return false;
+        }
+        return validateToken(token, claims, userDetails);
+    }
+    
+    public Boolean validateToken(String token, VerifiedClaims claims, UserDetails userDetails) {
         logger.debug("Validating JWT token for user: {}", userDetails.getUsername());
         
-        // Check if token is blacklisted first
-        if (tokenBlacklistService.isTokenBlacklisted(token)) {
+        // Check if token is blacklisted first (by the digest computed during verification)
+        if (tokenBlacklistService.isDigestBlacklisted(claims.getDigest())) {
             logger.warn("JWT token is blacklisted for user: {}", userDetails.getUsername());
             return false;
         }
         
-        final String username = extractUsername(token);
-        Boolean isValid = (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        final String username = claims.getSubject();
+        Boolean isValid = (userDetails.getUsername().equals(username) && !claims.isExpired(System.currentTimeMillis()));
         logger.info("JWT token validation result for user {}: {}", userDetails.getUsername(), isValid);
         return isValid;
     }
@@ -131,10 +264,7 @@ public class JwtService {
         }
         
         try {
-            Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token);
+            verifyToken(token);
             logger.debug("JWT token format and signature validation successful");
             return true;
         } catch (JwtException | IllegalArgumentException e) {
@@ -0,0 +1,180 @@
+package com.wilson.cmpe272.service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Seals and opens the stateless login challenges handed out between the password step and the code step.
+ * <p>
+ * A challenge is 66 bytes, URL-safe Base64 encoded: version, kind (emailed code or authenticator app), user
+ * id, expiry (epoch millis), a 128-bit nonce, a keyed hash of the emailed code and a 128-bit HMAC-SHA256 tag
+ * over all of it. The code is never stored, only {@code HMAC(codeKey, nonce || userId || code)}, so the
+ * challenge does not reveal it and a 6-digit code cannot be brute-forced offline without the key. Any node
+ * holding the same keys can verify a challenge; single use is enforced by the caller through the nonce.
+ */
+public final class LoginChallengeCodec {
+
+    public static final byte EMAIL_CODE = 1;
+    public static final byte AUTHENTICATOR = 2;
+
+    private static final byte VERSION = 1;
+    private static final int NONCE_LENGTH = 16;
+    private static final int HASH_LENGTH = 16;
+    private static final int PAYLOAD_LENGTH = 1 + 1 + 8 + 8 + NONCE_LENGTH + HASH_LENGTH;
+    private static final int LENGTH = PAYLOAD_LENGTH + HASH_LENGTH;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec sealKey;
+    private final SecretKeySpec codeKey;
+    private final ReusableState<Mac> mac = new ReusableState<>(() -> {
+        try {
+            return Mac.getInstance("HmacSHA256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    });
+
+    public LoginChallengeCodec(byte[] sealKey, byte[] codeKey) {
+        this.sealKey = new SecretKeySpec(sealKey, "HmacSHA256");
+        this.codeKey = new SecretKeySpec(codeKey, "HmacSHA256");
+    }
+
+    /**
+     * Derives a 256-bit key for one purpose from a shared secret, so one configured secret can back several keys.
+     */
+    public static byte[] deriveKey(byte[] secret, String purpose) {
+        try {
+            Mac derivation = Mac.getInstance("HmacSHA256");
+            derivation.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return derivation.doFinal(purpose.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Key derivation failed", e);
+        }
+    }
+
+    /**
+     * @param code the emailed code, or null for an authenticator-app challenge
+     */
+    public String seal(long userId, String code, long expiresAtMillis, byte[] nonce) {
+        if (nonce.length != NONCE_LENGTH) {
+            throw new IllegalArgumentException("nonce must be " + NONCE_LENGTH + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH);
+        buffer.put(VERSION);
+        buffer.put(code == null ? AUTHENTICATOR : EMAIL_CODE);
+        buffer.putLong(userId);
+        buffer.putLong(expiresAtMillis);
+        buffer.put(nonce);
+        buffer.put(code == null ? new byte[HASH_LENGTH] : codeHash(nonce, userId, code));
+        buffer.put(hmac(sealKey, buffer.array(), 0, PAYLOAD_LENGTH), 0, HASH_LENGTH);
+        return ENCODER.encodeToString(buffer.array());
+    }
+
+    /**
+     * Checks the tag and decodes the challenge. Returns null if it is malformed or was not sealed with this key;
+     * expiry and the code are left to the caller.
+     */
+    public Challenge open(String token) {
+        if (token == null || token.length() != (LENGTH * 4 + 2) / 3) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = DECODER.decode(token);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (bytes.length != LENGTH || bytes[0] != VERSION) {
+            return null;
+        }
+        byte[] tag = new byte[HASH_LENGTH];
+        System.arraycopy(hmac(sealKey, bytes, 0, PAYLOAD_LENGTH), 0, tag, 0, HASH_LENGTH);
+        byte[] presented = new byte[HASH_LENGTH];
+        System.arraycopy(bytes, PAYLOAD_LENGTH, presented, 0, HASH_LENGTH);
+        if (!MessageDigest.isEqual(tag, presented)) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, PAYLOAD_LENGTH - 1);
+        byte kind = buffer.get();
+        long userId = buffer.getLong();
+        long expiresAtMillis = buffer.getLong();
+        byte[] nonce = new byte[NONCE_LENGTH];
+        buffer.get(nonce);
+        byte[] codeHash = new byte[HASH_LENGTH];
+        buffer.get(codeHash);
+        return new Challenge(kind, userId, expiresAtMillis, nonce, codeHash);
+    }
+
+    /**
+     * Constant-time check of a submitted code against an email-code challenge.
+     */
+    public boolean matchesCode(Challenge challenge, String code) {
+        if (challenge.getKind() != EMAIL_CODE || code == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(challenge.codeHash, codeHash(challenge.nonce, challenge.getUserId(), code));
+    }
+
+    private byte[] codeHash(byte[] nonce, long userId, String code) {
+        byte[] codeBytes = code.getBytes(StandardCharsets.UTF_8);
+        byte[] input = ByteBuffer.allocate(NONCE_LENGTH + 8 + codeBytes.length)
+            .put(nonce).putLong(userId).put(codeBytes).array();
+        byte[] hash = new byte[HASH_LENGTH];
+        System.arraycopy(hmac(codeKey, input, 0, input.length), 0, hash, 0, HASH_LENGTH);
+        return hash;
+    }
+
+    private byte[] hmac(SecretKeySpec key, byte[] input, int offset, int length) {
+        Mac instance = mac.acquire();
+        try {
+            instance.init(key);
+            instance.update(input, offset, length);
+            return instance.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid login challenge key", e);
+        } finally {
+            mac.release(instance);
+        }
+    }
+
+    public static final class Challenge {
+        private final byte kind;
+        private final long userId;
+        private final long expiresAtMillis;
+        private final byte[] nonce;
+        private final byte[] codeHash;
+
+        private Challenge(byte kind, long userId, long expiresAtMillis, byte[] nonce, byte[] codeHash) {
+            this.kind = kind;
+            this.userId = userId;
+            this.expiresAtMillis = expiresAtMillis;
+            this.nonce = nonce;
+            this.codeHash = codeHash;
+        }
+
+        public byte getKind() {
+            return kind;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public long getExpiresAtMillis() {
+            return expiresAtMillis;
+        }
+
+        // The nonce as a fixed-width key for the used-challenge cache
+        public TokenDigest getNonceKey() {
+            ByteBuffer buffer = ByteBuffer.wrap(nonce);
+            return new TokenDigest(buffer.getLong(), buffer.getLong());
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.wilson.cmpe272.service;
+
+import com.wilson.cmpe272.entity.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where the login code lives between {@code /login} and {@code /login-verify}.
+ * <p>
+ * In {@code stored} mode (the default) the emailed code and its expiry are saved on the user row, as before.
+ * In {@code signed} mode {@code /login} returns a sealed challenge instead (see {@link LoginChallengeCodec})
+ * and the client sends it back with the code, so the {@code users} table is not written until the login
+ * succeeds and any node can verify the code without reading it back. Each challenge is accepted once: its
+ * nonce is remembered until the challenge expires. Used nonces are tracked per node, so behind a load
+ * balancer without sticky sessions a challenge could be replayed once on another node within its lifetime
+ * (which still requires the emailed code).
+ */
+@Service
+public class LoginChallengeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginChallengeService.class);
+
+    private static final long FULL_RETRY_AFTER_SECONDS = 5;
+
+    @Autowired
+    private SecureCodeGenerator secureCodeGenerator;
+
+    @Value("${login.challenge.mode:stored}")
+    private String mode;
+
+    // Empty means derive the keys from jwt.secret, which every node already shares
+    @Value("${login.challenge.secret:}")
+    private String secret;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    @Value("${login.challenge.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${login.challenge.max-used-nonces:100000}")
+    private int maxUsedNonces;
+
+    private LoginChallengeCodec codec;
+
+    // Nonce of every accepted (or revoked) challenge, until that challenge expires
+    private final ConcurrentHashMap<TokenDigest, Long> usedNonces = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "login-challenge-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong issued = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        if (!isSigned()) {
+            logger.info("Login challenge mode: stored");
+            return;
+        }
+        byte[] master = (secret.isEmpty() ? jwtSecret : secret).getBytes(StandardCharsets.UTF_8);
+        codec = new LoginChallengeCodec(LoginChallengeCodec.deriveKey(master, "login-challenge-seal"),
+            LoginChallengeCodec.deriveKey(master, "login-challenge-code"));
+        scheduler.scheduleWithFixedDelay(this::purgeExpired, 30, 30, TimeUnit.SECONDS);
+        logger.info("Login challenge mode: signed ({}s lifetime, keys from {})", ttlSeconds,
+            secret.isEmpty() ? "jwt.secret" : "login.challenge.secret");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public boolean isSigned() {
+        return "signed".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * Seals a challenge for the user's second step.
+     *
+     * @param code the emailed code, or null when the user verifies with an authenticator app
+     */
+    public String issue(User user, String code) {
+        byte[] nonce = new byte[16];
+        secureCodeGenerator.nextBytes(nonce);
+        issued.incrementAndGet();
+        return codec.seal(user.getId(), code, System.currentTimeMillis() + ttlSeconds * 1000, nonce);
+    }
+
+    /**
+     * Opens a challenge presented for the user. Throws {@link BadCredentialsException} if it is forged,
+     * belongs to another user or 2FA method, has expired or was already used.
+     */
+    public LoginChallengeCodec.Challenge open(String token, User user) {
+        LoginChallengeCodec.Challenge challenge = codec.open(token);
+        byte expectedKind = user.getTwoFactorMethod() == User.TwoFactorMethod.AUTHENTICATOR_APP
+            ? LoginChallengeCodec.AUTHENTICATOR : LoginChallengeCodec.EMAIL_CODE;
+        if (challenge == null || challenge.getUserId() != user.getId() || challenge.getKind() != expectedKind) {
+            rejected.incrementAndGet();
+            logger.warn("Login challenge rejected - invalid challenge for user: {}", user.getEmail());
+            throw new BadCredentialsException("Invalid login session. Please log in again.");
+        }
+        if (challenge.getExpiresAtMillis() <= System.currentTimeMillis()) {
+            rejected.incrementAndGet();
+            logger.warn("Login challenge rejected - expired for user: {}", user.getEmail());
+            throw new BadCredentialsException("Verification code has expired. Please log in again.");
+        }
+        if (usedNonces.containsKey(challenge.getNonceKey())) {
+            rejected.incrementAndGet();
+            logger.warn("Login challenge rejected - already used for user: {}", user.getEmail());
+            throw new BadCredentialsException("Verification code already used. Please log in again.");
+        }
+        return challenge;
+    }
+
+    public boolean matchesCode(LoginChallengeCodec.Challenge challenge, String code) {
+        return codec.matchesCode(challenge, code);
+    }
+
+    /**
+     * Marks a verified challenge as used. Returns false if a concurrent request used it first.
+     */
+    public boolean consume(LoginChallengeCodec.Challenge challenge) {
+        if (usedNonces.size() >= maxUsedNonces && purgeExpired() == 0) {
+            // Cannot remember another nonce, and accepting it unremembered would allow a replay
+            logger.warn("Login challenge cache full ({} entries), rejecting login", usedNonces.size());
+            throw new TooManyRequestsException("Too many logins in progress, please try again shortly",
+                FULL_RETRY_AFTER_SECONDS);
+        }
+        if (usedNonces.putIfAbsent(challenge.getNonceKey(), challenge.getExpiresAtMillis()) != null) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        accepted.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Makes a challenge unusable, e.g. after the account was locked out.
+     */
+    public void revoke(LoginChallengeCodec.Challenge challenge) {
+        usedNonces.putIfAbsent(challenge.getNonceKey(), challenge.getExpiresAtMillis());
+    }
+
+    private int purgeExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (Map.Entry<TokenDigest, Long> entry : usedNonces.entrySet()) {
+            if (entry.getValue() <= now && usedNonces.remove(entry.getKey(), entry.getValue())) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            logger.debug("Purged {} expired login challenge nonces. Current size: {}", removed, usedNonces.size());
+        }
+        return removed;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", isSigned() ? "signed" : "stored");
+        if (isSigned()) {
+            stats.put("ttlSeconds", ttlSeconds);
+            stats.put("issued", issued.get());
+            stats.put("accepted", accepted.get());
+            stats.put("rejected", rejected.get());
+            stats.put("usedNonces", usedNonces.size());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,151 @@
+package com.wilson.cmpe272.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persists {@code users.last_login_at} without saving the whole user.
+ * <p>
+ * Each login only records the timestamp in memory; the latest one per user is written every
+ * {@code login-telemetry.flush-interval-ms} (and on shutdown) as a single-column UPDATE, in JDBC batches.
+ * A user who logs in several times within an interval costs one row write, and the rest of the row
+ * (password hash, TOTP secret) is never rewritten. The update only moves the timestamp forward, so nodes
+ * flushing out of order cannot regress it. With {@code flush-interval-ms=0} each login is written at once
+ * with the same single-column update.
+ */
+@Service
+public class LoginTelemetryWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginTelemetryWriter.class);
+
+    private static final String UPDATE_LAST_LOGIN =
+        "UPDATE users SET last_login_at = ? WHERE id = ? AND (last_login_at IS NULL OR last_login_at < ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${login-telemetry.flush-interval-ms:2000}")
+    private long flushIntervalMillis;
+
+    @Value("${login-telemetry.batch-size:500}")
+    private int batchSize;
+
+    // Latest unflushed login per user id
+    private final ConcurrentHashMap<Long, LocalDateTime> pendingLogins = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "login-telemetry-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        if (isWriteBehind()) {
+            scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Last login timestamps written {}", isWriteBehind() ? "every " + flushIntervalMillis + " ms" : "immediately");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+        flush();
+    }
+
+    private boolean isWriteBehind() {
+        return flushIntervalMillis > 0;
+    }
+
+    public void recordLogin(Long userId, LocalDateTime loginAt) {
+        recorded.incrementAndGet();
+        if (!isWriteBehind()) {
+            jdbcTemplate.update(UPDATE_LAST_LOGIN, loginAt, userId, loginAt);
+            rowsWritten.incrementAndGet();
+            return;
+        }
+        pendingLogins.merge(userId, loginAt, (current, latest) -> latest.isAfter(current) ? latest : current);
+    }
+
+    /**
+     * Writes every buffered timestamp. Returns the number of rows sent to the database.
+     */
+    public synchronized int flush() {
+        if (pendingLogins.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        List<Map.Entry<Long, LocalDateTime>> batch = new ArrayList<>(Math.min(batchSize, pendingLogins.size()));
+        int written = 0;
+        try {
+            for (Map.Entry<Long, LocalDateTime> entry : pendingLogins.entrySet()) {
+                batch.add(Map.entry(entry.getKey(), entry.getValue()));
+                if (batch.size() == batchSize) {
+                    written += writeBatch(batch);
+                }
+            }
+            written += writeBatch(batch);
+        } catch (Exception e) {
+            // Unwritten entries stay buffered for the next flush
+            flushFailures.incrementAndGet();
+            logger.error("Failed to write last login timestamps - Error: {}", e.getMessage());
+        }
+        logger.debug("Wrote {} last login timestamps in {} ms", written, (System.nanoTime() - start) / 1_000_000);
+        return written;
+    }
+
+    private int writeBatch(List<Map.Entry<Long, LocalDateTime>> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> args = new ArrayList<>(batch.size());
+        for (Map.Entry<Long, LocalDateTime> entry : batch) {
+            args.add(new Object[] {entry.getValue(), entry.getKey(), entry.getValue()});
+        }
+        jdbcTemplate.batchUpdate(UPDATE_LAST_LOGIN, args);
+        for (Map.Entry<Long, LocalDateTime> entry : batch) {
+            // Keep the entry if the user logged in again while writing
+            pendingLogins.remove(entry.getKey(), entry.getValue());
+        }
+        int size = batch.size();
+        batches.incrementAndGet();
+        rowsWritten.addAndGet(size);
+        batch.clear();
+        return size;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", isWriteBehind() ? "write-behind" : "immediate");
+        stats.put("recordedLogins", recorded.get());
+        stats.put("rowsWritten", rowsWritten.get());
+        if (isWriteBehind()) {
+            stats.put("pending", pendingLogins.size());
+            stats.put("batches", batches.get());
+            stats.put("flushFailures", flushFailures.get());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,212 @@
+package com.wilson.cmpe272.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses how new password hashes are made and builds the encoder that verifies all existing ones.
+ * <p>
+ * New hashes use {@code password-hashing.algorithm} (bcrypt, argon2 or pbkdf2) and are stored with an
+ * {@code {id}} prefix; hashes from before this policy existed are unprefixed bcrypt and still verify. With
+ * {@code password-hashing.target-latency-ms} set, the cost parameter is benchmarked on this host at startup
+ * and raised until one hash takes about that long; the configured parameters are the floor. On a successful
+ * login, a hash made with another algorithm or lower parameters is replaced (see
+ * {@link UserDetailsServiceImpl#updatePassword}), so the stored population migrates as users sign in.
+ * Migration progress is reported from per-node counters of those replacements rather than by counting the
+ * {@code users} table.
+ */
+@Service
+public class PasswordHashingPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingPolicy.class);
+
+    private static final String BCRYPT = "bcrypt";
+    private static final String ARGON2 = "argon2";
+    private static final String PBKDF2 = "pbkdf2";
+
+    private static final int ARGON2_SALT_LENGTH = 16;
+    private static final int ARGON2_HASH_LENGTH = 32;
+
+    @Value("${password-hashing.algorithm:bcrypt}")
+    private String algorithm;
+
+    @Value("${password-hashing.target-latency-ms:0}")
+    private long targetLatencyMillis;
+
+    @Value("${password-hashing.bcrypt.strength:10}")
+    private int bcryptStrength;
+
+    @Value("${password-hashing.argon2.memory-kib:19456}")
+    private int argon2MemoryKib;
+
+    @Value("${password-hashing.argon2.iterations:2}")
+    private int argon2Iterations;
+
+    @Value("${password-hashing.argon2.parallelism:1}")
+    private int argon2Parallelism;
+
+    @Value("${password-hashing.pbkdf2.iterations:310000}")
+    private int pbkdf2Iterations;
+
+    private double measuredLatencyMillis;
+
+    // Hashes replaced on login on this node, by the algorithm they were made with
+    private final ConcurrentHashMap<String, AtomicLong> upgradedFrom = new ConcurrentHashMap<>();
+    private final AtomicLong upgradeConflicts = new AtomicLong();
+    private final AtomicLong upgradeFailures = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        algorithm = algorithm.trim().toLowerCase(Locale.ROOT);
+        if (!Arrays.asList(BCRYPT, ARGON2, PBKDF2).contains(algorithm)) {
+            throw new IllegalStateException("Unsupported password-hashing.algorithm: " + algorithm);
+        }
+        if (targetLatencyMillis > 0) {
+            calibrate();
+        }
+        logger.info("Password hashing: {} {}{}", algorithm, getParameters(),
+            targetLatencyMillis > 0 ? String.format(" (calibrated to %.1f ms for a %d ms target)", measuredLatencyMillis, targetLatencyMillis) : "");
+    }
+
+    /**
+     * Encoder that hashes with the current algorithm and parameters and verifies hashes of every supported kind.
+     */
+    public PasswordEncoder createEncoder() {
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT, new BCryptPasswordEncoder(bcryptStrength));
+        encoders.put(ARGON2, new Argon2PasswordEncoder(ARGON2_SALT_LENGTH, ARGON2_HASH_LENGTH,
+            argon2Parallelism, argon2MemoryKib, argon2Iterations));
+        encoders.put(PBKDF2, new VersionedPbkdf2PasswordEncoder(pbkdf2Iterations));
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(algorithm, encoders);
+        // Hashes written before the {id} prefix was introduced; they are re-hashed on the next login
+        encoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder(bcryptStrength));
+        return encoder;
+    }
+
+    // Cost grows linearly with argon2/pbkdf2 iterations and doubles per bcrypt strength step,
+    // so one measurement at a cheap setting predicts the right one
+    private void calibrate() {
+        long start = System.currentTimeMillis();
+        switch (algorithm) {
+            case BCRYPT -> {
+                double millisAtEight = measureMillis(new BCryptPasswordEncoder(8));
+                int strength = 8 + (int) Math.floor(Math.log(targetLatencyMillis / millisAtEight) / Math.log(2));
+                bcryptStrength = Math.min(31, Math.max(bcryptStrength, strength));
+            }
+            case ARGON2 -> {
+                double millisPerIteration = measureMillis(new Argon2PasswordEncoder(ARGON2_SALT_LENGTH,
+                    ARGON2_HASH_LENGTH, argon2Parallelism, argon2MemoryKib, 1));
+                argon2Iterations = Math.max(argon2Iterations, (int) (targetLatencyMillis / millisPerIteration));
+            }
+            default -> {
+                double millisPerTenThousand = measureMillis(new VersionedPbkdf2PasswordEncoder(10_000));
+                int iterations = (int) (targetLatencyMillis / millisPerTenThousand) * 10_000;
+                pbkdf2Iterations = Math.max(pbkdf2Iterations, iterations);
+            }
+        }
+        measuredLatencyMillis = measureMillis(createEncoder());
+        logger.info("Password hashing calibration took {} ms", System.currentTimeMillis() - start);
+    }
+
+    // Median of a few hashes after warm-up, so JIT compilation and a single slow run do not skew it
+    private static double measureMillis(PasswordEncoder encoder) {
+        encoder.encode("calibration-warmup");
+        long[] samples = new long[5];
+        for (int i = 0; i < samples.length; i++) {
+            long begin = System.nanoTime();
+            encoder.encode("calibration-password-" + i);
+            samples[i] = System.nanoTime() - begin;
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2] / 1_000_000.0;
+    }
+
+    /**
+     * Start of every stored hash made with the current algorithm and parameters.
+     */
+    public String getCurrentHashPrefix() {
+        return switch (algorithm) {
+            case BCRYPT -> String.format("{bcrypt}$2a$%02d$", bcryptStrength);
+            case ARGON2 -> String.format("{argon2}$argon2id$v=19$m=%d,t=%d,p=%d$",
+                argon2MemoryKib, argon2Iterations, argon2Parallelism);
+            default -> "{pbkdf2}" + VersionedPbkdf2PasswordEncoder.prefix(pbkdf2Iterations);
+        };
+    }
+
+    public void recordUpgrade(String previousHash) {
+        upgradedFrom.computeIfAbsent(algorithmOf(previousHash), id -> new AtomicLong()).incrementAndGet();
+    }
+
+    public void recordUpgradeConflict() {
+        upgradeConflicts.incrementAndGet();
+    }
+
+    public void recordUpgradeFailure() {
+        upgradeFailures.incrementAndGet();
+    }
+
+    // The {id} prefix of a stored hash; unprefixed hashes predate this policy and are bcrypt
+    private static String algorithmOf(String hash) {
+        if (hash != null && hash.startsWith("{")) {
+            int end = hash.indexOf('}');
+            if (end > 1) {
+                return hash.substring(1, end);
+            }
+        }
+        return "legacyBcrypt";
+    }
+
+    public Map<String, Object> getParameters() {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        switch (algorithm) {
+            case BCRYPT -> parameters.put("strength", bcryptStrength);
+            case ARGON2 -> {
+                parameters.put("memoryKib", argon2MemoryKib);
+                parameters.put("iterations", argon2Iterations);
+                parameters.put("parallelism", argon2Parallelism);
+            }
+            default -> parameters.put("iterations", pbkdf2Iterations);
+        }
+        return parameters;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("algorithm", algorithm);
+        stats.put("parameters", getParameters());
+        if (targetLatencyMillis > 0) {
+            stats.put("targetLatencyMillis", targetLatencyMillis);
+            stats.put("calibratedLatencyMillis", measuredLatencyMillis);
+        }
+
+        // Migration progress on this node; a full count of the users table is left to offline reporting
+        Map<String, Object> byAlgorithm = new LinkedHashMap<>();
+        long upgraded = 0;
+        for (Map.Entry<String, AtomicLong> entry : upgradedFrom.entrySet()) {
+            byAlgorithm.put(entry.getKey(), entry.getValue().get());
+            upgraded += entry.getValue().get();
+        }
+        Map<String, Object> upgrades = new LinkedHashMap<>();
+        upgrades.put("upgraded", upgraded);
+        upgrades.put("upgradedFrom", byAlgorithm);
+        upgrades.put("conflicts", upgradeConflicts.get());
+        upgrades.put("failures", upgradeFailures.get());
+        stats.put("upgrades", upgrades);
+        return stats;
+    }
+}
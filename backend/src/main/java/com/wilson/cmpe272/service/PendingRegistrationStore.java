@@ -0,0 +1,207 @@
+package com.wilson.cmpe272.service;
+
+import com.wilson.cmpe272.entity.PendingRegistration;
+import com.wilson.cmpe272.entity.User;
+import com.wilson.cmpe272.repository.PendingRegistrationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Signups awaiting email verification ({@code registration.pending.enabled}), kept out of the {@code users}
+ * table until the code is confirmed.
+ * <p>
+ * Up to {@code registration.pending.max-in-memory} registrations are held in memory; beyond that they go to
+ * the {@code pending_registrations} table. Every registration expires {@code registration.pending.ttl-hours}
+ * after signup and is purged on a timer, so abandoned signups leave nothing behind. The in-memory part is
+ * local to one node: with several nodes and no sticky sessions set {@code max-in-memory=0} so every
+ * registration is in the shared table.
+ */
+@Service
+public class PendingRegistrationStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(PendingRegistrationStore.class);
+
+    @Autowired
+    private PendingRegistrationRepository pendingRegistrationRepository;
+
+    @Value("${registration.pending.enabled:false}")
+    private boolean enabled;
+
+    @Value("${registration.pending.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${registration.pending.max-in-memory:10000}")
+    private int maxInMemory;
+
+    @Value("${registration.pending.purge-interval-seconds:60}")
+    private long purgeIntervalSeconds;
+
+    private final ConcurrentHashMap<String, PendingRegistration> registrations = new ConcurrentHashMap<>();
+
+    // Set once anything may be in the table, so lookups on a node that never overflowed stay in memory
+    private volatile boolean tableInUse;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pending-registration-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        tableInUse = maxInMemory == 0 || pendingRegistrationRepository.count() > 0;
+        scheduler.scheduleWithFixedDelay(this::purgeExpired, purgeIntervalSeconds, purgeIntervalSeconds, TimeUnit.SECONDS);
+        logger.info("Pending registrations enabled ({}h lifetime, up to {} in memory)", ttlHours, maxInMemory);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public LocalDateTime expiryFor(LocalDateTime signedUpAt) {
+        return signedUpAt.plusHours(ttlHours);
+    }
+
+    public Optional<PendingRegistration> find(String email) {
+        email = User.normalizeEmail(email);
+        LocalDateTime now = LocalDateTime.now();
+        PendingRegistration registration = registrations.get(email);
+        if (registration != null) {
+            if (!registration.isExpired(now)) {
+                return Optional.of(registration);
+            }
+            registrations.remove(email, registration);
+        }
+        if (!tableInUse) {
+            return Optional.empty();
+        }
+        return pendingRegistrationRepository.findByEmail(email).filter(stored -> !stored.isExpired(now));
+    }
+
+    /**
+     * Stores a new registration. Returns false if one for the same email is still awaiting verification.
+     */
+    public boolean add(PendingRegistration registration) {
+        String email = registration.getEmail();
+        LocalDateTime now = LocalDateTime.now();
+        if (registrations.size() < maxInMemory) {
+            while (true) {
+                PendingRegistration existing = registrations.putIfAbsent(email, registration);
+                if (existing == null) {
+                    created.incrementAndGet();
+                    return true;
+                }
+                if (!existing.isExpired(now)) {
+                    return false;
+                }
+                if (registrations.replace(email, existing, registration)) {
+                    created.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+        tableInUse = true;
+        try {
+            // An expired row that has not been purged yet would otherwise trip the unique email constraint
+            pendingRegistrationRepository.deleteExpiredByEmail(email, now);
+            pendingRegistrationRepository.save(registration);
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+        created.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Persists a change (e.g. a new code) to a registration returned by {@link #find}.
+     */
+    public void update(PendingRegistration registration) {
+        if (registration.getId() == null) {
+            // Same instance, mutated in place; re-putting it publishes the change to other threads
+            registrations.replace(registration.getEmail(), registration);
+        } else {
+            pendingRegistrationRepository.save(registration);
+        }
+    }
+
+    // Called after rows were written to the table directly (migration)
+    void tableWritten() {
+        tableInUse = true;
+    }
+
+    /**
+     * Drops a registration once it has become a user.
+     */
+    public void complete(PendingRegistration registration) {
+        completed.incrementAndGet();
+        if (registration.getId() == null) {
+            registrations.remove(registration.getEmail(), registration);
+        } else {
+            pendingRegistrationRepository.deleteById(registration.getId());
+        }
+    }
+
+    private void purgeExpired() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            int removed = 0;
+            for (Map.Entry<String, PendingRegistration> entry : registrations.entrySet()) {
+                if (entry.getValue().isExpired(now) && registrations.remove(entry.getKey(), entry.getValue())) {
+                    removed++;
+                }
+            }
+            if (tableInUse) {
+                removed += pendingRegistrationRepository.deleteExpired(now);
+            }
+            if (removed > 0) {
+                expired.addAndGet(removed);
+                logger.info("Purged {} expired pending registrations", removed);
+            }
+        } catch (Exception e) {
+            logger.error("Pending registration purge failed - Error: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) {
+            return stats;
+        }
+        stats.put("inMemory", registrations.size());
+        stats.put("maxInMemory", maxInMemory);
+        stats.put("inTable", tableInUse ? pendingRegistrationRepository.count() : 0);
+        stats.put("created", created.get());
+        stats.put("completed", completed.get());
+        stats.put("expired", expired.get());
+        return stats;
+    }
+}
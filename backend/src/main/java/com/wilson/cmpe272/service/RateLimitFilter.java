@@ -0,0 +1,361 @@
+package com.wilson.cmpe272.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wilson.cmpe272.dto.AuthResponse;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throttles the unauthenticated auth endpoints per client IP and per target email, before the request
+ * reaches Jackson, the database, BCrypt or SMTP.
+ * <p>
+ * The IP limit is checked first, from the connection alone. The email is then taken from the query string
+ * ({@code resend-code}) or read from the small JSON body with Jackson's streaming parser, and the buffered body
+ * is handed on unchanged. The parser decodes escaped keys and rejects duplicate ones, so the email limited here
+ * is always the one the controller binds; a body with an ambiguous email gets {@code 400}. Rejected requests
+ * get {@code 429} with {@code Retry-After}. The client IP is
+ * {@link HttpServletRequest#getRemoteAddr()}; behind a load balancer set
+ * {@code server.forward-headers-strategy} so it reflects the original client.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    // Auth request bodies are a few hundred bytes; anything much larger is not a legitimate client
+    private static final int MAX_BODY_BYTES = 16 * 1024;
+
+    private static final long EVICTION_INTERVAL_SECONDS = 10;
+
+    private static final JsonFactory JSON = JsonFactory.builder()
+        .enable(StreamReadFeature.STRICT_DUPLICATE_DETECTION)
+        .build();
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rate-limit.max-tracked-keys:100000}")
+    private int maxTrackedKeys;
+
+    @Value("${rate-limit.login.ip-per-minute:30}")
+    private int loginIpPerMinute;
+
+    @Value("${rate-limit.login.email-per-minute:10}")
+    private int loginEmailPerMinute;
+
+    @Value("${rate-limit.login-verify.ip-per-minute:30}")
+    private int loginVerifyIpPerMinute;
+
+    @Value("${rate-limit.login-verify.email-per-minute:10}")
+    private int loginVerifyEmailPerMinute;
+
+    @Value("${rate-limit.verify-email.ip-per-minute:30}")
+    private int verifyEmailIpPerMinute;
+
+    @Value("${rate-limit.verify-email.email-per-minute:10}")
+    private int verifyEmailEmailPerMinute;
+
+    @Value("${rate-limit.verify-authenticator.ip-per-minute:30}")
+    private int verifyAuthenticatorIpPerMinute;
+
+    @Value("${rate-limit.verify-authenticator.email-per-minute:10}")
+    private int verifyAuthenticatorEmailPerMinute;
+
+    @Value("${rate-limit.resend-code.ip-per-minute:10}")
+    private int resendCodeIpPerMinute;
+
+    @Value("${rate-limit.resend-code.email-per-minute:3}")
+    private int resendCodeEmailPerMinute;
+
+    @Value("${rate-limit.signup.ip-per-minute:10}")
+    private int signupIpPerMinute;
+
+    @Value("${rate-limit.signup.email-per-minute:3}")
+    private int signupEmailPerMinute;
+
+    // Keyed by request URI; built once and only read afterwards
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+    private final ScheduledExecutorService evictionScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rate-limit-eviction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void init() {
+        register("/api/auth/login", "login", loginIpPerMinute, loginEmailPerMinute, false);
+        register("/api/auth/login-verify", "loginVerify", loginVerifyIpPerMinute, loginVerifyEmailPerMinute, false);
+        register("/api/auth/verify-email", "verifyEmail", verifyEmailIpPerMinute, verifyEmailEmailPerMinute, false);
+        register("/api/auth/verify-authenticator", "verifyAuthenticator", verifyAuthenticatorIpPerMinute,
+            verifyAuthenticatorEmailPerMinute, false);
+        register("/api/auth/resend-code", "resendCode", resendCodeIpPerMinute, resendCodeEmailPerMinute, true);
+        register("/api/auth/signup", "signup", signupIpPerMinute, signupEmailPerMinute, false);
+        evictionScheduler.scheduleWithFixedDelay(this::evictIdle, EVICTION_INTERVAL_SECONDS, EVICTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        logger.info("Auth endpoint rate limiting {}", enabled ? "enabled" : "disabled");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        evictionScheduler.shutdownNow();
+    }
+
+    private void register(String path, String name, int ipPerMinute, int emailPerMinute, boolean emailInQuery) {
+        endpoints.put(path, new Endpoint(name, new RateLimiter(ipPerMinute, maxTrackedKeys),
+            new RateLimiter(emailPerMinute, maxTrackedKeys), emailInQuery));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !"POST".equals(request.getMethod()) || !endpoints.containsKey(path(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Endpoint endpoint = endpoints.get(path(request));
+
+        long wait = endpoint.ipLimiter.tryAcquire(request.getRemoteAddr());
+        if (wait != RateLimiter.ALLOWED) {
+            endpoint.ipRejected.increment();
+            logger.warn("Rate limit exceeded on {} for IP: {}", endpoint.name, request.getRemoteAddr());
+            reject(response, wait);
+            return;
+        }
+
+        HttpServletRequest forwarded = request;
+        String email;
+        if (endpoint.emailInQuery) {
+            email = request.getParameter("email");
+        } else {
+            byte[] body = readBody(request);
+            if (body == null) {
+                response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value());
+                return;
+            }
+            forwarded = new BufferedBodyRequest(request, body);
+            try {
+                email = extractEmail(body);
+            } catch (JsonProcessingException e) {
+                endpoint.malformed.increment();
+                logger.warn("Rejected malformed request body on {} from IP: {} - {}", endpoint.name,
+                    request.getRemoteAddr(), e.getOriginalMessage());
+                response.setStatus(HttpStatus.BAD_REQUEST.value());
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                objectMapper.writeValue(response.getOutputStream(), new AuthResponse("Malformed request body"));
+                return;
+            }
+        }
+
+        if (email != null) {
+            wait = endpoint.emailLimiter.tryAcquire(UserCache.normalize(email));
+            if (wait != RateLimiter.ALLOWED) {
+                endpoint.emailRejected.increment();
+                logger.warn("Rate limit exceeded on {} for email: {}", endpoint.name, email);
+                reject(response, wait);
+                return;
+            }
+        }
+        endpoint.allowed.increment();
+        filterChain.doFilter(forwarded, response);
+    }
+
+    private static String path(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        return contextPath.isEmpty() ? uri : uri.substring(contextPath.length());
+    }
+
+    private void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+            new AuthResponse("Too many requests. Please try again in " + retryAfterSeconds + " seconds."));
+    }
+
+    // The whole body, or null if it is larger than MAX_BODY_BYTES
+    private static byte[] readBody(HttpServletRequest request) throws IOException {
+        if (request.getContentLengthLong() > MAX_BODY_BYTES) {
+            return null;
+        }
+        InputStream in = request.getInputStream();
+        byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+        return body.length > MAX_BODY_BYTES ? null : body;
+    }
+
+    /**
+     * Value of the top-level {@code email} member of a JSON object, decoded as Jackson binds it, or null if there
+     * is none. The whole document is read, so a duplicate key anywhere (including one spelled with escapes, such
+     * as {@code \u0065mail}) or malformed JSON throws instead of leaving the bound email in doubt.
+     */
+    static String extractEmail(byte[] json) throws IOException {
+        try (JsonParser parser = JSON.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            String email = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("email".equals(name) && value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+                    email = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return email;
+        }
+    }
+
+    private void evictIdle() {
+        int removed = 0;
+        for (Endpoint endpoint : endpoints.values()) {
+            removed += endpoint.ipLimiter.evictIdle() + endpoint.emailLimiter.evictIdle();
+        }
+        if (removed > 0) {
+            logger.debug("Evicted {} idle rate limit keys", removed);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        for (Endpoint endpoint : endpoints.values()) {
+            Map<String, Object> endpointStats = new LinkedHashMap<>();
+            endpointStats.put("allowed", endpoint.allowed.sum());
+            endpointStats.put("rejectedByIp", endpoint.ipRejected.sum());
+            endpointStats.put("rejectedByEmail", endpoint.emailRejected.sum());
+            endpointStats.put("rejectedAsMalformed", endpoint.malformed.sum());
+            endpointStats.put("trackedIps", endpoint.ipLimiter.size());
+            endpointStats.put("trackedEmails", endpoint.emailLimiter.size());
+            stats.put(endpoint.name, endpointStats);
+        }
+        return stats;
+    }
+
+    private static final class Endpoint {
+        private final String name;
+        private final RateLimiter ipLimiter;
+        private final RateLimiter emailLimiter;
+        private final boolean emailInQuery;
+        private final LongAdder allowed = new LongAdder();
+        private final LongAdder ipRejected = new LongAdder();
+        private final LongAdder emailRejected = new LongAdder();
+        private final LongAdder malformed = new LongAdder();
+
+        private Endpoint(String name, RateLimiter ipLimiter, RateLimiter emailLimiter, boolean emailInQuery) {
+            this.name = name;
+            this.ipLimiter = ipLimiter;
+            this.emailLimiter = emailLimiter;
+            this.emailInQuery = emailInQuery;
+        }
+    }
+
+    // Replays a body that was already read so the controller can deserialize it as usual
+    private static final class BufferedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        private BufferedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return in.read(buffer, offset, length);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // The whole body is already in memory, so it is available as soon as a listener is set
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        if (!isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            listener.onAllDataRead();
+                        }
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.wilson.cmpe272.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free per-key rate limiter (GCRA, the "virtual scheduling" form of a token bucket).
+ * <p>
+ * Each key holds a single timestamp, its theoretical arrival time (TAT); admitting a request is one CAS that
+ * moves it forward by the emission interval. A key allows {@code permitsPerMinute} requests at once and then
+ * one every {@code 60 s / permitsPerMinute}. Once a key's TAT is in the past its bucket is full again and
+ * the entry carries no information, so it is evicted; idle keys therefore cost nothing. At most
+ * {@code maxKeys} keys are tracked: when that many are active (e.g. an attacker spraying source addresses),
+ * further new keys share a single overflow bucket instead of growing the map.
+ */
+public final class RateLimiter {
+
+    public static final long ALLOWED = 0;
+
+    private static final String OVERFLOW_KEY = "\u0000overflow";
+
+    // Marks an entry that eviction is removing; a request seeing it retries with a fresh entry
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final int maxKeys;
+    private final long origin = System.nanoTime();
+    private final ConcurrentHashMap<String, AtomicLong> arrivals = new ConcurrentHashMap<>();
+
+    public RateLimiter(int permitsPerMinute, int maxKeys) {
+        if (permitsPerMinute < 1) {
+            throw new IllegalArgumentException("permitsPerMinute must be positive: " + permitsPerMinute);
+        }
+        this.emissionIntervalNanos = TimeUnit.MINUTES.toNanos(1) / permitsPerMinute;
+        this.burstToleranceNanos = emissionIntervalNanos * (permitsPerMinute - 1);
+        this.maxKeys = Math.max(1, maxKeys);
+    }
+
+    /**
+     * Takes one permit for the key. Returns {@link #ALLOWED}, or the nanoseconds until a permit is available.
+     */
+    public long tryAcquire(String key) {
+        return tryAcquire(key, System.nanoTime() - origin);
+    }
+
+    long tryAcquire(String key, long now) {
+        while (true) {
+            AtomicLong arrival = arrivals.get(key);
+            if (arrival == null) {
+                if (arrivals.size() >= maxKeys) {
+                    key = OVERFLOW_KEY;
+                }
+                arrival = arrivals.computeIfAbsent(key, k -> new AtomicLong(now));
+            }
+            long tat = arrival.get();
+            if (tat == RETIRED) {
+                arrivals.remove(key, arrival);
+                continue;
+            }
+            long start = Math.max(tat, now);
+            long wait = start - burstToleranceNanos - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (arrival.compareAndSet(tat, start + emissionIntervalNanos)) {
+                return ALLOWED;
+            }
+        }
+    }
+
+    /**
+     * Removes keys whose bucket has refilled completely. Returns the number removed.
+     */
+    public int evictIdle() {
+        return evictIdle(System.nanoTime() - origin);
+    }
+
+    int evictIdle(long now) {
+        int removed = 0;
+        for (Map.Entry<String, AtomicLong> entry : arrivals.entrySet()) {
+            AtomicLong arrival = entry.getValue();
+            long tat = arrival.get();
+            if (tat != RETIRED && tat <= now && arrival.compareAndSet(tat, RETIRED)) {
+                arrivals.remove(entry.getKey(), arrival);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return arrivals.size();
+    }
+}
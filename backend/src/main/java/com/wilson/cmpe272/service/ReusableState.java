@@ -0,0 +1,55 @@
+package com.wilson.cmpe272.service;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Reusable scratch objects (a {@code Mac}, a {@code MessageDigest}, a DRBG and its buffer) for code that would
+ * otherwise create one per call.
+ * <p>
+ * Platform threads are few and long-lived, so each keeps its own instance in a {@link ThreadLocal}. Virtual
+ * threads are created per request ({@code spring.threads.virtual.enabled}), so a thread-local instance would be
+ * built and thrown away on every request; they borrow from a small striped pool instead. A borrow takes the
+ * stripe's instance with one atomic swap and a release puts it back, so the pool holds at most one instance per
+ * stripe. A thread that finds its stripe empty (another thread holds it) creates a fresh instance, which is kept
+ * only if the stripe is empty again when it is released.
+ * <p>
+ * Callers must release in a {@code finally} block and must not keep the instance afterwards.
+ */
+public final class ReusableState<T> {
+
+    private final Supplier<T> factory;
+    private final ThreadLocal<T> perThread;
+    private final AtomicReferenceArray<T> stripes;
+    private final int mask;
+
+    public ReusableState(Supplier<T> factory) {
+        this.factory = factory;
+        this.perThread = ThreadLocal.withInitial(factory);
+        int size = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        this.stripes = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public T acquire() {
+        Thread thread = Thread.currentThread();
+        if (!thread.isVirtual()) {
+            return perThread.get();
+        }
+        T state = stripes.getAndSet(stripe(thread), null);
+        return state != null ? state : factory.get();
+    }
+
+    public void release(T state) {
+        Thread thread = Thread.currentThread();
+        if (thread.isVirtual()) {
+            stripes.compareAndSet(stripe(thread), null, state);
+        }
+    }
+
+    // Virtual thread ids are sequential, so spread them before masking
+    private int stripe(Thread thread) {
+        long id = thread.threadId() * 0x9E3779B97F4A7C15L;
+        return (int) (id >>> 32) & mask;
+    }
+}
@@ -0,0 +1,25 @@
+package com.wilson.cmpe272.service;
+
+import java.util.List;
+
+/**
+ * Storage SPI behind {@link TokenBlacklistService}. The blacklist always answers from its local
+ * in-memory replica; a shared backend only propagates revocations between nodes, which pull
+ * them incrementally through {@link #fetchAfter(long, long, int)}.
+ */
+public interface RevocationBackend {
+
+    // False for node-local backends, which skip replication polling entirely
+    boolean isShared();
+
+    void publish(TokenDigest digest, long expiresAtEpochSeconds);
+
+    // Revocations positioned after the given (recorded time, sequence) pair, in ascending order of that pair
+    List<RevocationEvent> fetchAfter(long recordedAtEpochMicros, long sequence, int limit);
+
+    void remove(TokenDigest digest);
+
+    void clear();
+
+    int purgeExpired(long nowEpochSeconds);
+}
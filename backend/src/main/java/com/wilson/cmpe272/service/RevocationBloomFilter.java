@@ -0,0 +1,76 @@
+package com.wilson.cmpe272.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter over token digests, used as a negative cache in front of {@link RevocationStore}.
+ * Lookups are a handful of atomic word reads with no allocation; a "no" answer is definitive.
+ */
+public final class RevocationBloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitMask;
+    private final int hashCount;
+    private final int expectedInsertions;
+
+    public RevocationBloomFilter(int expectedInsertions, double falsePositiveRate) {
+        this.expectedInsertions = Math.max(1, expectedInsertions);
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-this.expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+        // Round up to a power of two (at least one word) so bit positions can be masked instead of divided
+        long bits = Math.max(64, Long.highestOneBit(Math.max(1, optimalBits - 1)) << 1);
+        this.words = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE, bits >>> 6));
+        this.bitMask = ((long) words.length() << 6) - 1;
+        this.hashCount = Math.max(1, (int) Math.round((double) bits / this.expectedInsertions * ln2));
+    }
+
+    // Double hashing over the two (already uniformly distributed) digest halves; an odd step visits distinct bits
+    public void put(long high, long low) {
+        long step = high | 1;
+        long combined = low;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = combined & bitMask;
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(index);
+            while ((current & mask) == 0 && !words.compareAndSet(index, current, current | mask)) {
+                current = words.get(index);
+            }
+            combined += step;
+        }
+    }
+
+    public boolean mightContain(long high, long low) {
+        long step = high | 1;
+        long combined = low;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = combined & bitMask;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+            combined += step;
+        }
+        return true;
+    }
+
+    public int getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    public long getBitSize() {
+        return bitMask + 1;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    // Current false-positive probability estimated from the fraction of bits set
+    public double estimateFalsePositiveRate() {
+        long setBits = 0;
+        for (int i = 0; i < words.length(); i++) {
+            setBits += Long.bitCount(words.get(i));
+        }
+        return Math.pow((double) setBits / getBitSize(), hashCount);
+    }
+}
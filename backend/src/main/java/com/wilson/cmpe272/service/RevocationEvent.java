@@ -0,0 +1,43 @@
+package com.wilson.cmpe272.service;
+
+/**
+ * A revocation as replicated between nodes: token digest, its expiry, the backend sequence number and the time
+ * it was recorded, which together with the sequence orders replication.
+ */
+public final class RevocationEvent {
+
+    private final long sequence;
+    private final long digestHigh;
+    private final long digestLow;
+    private final long expiresAtEpochSeconds;
+    private final long recordedAtEpochMicros;
+
+    public RevocationEvent(long sequence, long digestHigh, long digestLow, long expiresAtEpochSeconds,
+                           long recordedAtEpochMicros) {
+        this.sequence = sequence;
+        this.digestHigh = digestHigh;
+        this.digestLow = digestLow;
+        this.expiresAtEpochSeconds = expiresAtEpochSeconds;
+        this.recordedAtEpochMicros = recordedAtEpochMicros;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getDigestHigh() {
+        return digestHigh;
+    }
+
+    public long getDigestLow() {
+        return digestLow;
+    }
+
+    public long getExpiresAtEpochSeconds() {
+        return expiresAtEpochSeconds;
+    }
+
+    public long getRecordedAtEpochMicros() {
+        return recordedAtEpochMicros;
+    }
+}
@@ -0,0 +1,284 @@
+package com.wilson.cmpe272.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped journal of token revocations, replayed into a {@link RevocationStore} on startup.
+ * <p>
+ * Layout: a 16-byte header followed by fixed 32-byte records (digest high, digest low, expiry in epoch
+ * seconds, CRC32 of the preceding 24 bytes, padding). An expiry of 0 marks a removal. The file is grown
+ * ahead of the write position and zero-filled, so replay stops at the first zero or corrupt record, which
+ * also discards a record torn by a crash. Writes reach the page cache immediately and survive a process
+ * restart; {@link #force()} flushes them to disk for host crashes.
+ * <p>
+ * The file starts at 1 MB and doubles when full. A mapping that is replaced, by growth or by compaction, is
+ * flushed and unmapped at once: left to the garbage collector it would keep its address space and, after
+ * compaction, the replaced file's disk blocks until collected. Where the JDK offers no way to unmap, the old
+ * mapping is still released on collection, and doubling keeps the retained mappings smaller than the live one.
+ * <p>
+ * Not thread-safe: callers serialize appends, compaction and reset.
+ */
+public final class RevocationJournal implements Closeable {
+
+    private static final int MAGIC = 0x524A4E31; // "RJN1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 32;
+    private static final int CHECKSUMMED_BYTES = 24;
+    private static final long REMOVAL = 0;
+    private static final long INITIAL_SIZE = HEADER_SIZE + RECORD_SIZE * 32_768L;
+    private static final MethodHandle UNMAPPER = findUnmapper();
+
+    private final Path path;
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private volatile long mappedSize;
+    private int position = HEADER_SIZE;
+
+    public RevocationJournal(Path path) throws IOException {
+        this.path = path;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        openChannel();
+    }
+
+    private void openChannel() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size == 0) {
+            map(INITIAL_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+        } else {
+            map(Math.max(size, INITIAL_SIZE));
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                channel.close();
+                throw new IOException("Not a revocation journal: " + path);
+            }
+        }
+        position = HEADER_SIZE;
+    }
+
+    private void map(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Revocation journal exceeds 2 GB, compaction is not keeping up: " + path);
+        }
+        MappedByteBuffer previous = buffer;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        mappedSize = size;
+        if (previous != null) {
+            unmap(previous);
+        }
+    }
+
+    // Flushes the mapping and frees it now rather than on garbage collection; the buffer must not be touched again
+    private static void unmap(MappedByteBuffer mapping) {
+        mapping.force();
+        if (UNMAPPER == null) {
+            return;
+        }
+        try {
+            UNMAPPER.invokeExact((ByteBuffer) mapping);
+        } catch (Throwable e) {
+            // Left for the garbage collector, as without an unmapper
+        }
+    }
+
+    private static MethodHandle findUnmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Number of records up to the first empty slot, found by binary search so a store can be presized before
+     * {@link #replay}. Records are contiguous and every valid record has a non-zero checksum.
+     */
+    public int estimateRecordCount() {
+        int low = 0;
+        int high = (buffer.capacity() - HEADER_SIZE) / RECORD_SIZE;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getInt(HEADER_SIZE + middle * RECORD_SIZE + CHECKSUMMED_BYTES) != 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Replays every intact record into the store, skipping expired entries, and positions the journal for
+     * appending after the last one. Returns the number of records read.
+     */
+    public int replay(RevocationStore store, long nowEpochSeconds) {
+        int records = 0;
+        int limit = buffer.capacity() - RECORD_SIZE;
+        while (position <= limit) {
+            long high = buffer.getLong(position);
+            long low = buffer.getLong(position + 8);
+            long expiresAt = buffer.getLong(position + 16);
+            int checksum = buffer.getInt(position + 24);
+            if (checksum == 0 && high == 0 && low == 0 && expiresAt == 0) {
+                break;
+            }
+            if (checksum != checksum(position)) {
+                // Torn or corrupt tail: clear it so later appends do not leave stale records behind
+                discardFrom(position);
+                break;
+            }
+            if (expiresAt == REMOVAL) {
+                store.remove(high, low);
+            } else {
+                store.add(high, low, expiresAt, nowEpochSeconds);
+            }
+            position += RECORD_SIZE;
+            records++;
+        }
+        return records;
+    }
+
+    public void append(long high, long low, long expiresAtEpochSeconds) {
+        write(high, low, expiresAtEpochSeconds);
+    }
+
+    public void appendRemoval(long high, long low) {
+        write(high, low, REMOVAL);
+    }
+
+    private void write(long high, long low, long expiresAt) {
+        if (position + RECORD_SIZE > buffer.capacity()) {
+            try {
+                map((long) buffer.capacity() * 2);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        buffer.putLong(position, high);
+        buffer.putLong(position + 8, low);
+        buffer.putLong(position + 16, expiresAt);
+        // Checksum last: a record is only valid once all of it has been written
+        buffer.putInt(position + 24, checksum(position));
+        position += RECORD_SIZE;
+    }
+
+    private int checksum(int offset) {
+        crc.reset();
+        crc.update(buffer.slice(offset, CHECKSUMMED_BYTES));
+        // Never 0, so a zero-filled slot can't pass as a record
+        return (int) crc.getValue() | 1;
+    }
+
+    private void discardFrom(int offset) {
+        for (int i = offset; i < buffer.capacity(); i += 8) {
+            buffer.putLong(i, 0);
+        }
+    }
+
+    /**
+     * Rewrites the journal with only the store's live entries, dropping expired and removed ones.
+     */
+    public void compact(RevocationStore store) {
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        int[] written = new int[1];
+        try {
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(0, MAGIC).putInt(4, VERSION);
+                flush(out, header.position(HEADER_SIZE));
+                ByteBuffer chunk = ByteBuffer.allocate(RECORD_SIZE * 1024);
+                CRC32 compactCrc = new CRC32();
+                IOException[] failure = new IOException[1];
+                store.forEachEntry((high, low, expiresAt) -> {
+                    if (failure[0] != null) {
+                        return;
+                    }
+                    int start = chunk.position();
+                    chunk.putLong(high).putLong(low).putLong(expiresAt);
+                    compactCrc.reset();
+                    compactCrc.update(chunk.slice(start, CHECKSUMMED_BYTES));
+                    chunk.putInt((int) compactCrc.getValue() | 1).putInt(0);
+                    written[0]++;
+                    if (!chunk.hasRemaining()) {
+                        try {
+                            flush(out, chunk);
+                        } catch (IOException e) {
+                            failure[0] = e;
+                        }
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+                flush(out, chunk);
+                out.force(true);
+            }
+            // Unmapped before the move, which some platforms refuse while the target is mapped
+            unmap(buffer);
+            buffer = null;
+            channel.close();
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            openChannel();
+            position = HEADER_SIZE + written[0] * RECORD_SIZE;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void flush(FileChannel out, ByteBuffer chunk) throws IOException {
+        chunk.flip();
+        while (chunk.hasRemaining()) {
+            out.write(chunk);
+        }
+        chunk.clear();
+    }
+
+    public void reset() {
+        discardFrom(HEADER_SIZE);
+        position = HEADER_SIZE;
+    }
+
+    public void force() {
+        buffer.force();
+    }
+
+    public int getRecordCount() {
+        return (position - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    // Read without the callers' lock, so it must not touch a mapping that may just have been unmapped
+    public long getSizeBytes() {
+        return mappedSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        unmap(buffer);
+        buffer = null;
+        channel.close();
+    }
+}
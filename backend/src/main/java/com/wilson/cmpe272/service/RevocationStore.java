@@ -0,0 +1,275 @@
+package com.wilson.cmpe272.service;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compact set of revoked token digests, each expiring at its token's own {@code exp}.
+ * <p>
+ * Entries live in parallel primitive arrays (open addressing, linear probing) at roughly 20 bytes
+ * per slot plus 16 bytes in an expiry bucket. Buckets group digests by expiry time, so cleanup
+ * only touches entries that are actually due instead of scanning the whole table.
+ */
+public final class RevocationStore {
+
+    // Expiry is stored as int seconds relative to this base (2020-09-13), good for ~68 years
+    private static final long EPOCH_BASE_SECONDS = 1_600_000_000L;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final long bucketSeconds;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] highs;
+    private long[] lows;
+    private int[] expiries; // 0 marks an empty slot
+    private int mask;
+    private int size;
+
+    // Expiry bucket index -> digests expiring within that bucket
+    private final TreeMap<Long, DigestList> expiryBuckets = new TreeMap<>();
+
+    public RevocationStore(long bucketSeconds) {
+        this(bucketSeconds, 0);
+    }
+
+    // Presized so bulk loads (journal replay) never rehash
+    public RevocationStore(long bucketSeconds, int expectedSize) {
+        this.bucketSeconds = Math.max(1, bucketSeconds);
+        allocate(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, expectedSize)) << 2));
+    }
+
+    private void allocate(int capacity) {
+        highs = new long[capacity];
+        lows = new long[capacity];
+        expiries = new int[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private static int encodeExpiry(long epochSeconds) {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, epochSeconds - EPOCH_BASE_SECONDS));
+    }
+
+    private static long decodeExpiry(int encoded) {
+        return encoded + EPOCH_BASE_SECONDS;
+    }
+
+    private int home(long low) {
+        return (int) (low ^ (low >>> 32)) & mask;
+    }
+
+    // Returns the slot holding the digest, or the empty slot where it would be inserted (negative-encoded)
+    private int find(long high, long low) {
+        int slot = home(low);
+        while (expiries[slot] != 0) {
+            if (highs[slot] == high && lows[slot] == low) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -slot - 1;
+    }
+
+    /**
+     * Records a revocation. Returns false if the token already expired and nothing was stored.
+     */
+    public boolean add(long high, long low, long expiresAtEpochSeconds, long nowEpochSeconds) {
+        if (expiresAtEpochSeconds <= nowEpochSeconds) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            if ((size + 1) * 2 > expiries.length) {
+                resize(expiries.length * 2);
+            }
+            int encoded = encodeExpiry(expiresAtEpochSeconds);
+            int slot = find(high, low);
+            if (slot >= 0) {
+                if (encoded <= expiries[slot]) {
+                    return true;
+                }
+                expiries[slot] = encoded;
+            } else {
+                slot = -slot - 1;
+                highs[slot] = high;
+                lows[slot] = low;
+                expiries[slot] = encoded;
+                size++;
+            }
+            expiryBuckets.computeIfAbsent(expiresAtEpochSeconds / bucketSeconds, key -> new DigestList()).add(high, low);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(long high, long low, long nowEpochSeconds) {
+        lock.readLock().lock();
+        try {
+            int slot = find(high, low);
+            return slot >= 0 && decodeExpiry(expiries[slot]) > nowEpochSeconds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean remove(long high, long low) {
+        lock.writeLock().lock();
+        try {
+            int slot = find(high, low);
+            if (slot < 0) {
+                return false;
+            }
+            deleteSlot(slot);
+            // The digest may linger in its expiry bucket; expire() skips digests that are no longer present
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops every entry whose expiry has passed. Only buckets that are fully due are visited,
+     * so the cost is proportional to the number of expired entries.
+     */
+    public int expire(long nowEpochSeconds) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            while (!expiryBuckets.isEmpty()) {
+                Map.Entry<Long, DigestList> bucket = expiryBuckets.firstEntry();
+                if ((bucket.getKey() + 1) * bucketSeconds > nowEpochSeconds) {
+                    break;
+                }
+                expiryBuckets.pollFirstEntry();
+                DigestList digests = bucket.getValue();
+                for (int i = 0; i < digests.count; i++) {
+                    int slot = find(digests.highs[i], digests.lows[i]);
+                    // Skip digests that were removed or re-added with a later expiry
+                    if (slot >= 0 && decodeExpiry(expiries[slot]) <= nowEpochSeconds) {
+                        deleteSlot(slot);
+                        removed++;
+                    }
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void forEach(DigestConsumer consumer) {
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < expiries.length; i++) {
+                if (expiries[i] != 0) {
+                    consumer.accept(highs[i], lows[i]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void forEachEntry(EntryConsumer consumer) {
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < expiries.length; i++) {
+                if (expiries[i] != 0) {
+                    consumer.accept(highs[i], lows[i], decodeExpiry(expiries[i]));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            allocate(INITIAL_CAPACITY);
+            expiryBuckets.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Backward-shift deletion keeps probe sequences intact without tombstones
+    private void deleteSlot(int slot) {
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (expiries[next] == 0) {
+                break;
+            }
+            int ideal = home(lows[next]);
+            boolean movable = hole <= next
+                ? (ideal <= hole || ideal > next)
+                : (ideal <= hole && ideal > next);
+            if (movable) {
+                highs[hole] = highs[next];
+                lows[hole] = lows[next];
+                expiries[hole] = expiries[next];
+                hole = next;
+            }
+        }
+        highs[hole] = 0;
+        lows[hole] = 0;
+        expiries[hole] = 0;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldHighs = highs;
+        long[] oldLows = lows;
+        int[] oldExpiries = expiries;
+        allocate(capacity);
+        for (int i = 0; i < oldExpiries.length; i++) {
+            if (oldExpiries[i] != 0) {
+                int slot = -find(oldHighs[i], oldLows[i]) - 1;
+                highs[slot] = oldHighs[i];
+                lows[slot] = oldLows[i];
+                expiries[slot] = oldExpiries[i];
+                size++;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface DigestConsumer {
+        void accept(long high, long low);
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long high, long low, long expiresAtEpochSeconds);
+    }
+
+    private static final class DigestList {
+        private long[] highs = new long[8];
+        private long[] lows = new long[8];
+        private int count;
+
+        private void add(long high, long low) {
+            if (count == highs.length) {
+                highs = Arrays.copyOf(highs, count * 2);
+                lows = Arrays.copyOf(lows, count * 2);
+            }
+            highs[count] = high;
+            lows[count] = low;
+            count++;
+        }
+    }
+}
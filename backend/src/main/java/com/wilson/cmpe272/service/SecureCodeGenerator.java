@@ -0,0 +1,175 @@
+package com.wilson.cmpe272.service;
+
+import org.apache.commons.codec.binary.Base32;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.security.DrbgParameters.Capability.RESEED_ONLY;
+
+/**
+ * Cryptographically secure generator for one-time codes, TOTP secrets and recovery codes.
+ * <p>
+ * Each platform thread owns a SHA-256 Hash_DRBG, and virtual threads borrow one from a small striped pool
+ * ({@link ReusableState}), so there is no shared lock. Output is drawn in bulk into a buffer that travels with
+ * the DRBG: most calls are a few array reads, with one DRBG call per buffer refill. DRBG
+ * instances are seeded from the JDK's internal seeder (the system entropy source is touched once per
+ * JVM) and reseeded after a configurable amount of output. Bounded values use rejection sampling, so
+ * codes have no modulo bias.
+ */
+@Service
+public class SecureCodeGenerator {
+
+    // Crockford Base32 alphabet: no I, L, O or U, so recovery codes are hard to misread
+    private static final char[] RECOVERY_ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    private static final int[] POWERS_OF_TEN = {
+        1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000, 1_000_000_000
+    };
+
+    private final int bufferSize;
+    private final long reseedIntervalBytes;
+    private final Base32 base32 = new Base32();
+    private final AtomicLong instances = new AtomicLong();
+    private final ReusableState<DrbgState> drbgState = new ReusableState<>(DrbgState::new);
+
+    public SecureCodeGenerator(@Value("${code-generator.buffer-size:4096}") int bufferSize,
+                               @Value("${code-generator.reseed-interval-bytes:1048576}") long reseedIntervalBytes) {
+        this.bufferSize = Math.max(64, bufferSize);
+        this.reseedIntervalBytes = Math.max(this.bufferSize, reseedIntervalBytes);
+    }
+
+    /**
+     * Uniformly distributed value in [0, bound).
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive: " + bound);
+        }
+        DrbgState state = drbgState.acquire();
+        try {
+            if ((bound & (bound - 1)) == 0) {
+                return (int) (state.nextUnsignedInt() & (bound - 1));
+            }
+            // Reject the top partial range of 2^32 so every residue is equally likely
+            long limit = (1L << 32) - ((1L << 32) % bound);
+            long value;
+            do {
+                value = state.nextUnsignedInt();
+            } while (value >= limit);
+            return (int) (value % bound);
+        } finally {
+            drbgState.release(state);
+        }
+    }
+
+    /**
+     * Zero-padded numeric one-time code, e.g. "004271" for 6 digits.
+     */
+    public String numericCode(int digits) {
+        if (digits < 1 || digits > 9) {
+            throw new IllegalArgumentException("digits must be between 1 and 9: " + digits);
+        }
+        int value = nextInt(POWERS_OF_TEN[digits]);
+        char[] chars = new char[digits];
+        for (int i = digits - 1; i >= 0; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Fills {@code bytes} with random output, e.g. for nonces.
+     */
+    public void nextBytes(byte[] bytes) {
+        DrbgState state = drbgState.acquire();
+        try {
+            state.nextBytes(bytes);
+        } finally {
+            drbgState.release(state);
+        }
+    }
+
+    /**
+     * Unpadded Base32 encoding of {@code byteLength} random bytes, as used for TOTP secrets.
+     */
+    public String base32Secret(int byteLength) {
+        byte[] bytes = new byte[byteLength];
+        nextBytes(bytes);
+        return new String(base32.encode(bytes), StandardCharsets.US_ASCII).replace("=", "");
+    }
+
+    /**
+     * Recovery code such as "7KQ2-M9XD": {@code groups} groups of {@code groupLength} Crockford Base32 characters.
+     */
+    public String recoveryCode(int groups, int groupLength) {
+        char[] chars = new char[groups * groupLength + groups - 1];
+        int position = 0;
+        for (int group = 0; group < groups; group++) {
+            if (group > 0) {
+                chars[position++] = '-';
+            }
+            for (int i = 0; i < groupLength; i++) {
+                chars[position++] = RECOVERY_ALPHABET[nextInt(RECOVERY_ALPHABET.length)];
+            }
+        }
+        return new String(chars);
+    }
+
+    private final class DrbgState {
+        private final SecureRandom random;
+        private final byte[] buffer = new byte[bufferSize];
+        private int position = bufferSize;
+        private long bytesSinceReseed;
+
+        private DrbgState() {
+            try {
+                random = SecureRandom.getInstance("DRBG",
+                    DrbgParameters.instantiation(256, RESEED_ONLY, ("code-generator:" + instances.incrementAndGet())
+                        .getBytes(StandardCharsets.UTF_8)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("DRBG SecureRandom not available", e);
+            }
+        }
+
+        private void refill() {
+            if (bytesSinceReseed >= reseedIntervalBytes) {
+                random.reseed();
+                bytesSinceReseed = 0;
+            }
+            random.nextBytes(buffer);
+            bytesSinceReseed += buffer.length;
+            position = 0;
+        }
+
+        private long nextUnsignedInt() {
+            if (position + 4 > buffer.length) {
+                refill();
+            }
+            long value = ((buffer[position] & 0xFFL) << 24)
+                | ((buffer[position + 1] & 0xFFL) << 16)
+                | ((buffer[position + 2] & 0xFFL) << 8)
+                | (buffer[position + 3] & 0xFFL);
+            // Consumed output is wiped so it cannot leak through a later heap dump
+            buffer[position] = buffer[position + 1] = buffer[position + 2] = buffer[position + 3] = 0;
+            position += 4;
+            return value;
+        }
+
+        private void nextBytes(byte[] out) {
+            for (int i = 0; i < out.length; i++) {
+                if (position == buffer.length) {
+                    refill();
+                }
+                out[i] = buffer[position];
+                buffer[position++] = 0;
+            }
+        }
+    }
+}
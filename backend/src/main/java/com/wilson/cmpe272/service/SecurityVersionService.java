@@ -0,0 +1,74 @@
+package com.wilson.cmpe272.service;
+
+import com.wilson.cmpe272.entity.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class SecurityVersionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SecurityVersionService.class);
+
+    // Only accounts changed within the last token lifetime are tracked; older tokens have expired anyway
+    private static final int PURGE_THRESHOLD = 10000;
+
+    @Value("${jwt.expiration}")
+    private Long expiration;
+
+    // Latest known security version per user id, recorded when this node changes an account
+    private final ConcurrentHashMap<Long, VersionChange> latestVersions = new ConcurrentHashMap<>();
+
+    public void bumpSecurityVersion(User user) {
+        int nextVersion = versionOf(user.getSecurityVersion()) + 1;
+        user.setSecurityVersion(nextVersion);
+        if (user.getId() != null) {
+            latestVersions.put(user.getId(), new VersionChange(nextVersion, System.currentTimeMillis()));
+            if (latestVersions.size() > PURGE_THRESHOLD) {
+                purgeExpiredChanges();
+            }
+        }
+        logger.debug("Security version bumped to {} for user: {}", nextVersion, user.getEmail());
+    }
+
+    // Status is carried in token claims, so every status change goes through here rather than User.setStatus
+    public void changeStatus(User user, User.UserStatus status) {
+        if (user.getStatus() == status) {
+            return;
+        }
+        user.setStatus(status);
+        bumpSecurityVersion(user);
+    }
+
+    // True when this node knows the account changed after a token carrying tokenVersion was issued
+    public boolean isStale(Long userId, Integer tokenVersion) {
+        if (userId == null) {
+            return true;
+        }
+        VersionChange change = latestVersions.get(userId);
+        return change != null && versionOf(tokenVersion) < change.version;
+    }
+
+    public static int versionOf(Integer version) {
+        return version != null ? version : 0;
+    }
+
+    private void purgeExpiredChanges() {
+        long cutoff = System.currentTimeMillis() - expiration;
+        latestVersions.values().removeIf(change -> change.changedAtMillis < cutoff);
+        logger.debug("Purged expired security version changes. Current size: {}", latestVersions.size());
+    }
+
+    private static final class VersionChange {
+        private final int version;
+        private final long changedAtMillis;
+
+        private VersionChange(int version, long changedAtMillis) {
+            this.version = version;
+            this.changedAtMillis = changedAtMillis;
+        }
+    }
+}
@@ -2,56 +2,226 @@ package com.wilson.cmpe272.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.util.concurrent.ConcurrentHashMap;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class TokenBlacklistService {
     
     private static final Logger logger = LoggerFactory.getLogger(TokenBlacklistService.class);
     
-    // In-memory storage for blacklisted tokens
+    private static final int SYNC_BATCH_SIZE = 1000;
+    
+    @Autowired
+    private RevocationBackend revocationBackend;
+    
+    // Fallback lifetime for tokens blacklisted without a known expiration (the longest a token can live)
+    @Value("${jwt.expiration}")
+    private Long expiration;
+    
+    @Value("${jwt.blacklist.cleanup-interval-seconds:30}")
+    private long cleanupIntervalSeconds;
+    
+    @Value("${jwt.blacklist.bloom.expected-insertions:100000}")
+    private int bloomExpectedInsertions;
+    
+    @Value("${jwt.blacklist.bloom.false-positive-rate:0.001}")
+    private double bloomFalsePositiveRate;
+    
+    @Value("${jwt.blacklist.sync-interval-ms:1000}")
+    private long syncIntervalMillis;
+    
+    // Longest a publishing transaction may take to commit plus the clock skew between publishing nodes
+    @Value("${jwt.blacklist.sync-overlap-ms:5000}")
+    private long syncOverlapMillis;
+    
+    @Value("${jwt.blacklist.journal.enabled:false}")
+    private boolean journalEnabled;
+    
+    @Value("${jwt.blacklist.journal.path:data/revocations.journal}")
+    private String journalPath;
+    
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+    
+    // In-memory storage for blacklisted tokens, keyed by a 128-bit token digest
     // In production, consider using Redis or database
-    private final ConcurrentHashMap<String, LocalDateTime> blacklistedTokens = new ConcurrentHashMap<>();
+    private RevocationStore revocationStore;
+    
+    // Negative cache in front of the store: almost no token is ever revoked, so most checks stop here
+    private volatile RevocationBloomFilter bloomFilter;
+    
+    // Optional restart durability; written under writeLock, null when disabled
+    private RevocationJournal journal;
+    
+    // Serializes writers with filter rebuilds so a rebuild never misses a concurrent revocation
+    // A ReentrantLock rather than a monitor: journal writes happen under it, and a virtual thread blocked on
+    // file I/O inside synchronized would pin its carrier thread
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private int insertionsSinceRebuild;
+    private int removalsSinceRebuild;
+    private long bloomRebuilds;
+    
+    // Highest backend sequence applied locally and the newest recorded_at (epoch micros) read from the backend;
+    // only the scheduler thread advances them
+    private volatile long lastAppliedSequence;
+    private volatile long newestRecordedAt;
+    private volatile long syncFailures;
     
     // Cleanup scheduler to remove expired tokens from blacklist
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    private ScheduledExecutorService scheduler;
+    
+    @PostConstruct
+    void init() {
+        scheduler = Executors.newScheduledThreadPool(1, VirtualThreads.factory("token-blacklist", virtualThreads));
+        if (journalEnabled) {
+            // Replay before the context finishes starting, so no request is served with an incomplete blacklist
+            openJournal();
+        } else {
+            revocationStore = new RevocationStore(cleanupIntervalSeconds);
+        }
+        bloomFilter = new RevocationBloomFilter(
+            Math.max(bloomExpectedInsertions, revocationStore.size() * 2), bloomFalsePositiveRate);
+        revocationStore.forEach(bloomFilter::put);
+        insertionsSinceRebuild = revocationStore.size();
+        // Each entry expires at its own token's exp; cleanup only visits the expiry buckets that are due
+        scheduler.scheduleAtFixedRate(this::cleanupExpiredTokens, cleanupIntervalSeconds, cleanupIntervalSeconds, TimeUnit.SECONDS);
+        if (revocationBackend.isShared()) {
+            // Lookups stay local; revocations from other nodes are pulled into the local store incrementally
+            syncFromBackend();
+            scheduler.scheduleWithFixedDelay(this::syncFromBackend, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+            logger.info("Token blacklist replicating from shared store every {} ms, {} revocations loaded",
+                syncIntervalMillis, revocationStore.size());
+        }
+    }
     
-    public TokenBlacklistService() {
-        // Schedule cleanup every hour to remove expired tokens from blacklist
-        scheduler.scheduleAtFixedRate(this::cleanupExpiredTokens, 1, 1, TimeUnit.HOURS);
+    private void openJournal() {
+        Path path = Paths.get(journalPath);
+        try {
+            long start = System.nanoTime();
+            journal = new RevocationJournal(path);
+            revocationStore = new RevocationStore(cleanupIntervalSeconds, journal.estimateRecordCount());
+            int records = journal.replay(revocationStore, currentEpochSeconds());
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            logger.info("Replayed {} journal records ({} live revocations, {} bytes) from {} in {} ms",
+                records, revocationStore.size(), journal.getSizeBytes(), path.toAbsolutePath(), elapsedMillis);
+        } catch (IOException e) {
+            // Starting with an empty blacklist would silently re-enable every logged-out token
+            throw new IllegalStateException("Failed to open token revocation journal " + path.toAbsolutePath(), e);
+        }
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+        if (journal != null) {
+            writeLock.lock();
+            try {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    logger.error("Failed to close token revocation journal - Error: {}", e.getMessage());
+                }
+                journal = null;
+            } finally {
+                writeLock.unlock();
+            }
+        }
     }
     
     public void blacklistToken(String token) {
+        blacklistToken(token, new Date(System.currentTimeMillis() + expiration));
+    }
+    
+    public void blacklistToken(String token, Date expiresAt) {
         if (token != null && !token.trim().isEmpty()) {
-            blacklistedTokens.put(token, LocalDateTime.now());
-            logger.info("Token blacklisted successfully. Current blacklist size: {}", blacklistedTokens.size());
+            blacklistDigest(TokenDigest.of(token), expiresAt);
         } else {
             logger.warn("Attempted to blacklist null or empty token");
         }
     }
     
+    public void blacklistDigest(TokenDigest digest, Date expiresAt) {
+        long now = currentEpochSeconds();
+        // Round up so the entry never expires before the token itself
+        long expiresAtSeconds = (expiresAt.getTime() + 999) / 1000;
+        writeLock.lock();
+        try {
+            // Filter first: a token must never be in the store without being in the filter
+            bloomFilter.put(digest.getHigh(), digest.getLow());
+            insertionsSinceRebuild++;
+            if (!revocationStore.add(digest.getHigh(), digest.getLow(), expiresAtSeconds, now)) {
+                logger.debug("Token already expired, not adding to blacklist");
+                return;
+            }
+            appendToJournal(digest, expiresAtSeconds);
+        } finally {
+            writeLock.unlock();
+        }
+        if (revocationBackend.isShared()) {
+            try {
+                revocationBackend.publish(digest, expiresAtSeconds);
+            } catch (Exception e) {
+                // The token stays revoked on this node; other nodes only learn about it through the shared store
+                logger.error("Failed to publish token revocation to shared store - Error: {}", e.getMessage());
+            }
+        }
+        logger.info("Token blacklisted successfully. Current blacklist size: {}", revocationStore.size());
+    }
+    
     public boolean isTokenBlacklisted(String token) {
         if (token == null || token.trim().isEmpty()) {
             logger.debug("Checking blacklist for null or empty token - returning false");
             return false;
         }
-        boolean isBlacklisted = blacklistedTokens.containsKey(token);
-        logger.debug("Token blacklist check result: {} for token ending in: {}", 
-            isBlacklisted, token.length() > 10 ? "..." + token.substring(token.length() - 10) : token);
+        return isDigestBlacklisted(TokenDigest.of(token));
+    }
+    
+    public boolean isDigestBlacklisted(TokenDigest digest) {
+        if (!bloomFilter.mightContain(digest.getHigh(), digest.getLow())) {
+            return false;
+        }
+        // Possible hit: confirm against the exact store
+        boolean isBlacklisted = revocationStore.contains(digest.getHigh(), digest.getLow(), currentEpochSeconds());
+        logger.debug("Token blacklist check result: {}", isBlacklisted);
         return isBlacklisted;
     }
-
+    
     public void removeFromBlacklist(String token) {
         if (token != null) {
-            boolean removed = blacklistedTokens.remove(token) != null;
+            TokenDigest digest = TokenDigest.of(token);
+            boolean removed;
+            writeLock.lock();
+            try {
+                removed = revocationStore.remove(digest.getHigh(), digest.getLow());
+                if (removed) {
+                    removalsSinceRebuild++;
+                    appendToJournal(digest, 0);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            if (revocationBackend.isShared()) {
+                // Nodes that already replicated the revocation keep it until the token expires
+                revocationBackend.remove(digest);
+            }
             if (removed) {
-                logger.info("Token removed from blacklist successfully. Current blacklist size: {}", blacklistedTokens.size());
+                logger.info("Token removed from blacklist successfully. Current blacklist size: {}", revocationStore.size());
             } else {
                 logger.debug("Token was not found in blacklist during removal attempt");
             }
@@ -61,17 +231,180 @@ public class TokenBlacklistService {
     }
     
     public int getBlacklistSize() {
-        return blacklistedTokens.size();
+        return revocationStore.size();
     }
-
+    
     public void clearBlacklist() {
-        blacklistedTokens.clear();
+        writeLock.lock();
+        try {
+            revocationStore.clear();
+            rebuildBloomFilter();
+            if (journal != null) {
+                journal.reset();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (revocationBackend.isShared()) {
+            revocationBackend.clear();
+        }
         logger.info("Token blacklist cleared");
     }
     
+    public Map<String, Object> getStats() {
+        RevocationBloomFilter filter = bloomFilter;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", revocationStore.size());
+        stats.put("bloomBits", filter.getBitSize());
+        stats.put("bloomHashFunctions", filter.getHashCount());
+        stats.put("bloomEstimatedFalsePositiveRate", filter.estimateFalsePositiveRate());
+        stats.put("bloomRebuilds", bloomRebuilds);
+        stats.put("sharedStore", revocationBackend.isShared());
+        RevocationJournal currentJournal = journal;
+        if (currentJournal != null) {
+            stats.put("journalRecords", currentJournal.getRecordCount());
+            stats.put("journalBytes", currentJournal.getSizeBytes());
+        }
+        if (revocationBackend.isShared()) {
+            stats.put("replicatedSequence", lastAppliedSequence);
+            stats.put("syncFailures", syncFailures);
+        }
+        return stats;
+    }
+    
     private void cleanupExpiredTokens() {
-        LocalDateTime cutoff = LocalDateTime.now().minusHours(24); // Keep tokens for 24 hours
-        blacklistedTokens.entrySet().removeIf(entry -> entry.getValue().isBefore(cutoff));
-        logger.debug("Cleaned up expired tokens from blacklist. Current size: {}", blacklistedTokens.size());
+        try {
+            int removed;
+            writeLock.lock();
+            try {
+                removed = revocationStore.expire(currentEpochSeconds());
+                removalsSinceRebuild += removed;
+                if (shouldRebuildBloomFilter()) {
+                    rebuildBloomFilter();
+                }
+                if (journal != null) {
+                    maintainJournal();
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            logger.debug("Cleaned up {} expired tokens from blacklist. Current size: {}", removed, revocationStore.size());
+        } catch (Exception e) {
+            logger.error("Blacklist cleanup failed - Error: {}", e.getMessage());
+        }
+        if (revocationBackend.isShared()) {
+            try {
+                int purged = revocationBackend.purgeExpired(currentEpochSeconds());
+                logger.debug("Purged {} expired revocations from shared store", purged);
+            } catch (Exception e) {
+                logger.error("Shared revocation store cleanup failed - Error: {}", e.getMessage());
+            }
+        }
+    }
+    
+    // Caller holds writeLock. A failed journal write keeps the revocation in memory; it only loses restart durability.
+    private void appendToJournal(TokenDigest digest, long expiresAtSeconds) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            if (expiresAtSeconds == 0) {
+                journal.appendRemoval(digest.getHigh(), digest.getLow());
+            } else {
+                journal.append(digest.getHigh(), digest.getLow(), expiresAtSeconds);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to append to token revocation journal - Error: {}", e.getMessage());
+        }
+    }
+    
+    // Caller holds writeLock. Rewrites the journal once most of it is expired or removed entries, then flushes to disk.
+    private void maintainJournal() {
+        try {
+            int records = journal.getRecordCount();
+            int live = revocationStore.size();
+            if (records > Math.max(4096, live * 2)) {
+                long start = System.nanoTime();
+                journal.compact(revocationStore);
+                logger.info("Compacted token revocation journal from {} to {} records in {} ms",
+                    records, live, (System.nanoTime() - start) / 1_000_000);
+            }
+            journal.force();
+        } catch (RuntimeException e) {
+            logger.error("Token revocation journal maintenance failed - Error: {}", e.getMessage());
+        }
+    }
+    
+    // A row's id and created_at are assigned before its transaction commits, so a row can become visible after
+    // rows with higher ids and later timestamps were read. Each pass therefore starts the overlap behind the newest
+    // row already seen and pages forward in (created_at, id) order; re-applying a row is idempotent. Anchoring the
+    // window to a row's timestamp rather than this node's clock keeps the reading node's skew out of it
+    private void syncFromBackend() {
+        try {
+            long recordedAt = newestRecordedAt == 0 ? 0 : newestRecordedAt - syncOverlapMillis * 1000;
+            long sequence = 0;
+            int applied = 0;
+            List<RevocationEvent> batch;
+            do {
+                batch = revocationBackend.fetchAfter(recordedAt, sequence, SYNC_BATCH_SIZE);
+                long now = currentEpochSeconds();
+                for (RevocationEvent event : batch) {
+                    if (applyReplicated(event, now)) {
+                        applied++;
+                    }
+                    recordedAt = event.getRecordedAtEpochMicros();
+                    sequence = event.getSequence();
+                    lastAppliedSequence = Math.max(lastAppliedSequence, sequence);
+                }
+            } while (batch.size() == SYNC_BATCH_SIZE);
+            newestRecordedAt = Math.max(newestRecordedAt, recordedAt);
+            if (applied > 0) {
+                logger.debug("Applied {} replicated revocations. Current blacklist size: {}", applied, revocationStore.size());
+            }
+        } catch (Exception e) {
+            syncFailures++;
+            logger.error("Blacklist sync from shared store failed - Error: {}", e.getMessage());
+        }
+    }
+    
+    // Returns true if the revocation was new to this node
+    private boolean applyReplicated(RevocationEvent event, long now) {
+        writeLock.lock();
+        try {
+            if (revocationStore.contains(event.getDigestHigh(), event.getDigestLow(), now)) {
+                return false;
+            }
+            bloomFilter.put(event.getDigestHigh(), event.getDigestLow());
+            if (!revocationStore.add(event.getDigestHigh(), event.getDigestLow(), event.getExpiresAtEpochSeconds(), now)) {
+                return false;
+            }
+            insertionsSinceRebuild++;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    // Bloom filters cannot delete, so rebuild once enough entries expired or the filter outgrew its sizing
+    private boolean shouldRebuildBloomFilter() {
+        int live = revocationStore.size();
+        return removalsSinceRebuild > Math.max(1024, live)
+            || insertionsSinceRebuild > bloomFilter.getExpectedInsertions();
+    }
+    
+    private void rebuildBloomFilter() {
+        int live = revocationStore.size();
+        RevocationBloomFilter rebuilt = new RevocationBloomFilter(
+            Math.max(bloomExpectedInsertions, live * 2), bloomFalsePositiveRate);
+        revocationStore.forEach(rebuilt::put);
+        bloomFilter = rebuilt;
+        insertionsSinceRebuild = live;
+        removalsSinceRebuild = 0;
+        bloomRebuilds++;
+        logger.debug("Blacklist Bloom filter rebuilt for {} live entries", live);
+    }
+    
+    private static long currentEpochSeconds() {
+        return System.currentTimeMillis() / 1000;
     }
 }
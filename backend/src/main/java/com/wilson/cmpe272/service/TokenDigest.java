@@ -0,0 +1,77 @@
+package com.wilson.cmpe272.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Fixed-width (128-bit) SHA-256 based fingerprint of a bearer token.
+ * Used as a compact, collision-resistant key wherever a full JWT string would otherwise be stored.
+ */
+public final class TokenDigest {
+
+    private static final ReusableState<MessageDigest> SHA_256 = new ReusableState<>(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final long high;
+    private final long low;
+
+    public TokenDigest(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public static TokenDigest of(String token) {
+        MessageDigest digest = SHA_256.acquire();
+        byte[] hash;
+        try {
+            hash = digest.digest(token.getBytes(StandardCharsets.US_ASCII));
+        } finally {
+            SHA_256.release(digest);
+        }
+        return new TokenDigest(readLong(hash, 0), readLong(hash, 8));
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TokenDigest)) {
+            return false;
+        }
+        TokenDigest other = (TokenDigest) o;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high * 31 + low);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
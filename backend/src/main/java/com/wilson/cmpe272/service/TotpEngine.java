@@ -0,0 +1,203 @@
+package com.wilson.cmpe272.service;
+
+import org.apache.commons.codec.binary.Base32;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RFC 6238 TOTP generator/verifier (HMAC-SHA1, SHA256 or SHA512; configurable digits and period).
+ * <p>
+ * Hot-path work is allocation-free: a {@link Mac} and its buffers are reused through {@link ReusableState}
+ * (per platform thread, pooled for virtual threads), decoded keys are cached per secret, a key is initialised
+ * once for the whole drift window (and skipped entirely when the Mac last used the same key), and codes are
+ * compared as ints rather than formatted strings.
+ */
+public final class TotpEngine {
+
+    public static final long NO_MATCH = -1;
+
+    private static final int[] POWERS_OF_TEN = {
+        1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000, 1_000_000_000
+    };
+
+    private final String algorithm;
+    private final String macAlgorithm;
+    private final int digits;
+    private final int modulus;
+    private final long periodSeconds;
+    private final int window;
+    private final int keyCacheMaxSize;
+
+    private final Base32 base32 = new Base32();
+    private final ConcurrentHashMap<String, SecretKeySpec> keys = new ConcurrentHashMap<>();
+    private final ReusableState<MacState> macState;
+
+    /**
+     * @param algorithm SHA1, SHA256 or SHA512
+     * @param digits code length, 6 to 9
+     * @param periodSeconds time step length
+     * @param window steps accepted on either side of the current one to tolerate clock drift
+     * @param keyCacheMaxSize decoded secrets kept in memory
+     */
+    public TotpEngine(String algorithm, int digits, long periodSeconds, int window, int keyCacheMaxSize) {
+        this.algorithm = algorithm.toUpperCase(Locale.ROOT).replace("-", "");
+        this.macAlgorithm = switch (this.algorithm) {
+            case "SHA1" -> "HmacSHA1";
+            case "SHA256" -> "HmacSHA256";
+            case "SHA512" -> "HmacSHA512";
+            default -> throw new IllegalArgumentException("Unsupported TOTP algorithm: " + algorithm);
+        };
+        if (digits < 6 || digits > 9) {
+            throw new IllegalArgumentException("TOTP digits must be between 6 and 9: " + digits);
+        }
+        if (periodSeconds <= 0) {
+            throw new IllegalArgumentException("TOTP period must be positive: " + periodSeconds);
+        }
+        this.digits = digits;
+        this.modulus = POWERS_OF_TEN[digits];
+        this.periodSeconds = periodSeconds;
+        this.window = Math.max(0, window);
+        this.keyCacheMaxSize = Math.max(1, keyCacheMaxSize);
+        this.macState = new ReusableState<>(MacState::new);
+    }
+
+    public long currentStep(long nowMillis) {
+        return nowMillis / 1000 / periodSeconds;
+    }
+
+    public int generate(String secret, long step) {
+        MacState state = macState.acquire();
+        try {
+            state.init(key(secret));
+            return state.code(step);
+        } finally {
+            macState.release(state);
+        }
+    }
+
+    /**
+     * Checks a code against every step in the drift window. Returns the matching time step, or {@link #NO_MATCH}.
+     */
+    public long verify(String secret, String code, long nowMillis) {
+        int expected = parse(code);
+        if (expected < 0) {
+            return NO_MATCH;
+        }
+        MacState state = macState.acquire();
+        try {
+            state.init(key(secret));
+            long current = currentStep(nowMillis);
+            long matched = NO_MATCH;
+            // Evaluate the whole window even after a match so timing does not reveal which step matched
+            for (long step = current - window; step <= current + window; step++) {
+                if (state.code(step) == expected && matched == NO_MATCH) {
+                    matched = step;
+                }
+            }
+            return matched;
+        } finally {
+            macState.release(state);
+        }
+    }
+
+    // Digits-only code of exactly the configured length, or -1
+    private int parse(String code) {
+        if (code == null || code.length() != digits) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < digits; i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private SecretKeySpec key(String secret) {
+        SecretKeySpec key = keys.get(secret);
+        if (key != null) {
+            return key;
+        }
+        if (keys.size() >= keyCacheMaxSize) {
+            Iterator<String> iterator = keys.keySet().iterator();
+            if (iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        byte[] decoded = base32.decode(secret);
+        key = new SecretKeySpec(decoded, macAlgorithm);
+        SecretKeySpec existing = keys.putIfAbsent(secret, key);
+        return existing != null ? existing : key;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getDigits() {
+        return digits;
+    }
+
+    public long getPeriodSeconds() {
+        return periodSeconds;
+    }
+
+    private final class MacState {
+        private final Mac mac;
+        private final byte[] counter = new byte[8];
+        private final byte[] hash;
+        private SecretKeySpec key;
+
+        private MacState() {
+            try {
+                mac = Mac.getInstance(macAlgorithm);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC algorithm not available: " + macAlgorithm, e);
+            }
+            hash = new byte[mac.getMacLength()];
+        }
+
+        private void init(SecretKeySpec newKey) {
+            if (newKey == key) {
+                return;
+            }
+            try {
+                mac.init(newKey);
+            } catch (GeneralSecurityException e) {
+                key = null;
+                throw new IllegalArgumentException("Invalid TOTP secret", e);
+            }
+            key = newKey;
+        }
+
+        // doFinal resets the Mac to its keyed initial state, so consecutive steps need no re-init
+        private int code(long step) {
+            for (int i = 7; i >= 0; i--) {
+                counter[i] = (byte) step;
+                step >>>= 8;
+            }
+            mac.update(counter);
+            try {
+                mac.doFinal(hash, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("TOTP HMAC computation failed", e);
+            }
+            // Dynamic truncation (RFC 4226)
+            int offset = hash[hash.length - 1] & 0x0F;
+            int binary = ((hash[offset] & 0x7F) << 24)
+                | ((hash[offset + 1] & 0xFF) << 16)
+                | ((hash[offset + 2] & 0xFF) << 8)
+                | (hash[offset + 3] & 0xFF);
+            return binary % modulus;
+        }
+    }
+}
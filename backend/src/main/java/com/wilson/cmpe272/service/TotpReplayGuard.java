@@ -0,0 +1,118 @@
+package com.wilson.cmpe272.service;
+
+import com.wilson.cmpe272.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rejects TOTP codes whose time step was already used (or is older than the last one used) by the same user.
+ * <p>
+ * {@code totp.replay-guard.mode=local} (default) keeps the state in memory only. {@code cluster} additionally
+ * claims every step the local check lets through with a conditional update of {@code users.last_totp_step}
+ * ({@code WHERE last_totp_step < step}); if no row changes, another node already accepted that step or a later
+ * one and the code is a replay. The local state still answers replays seen on this node without a query.
+ */
+@Service
+public class TotpReplayGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(TotpReplayGuard.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${totp.replay-guard.mode:local}")
+    private String mode;
+
+    @Value("${totp.period-seconds:30}")
+    private long periodSeconds;
+
+    @Value("${totp.window:1}")
+    private int window;
+
+    private final TotpStepTracker tracker = new TotpStepTracker();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "totp-replay-guard");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong claimFailures = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        scheduler.scheduleWithFixedDelay(this::purge, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        logger.info("TOTP replay guard mode: {}", isCluster() ? "cluster" : "local");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private boolean isCluster() {
+        return "cluster".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * Atomically records the step as used. Returns false if this or a later step was already accepted for the user.
+     */
+    public boolean tryAccept(Long userId, long step) {
+        if (!tracker.tryAccept(userId, step, -1)) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        if (isCluster() && !claim(userId, step)) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        accepted.incrementAndGet();
+        return true;
+    }
+
+    // The database decides between nodes; if it cannot be reached the code is refused rather than risk a replay
+    private boolean claim(Long userId, long step) {
+        try {
+            return userRepository.advanceLastTotpStep(userId, step) > 0;
+        } catch (Exception e) {
+            claimFailures.incrementAndGet();
+            logger.error("Failed to record TOTP step for user: {} - Error: {}", userId, e.getMessage());
+            return false;
+        }
+    }
+
+    // Entries older than the verification window can no longer block a code
+    private void purge() {
+        long currentStep = System.currentTimeMillis() / 1000 / periodSeconds;
+        int removed = tracker.purgeOlderThan(currentStep - window);
+        if (removed > 0) {
+            logger.debug("Purged {} idle TOTP replay guard entries. Current size: {}", removed, tracker.size());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", isCluster() ? "cluster" : "local");
+        stats.put("trackedUsers", tracker.size());
+        stats.put("accepted", accepted.get());
+        stats.put("rejectedReplays", rejected.get());
+        if (isCluster()) {
+            stats.put("claimFailures", claimFailures.get());
+        }
+        return stats;
+    }
+}
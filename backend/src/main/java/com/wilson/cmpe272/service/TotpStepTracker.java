@@ -0,0 +1,67 @@
+package com.wilson.cmpe272.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free record of the last accepted TOTP time step per user.
+ * <p>
+ * Acceptance is a single CAS on the user's counter, so of several concurrent requests carrying the same
+ * (or an older) step exactly one wins. Entries whose step has aged out of the verification window can
+ * no longer block any code and are purged; eviction retires a counter by CASing it to {@link #RETIRED}
+ * first, which fails if a request advanced it concurrently, so an accepted step is never forgotten.
+ */
+public final class TotpStepTracker {
+
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    private final ConcurrentHashMap<Long, AtomicLong> lastSteps = new ConcurrentHashMap<>();
+
+    /**
+     * Accepts the step if it is newer than anything accepted before for this user.
+     *
+     * @param initialFloor last step known from elsewhere (e.g. the database), used only when the user has no entry
+     */
+    public boolean tryAccept(long userId, long step, long initialFloor) {
+        while (true) {
+            AtomicLong last = lastSteps.computeIfAbsent(userId, id -> new AtomicLong(initialFloor));
+            long current = last.get();
+            if (current == RETIRED) {
+                // Lost a race with eviction: help remove the retired counter and start over with a fresh one
+                lastSteps.remove(userId, last);
+                continue;
+            }
+            if (step <= current) {
+                return false;
+            }
+            if (last.compareAndSet(current, step)) {
+                return true;
+            }
+        }
+    }
+
+    public boolean contains(long userId) {
+        return lastSteps.containsKey(userId);
+    }
+
+    /**
+     * Drops users whose last accepted step is older than the given one. Returns the number removed.
+     */
+    public int purgeOlderThan(long oldestRelevantStep) {
+        int removed = 0;
+        for (Map.Entry<Long, AtomicLong> entry : lastSteps.entrySet()) {
+            AtomicLong last = entry.getValue();
+            long current = last.get();
+            if (current != RETIRED && current < oldestRelevantStep && last.compareAndSet(current, RETIRED)) {
+                lastSteps.remove(entry.getKey(), last);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return lastSteps.size();
+    }
+}
@@ -1,18 +1,15 @@
 package com.wilson.cmpe272.service;
 
+import com.wilson.cmpe272.entity.PendingRegistration;
 import com.wilson.cmpe272.entity.User;
-import org.apache.commons.codec.binary.Base32;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.security.SecureRandom;
+import jakarta.annotation.PostConstruct;
 import java.time.LocalDateTime;
-import java.util.Random;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.ByteBuffer;
 
 @Service
 public class TwoFactorService {
@@ -22,46 +19,110 @@ public class TwoFactorService {
     @Autowired
     private EmailService emailService;
     
+    @Autowired
+    private TotpReplayGuard totpReplayGuard;
+    
+    @Autowired
+    private SecureCodeGenerator secureCodeGenerator;
+    
+    // Changing any TOTP setting invalidates codes from authenticator apps that are already enrolled
+    @Value("${totp.algorithm:SHA1}")
+    private String totpAlgorithm;
+    
+    @Value("${totp.digits:6}")
+    private int totpDigits;
+    
+    @Value("${totp.period-seconds:30}")
+    private long totpPeriodSeconds;
+    
+    @Value("${totp.window:1}")
+    private int totpWindow;
+    
+    @Value("${totp.key-cache.max-size:10000}")
+    private int totpKeyCacheMaxSize;
     
-    private final Random random = new Random();
-    private final Base32 base32 = new Base32();
+    private TotpEngine totpEngine;
+    
+    @PostConstruct
+    void init() {
+        totpEngine = new TotpEngine(totpAlgorithm, totpDigits, totpPeriodSeconds, totpWindow, totpKeyCacheMaxSize);
+        logger.info("TOTP configured: {}, {} digits, {}s period, +/-{} step window",
+            totpEngine.getAlgorithm(), totpDigits, totpPeriodSeconds, totpWindow);
+    }
     
     public String generateVerificationCode() {
-        String code = String.format("%06d", random.nextInt(1000000));
+        String code = secureCodeGenerator.numericCode(6);
         logger.debug("Generated verification code: {}", code);
         return code;
     }
     
     public String generateSecretKey() {
         logger.debug("Generating secret key for authenticator app");
-        byte[] buffer = new byte[10];
-        new SecureRandom().nextBytes(buffer);
-        String secretKey = base32.encodeToString(buffer).replaceAll("=", "");
+        String secretKey = secureCodeGenerator.base32Secret(10);
         logger.debug("Secret key generated successfully");
         return secretKey;
     }
     
     public void sendEmailVerificationCode(User user) {
-        logger.info("Sending email verification code to user: {}", user.getEmail());
+        sendEmailVerificationCode(user, assignEmailVerificationCode(user));
+    }
+    
+    // Sets a new code on the user without sending it, for callers that must persist the user first
+    public String assignEmailVerificationCode(User user) {
         String verificationCode = generateVerificationCode();
         user.setEmailVerificationCode(verificationCode);
         user.setEmailVerificationExpiresAt(LocalDateTime.now().plusMinutes(10));
-        
+        return verificationCode;
+    }
+    
+    public void sendEmailVerificationCode(User user, String verificationCode) {
+        logger.info("Sending email verification code to user: {}", user.getEmail());
         emailService.sendVerificationCode(user.getEmail(), verificationCode);
         logger.info("Email verification code sent successfully to user: {}", user.getEmail());
     }
     
+    public void sendEmailVerificationCode(PendingRegistration registration) {
+        logger.info("Sending email verification code to pending registration: {}", registration.getEmail());
+        String verificationCode = generateVerificationCode();
+        registration.setVerificationCode(verificationCode);
+        registration.setVerificationExpiresAt(LocalDateTime.now().plusMinutes(10));
+        
+        emailService.sendVerificationCode(registration.getEmail(), verificationCode);
+        logger.info("Email verification code sent successfully to pending registration: {}", registration.getEmail());
+    }
+    
+    public boolean verifyEmailCode(PendingRegistration registration, String code) {
+        boolean isValid = code != null &&
+               code.equals(registration.getVerificationCode()) &&
+               registration.getVerificationExpiresAt() != null &&
+               registration.getVerificationExpiresAt().isAfter(LocalDateTime.now());
+        logger.info("Email code verification result for pending registration {}: {}", registration.getEmail(), isValid);
+        return isValid;
+    }
+    
     
     public void sendTwoFactorCode(User user) {
-        logger.info("Sending 2FA code for user: {} using method: {}", user.getEmail(), user.getTwoFactorMethod());
+        sendTwoFactorCode(user, assignTwoFactorCode(user));
+    }
+    
+    // Sets a new 2FA code on the user without sending it, for callers that must persist the code first.
+    // Returns null for authenticator apps, which generate their own codes
+    public String assignTwoFactorCode(User user) {
+        if (user.getTwoFactorMethod() != User.TwoFactorMethod.EMAIL) {
+            return null;
+        }
         String verificationCode = generateVerificationCode();
-        
+        user.setEmailVerificationCode(verificationCode);
+        user.setEmailVerificationExpiresAt(LocalDateTime.now().plusMinutes(5));
+        return verificationCode;
+    }
+    
+    public void sendTwoFactorCode(User user, String verificationCode) {
+        logger.info("Sending 2FA code for user: {} using method: {}", user.getEmail(), user.getTwoFactorMethod());
         switch (user.getTwoFactorMethod()) {
             case EMAIL:
                 logger.info("Sending 2FA code via email to user: {}", user.getEmail());
                 emailService.sendTwoFactorCode(user.getEmail(), verificationCode);
-                user.setEmailVerificationCode(verificationCode);
-                user.setEmailVerificationExpiresAt(LocalDateTime.now().plusMinutes(5));
                 break;
             case AUTHENTICATOR_APP:
                 logger.debug("2FA via authenticator app - no code sent, user generates their own");
@@ -71,6 +132,22 @@ public class TwoFactorService {
         logger.info("2FA code sending process completed for user: {}", user.getEmail());
     }
     
+    // Signed login challenges: the code is returned to be sealed into the challenge instead of stored on the user
+    public String sendLoginCode(User user) {
+        logger.info("Sending login code for user: {} using method: {}", user.getEmail(), user.getTwoFactorMethod());
+        switch (user.getTwoFactorMethod()) {
+            case EMAIL:
+                String verificationCode = generateVerificationCode();
+                emailService.sendTwoFactorCode(user.getEmail(), verificationCode);
+                return verificationCode;
+            case AUTHENTICATOR_APP:
+                logger.debug("2FA via authenticator app - no code sent, user generates their own");
+                return null;
+            default:
+                throw new IllegalStateException("Unknown 2FA method: " + user.getTwoFactorMethod());
+        }
+    }
+    
     public boolean verifyEmailCode(User user, String code) {
         logger.debug("Verifying email code for user: {}", user.getEmail());
         boolean isValid = code != null && 
@@ -109,16 +186,16 @@ public class TwoFactorService {
         }
         
         try {
-            // Get current time step (30-second window)
-            long currentTimeStep = System.currentTimeMillis() / 1000 / 30;
-            
-            // Check current, previous, and next time windows for clock drift tolerance
-            for (int i = -1; i <= 1; i++) {
-                String expectedCode = generateTotpCode(user.getTwoFactorSecret(), currentTimeStep + i);
-                if (code.equals(expectedCode)) {
-                    logger.info("TOTP code verification successful for user: {}", user.getEmail());
-                    return true;
+            // Current step plus the drift window, verified with a single key init
+            long matchedStep = totpEngine.verify(user.getTwoFactorSecret(), code, System.currentTimeMillis());
+            if (matchedStep != TotpEngine.NO_MATCH) {
+                // A code is single-use: reject its step (or an older one) once any request has accepted it
+                if (user.getId() != null && !totpReplayGuard.tryAccept(user.getId(), matchedStep)) {
+                    logger.warn("TOTP code verification failed - code already used for user: {}", user.getEmail());
+                    return false;
                 }
+                logger.info("TOTP code verification successful for user: {}", user.getEmail());
+                return true;
             }
             
             logger.warn("TOTP code verification failed - no matching code found for user: {}", user.getEmail());
@@ -129,44 +206,6 @@ public class TwoFactorService {
         }
     }
     
-    private String generateTotpCode(String secret, long timeStep) {
-        logger.debug("Generating TOTP code for time step: {} using Authy-compatible algorithm", timeStep);
-        try {
-            // Decode the base32 secret
-            byte[] key = base32.decode(secret);
-            
-            // Convert time step to byte array (big-endian, 8 bytes)
-            ByteBuffer buffer = ByteBuffer.allocate(8);
-            buffer.putLong(timeStep);
-            byte[] timeBytes = buffer.array();
-            
-            // Create HMAC-SHA1
-            Mac mac = Mac.getInstance("HmacSHA1");
-            SecretKeySpec secretKeySpec = new SecretKeySpec(key, "HmacSHA1");
-            mac.init(secretKeySpec);
-            
-            // Calculate HMAC
-            byte[] hash = mac.doFinal(timeBytes);
-            
-            // Dynamic truncation (RFC 4226)
-            int offset = hash[hash.length - 1] & 0x0F;
-            int binary = ((hash[offset] & 0x7F) << 24) |
-                        ((hash[offset + 1] & 0xFF) << 16) |
-                        ((hash[offset + 2] & 0xFF) << 8) |
-                        (hash[offset + 3] & 0xFF);
-            
-            // Generate 6-digit code
-            int code = binary % 1000000;
-            String totpCode = String.format("%06d", code);
-            
-            logger.debug("TOTP code generated successfully: {}", totpCode);
-            return totpCode;
-        } catch (Exception e) {
-            logger.error("Failed to generate TOTP code: {}", e.getMessage());
-            return "000000";
-        }
-    }
-    
     public void setupAuthenticatorApp(User user) {
         logger.info("Setting up authenticator app for user: {}", user.getEmail());
         if (user.getTwoFactorSecret() == null) {
@@ -187,6 +226,16 @@ public class TwoFactorService {
         // Generate QR code URL for authenticator apps
         String qrCodeUrl = String.format("otpauth://totp/%s:%s?secret=%s&issuer=%s",
                 issuer, accountName, secret, issuer);
+        // Authenticator apps assume SHA1, 6 digits and 30 seconds unless told otherwise
+        if (!"SHA1".equals(totpEngine.getAlgorithm())) {
+            qrCodeUrl += "&algorithm=" + totpEngine.getAlgorithm();
+        }
+        if (totpEngine.getDigits() != 6) {
+            qrCodeUrl += "&digits=" + totpEngine.getDigits();
+        }
+        if (totpEngine.getPeriodSeconds() != 30) {
+            qrCodeUrl += "&period=" + totpEngine.getPeriodSeconds();
+        }
         logger.info("QR code generated successfully for user: {}", user.getEmail());
         return qrCodeUrl;
     }
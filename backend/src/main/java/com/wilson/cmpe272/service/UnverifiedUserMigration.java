@@ -0,0 +1,137 @@
+package com.wilson.cmpe272.service;
+
+import com.wilson.cmpe272.entity.PendingRegistration;
+import com.wilson.cmpe272.entity.User;
+import com.wilson.cmpe272.repository.PendingRegistrationRepository;
+import com.wilson.cmpe272.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One-off job that moves unverified signups out of {@code users}, for deployments that switch on
+ * pending registrations. Users whose verification code has expired are removed from {@code users}; those
+ * still inside the registration lifetime become pending registrations (a new code can be requested),
+ * the rest are dropped. Runs in id-ordered batches, each in its own transaction, so it can be stopped and
+ * rerun at any point. Each batch is selected with {@code FOR UPDATE} inside its transaction, so when every node
+ * starts the job at once they take turns batch by batch and no user is migrated twice. Enabled with
+ * {@code registration.pending.migrate-unverified=true}; it runs in the background once the application has
+ * started.
+ */
+@Component
+public class UnverifiedUserMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(UnverifiedUserMigration.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PendingRegistrationRepository pendingRegistrationRepository;
+
+    @Autowired
+    private PendingRegistrationStore pendingRegistrationStore;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${registration.pending.migrate-unverified:false}")
+    private boolean migrateUnverified;
+
+    @Value("${registration.pending.migration-batch-size:500}")
+    private int batchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    void migrateOnStartup() {
+        if (!migrateUnverified) {
+            return;
+        }
+        if (!pendingRegistrationStore.isEnabled()) {
+            logger.warn("registration.pending.migrate-unverified is set but pending registrations are disabled; skipping");
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                migrate();
+            } catch (Exception e) {
+                logger.error("Unverified user migration failed - Error: {}", e.getMessage());
+            }
+        }, "unverified-user-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Migrates every unverified user whose code has expired. Returns the counts of moved and deleted users.
+     */
+    public Map<String, Long> migrate() {
+        long start = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        long afterId = 0;
+        long[] totals = new long[2];
+        long[] moved = new long[1];
+        List<User> batch;
+        do {
+            long cursor = afterId;
+            batch = transactionTemplate.execute(status -> {
+                List<User> users = userRepository.findUnverifiedExpiredForUpdate(cursor, now, PageRequest.of(0, batchSize));
+                moved[0] = users.isEmpty() ? 0 : migrateBatch(users, now);
+                return users;
+            });
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (User user : batch) {
+                userCache.evict(user.getEmail());
+            }
+            totals[0] += moved[0];
+            totals[1] += batch.size() - moved[0];
+            afterId = batch.get(batch.size() - 1).getId();
+            logger.debug("Migrated unverified users up to id {} ({} moved, {} deleted so far)", afterId, totals[0], totals[1]);
+        } while (batch.size() == batchSize);
+
+        logger.info("Unverified user migration finished in {} ms: {} moved to pending registrations, {} deleted",
+            System.currentTimeMillis() - start, totals[0], totals[1]);
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("moved", totals[0]);
+        result.put("deleted", totals[1]);
+        return result;
+    }
+
+    private long migrateBatch(List<User> users, LocalDateTime now) {
+        long moved = 0;
+        List<Long> ids = new ArrayList<>(users.size());
+        for (User user : users) {
+            ids.add(user.getId());
+            LocalDateTime expiresAt = pendingRegistrationStore.expiryFor(user.getCreatedAt() != null ? user.getCreatedAt() : now);
+            if (expiresAt.isAfter(now)) {
+                PendingRegistration registration = new PendingRegistration(user.getEmail(), user.getPassword(),
+                    user.getFirstName(), user.getLastName(), user.getTwoFactorMethod(), expiresAt);
+                registration.setTwoFactorSecret(user.getTwoFactorSecret());
+                registration.setCreatedAt(user.getCreatedAt());
+                pendingRegistrationRepository.save(registration);
+                moved++;
+            }
+        }
+        userRepository.deleteAllByIdInBatch(ids);
+        if (moved > 0) {
+            pendingRegistrationStore.tableWritten();
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,214 @@
+package com.wilson.cmpe272.service;
+
+import com.wilson.cmpe272.config.ClusterSettings;
+import com.wilson.cmpe272.entity.User;
+import com.wilson.cmpe272.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded, TTL-evicting cache in front of {@link UserRepository#findByEmail(String)}.
+ * Entries are keyed by normalized email and handed out as detached copies for read-only lookups, including the
+ * password and account status that login checks. Writes re-read the row under a lock inside their transaction
+ * ({@link UserRepository#findByEmailForUpdate(String)}) and {@link #put(User)} the result once it commits, so on a
+ * single node a copy is never behind. A change made on another node is not seen for up to
+ * {@code user-cache.ttl-seconds}, which would let an old password or a suspended account through; unless
+ * {@code user-cache.enabled} is set, the cache is therefore off on a node configured for a cluster
+ * (see {@link ClusterSettings}) and every lookup reads the database.
+ */
+@Service
+public class UserCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserCache.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ClusterSettings clusterSettings;
+
+    @Value("${user-cache.enabled:}")
+    private String enabledSetting;
+
+    @Value("${user-cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${user-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    private final ConcurrentHashMap<String, CacheEntry> entries = new ConcurrentHashMap<>();
+
+    // Loads in progress; concurrent misses for the same email wait on the same future
+    private final ConcurrentHashMap<String, CompletableFuture<Optional<User>>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final Object capacityLock = new Object();
+
+    private boolean enabled;
+
+    @PostConstruct
+    void init() {
+        enabled = enabledSetting.isBlank() ? !clusterSettings.isClustered() : Boolean.parseBoolean(enabledSetting.trim());
+        if (!enabled) {
+            if (enabledSetting.isBlank()) {
+                logger.info("User cache disabled by default on a clustered node; "
+                    + "set user-cache.enabled=true to accept up to {}s of cross-node staleness", ttlSeconds);
+            } else {
+                logger.info("User cache disabled");
+            }
+        }
+    }
+
+    public static String normalize(String email) {
+        return User.normalizeEmail(email);
+    }
+
+    public Optional<User> findByEmail(String email) {
+        String key = normalize(email);
+        if (key == null) {
+            return Optional.empty();
+        }
+        if (!enabled) {
+            return userRepository.findByEmail(key);
+        }
+
+        long now = System.currentTimeMillis();
+        CacheEntry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.expiresAtMillis > now) {
+                hits.incrementAndGet();
+                logger.debug("User cache hit for email: {}", key);
+                return Optional.of(new User(entry.user));
+            }
+            if (entries.remove(key, entry)) {
+                evictions.incrementAndGet();
+            }
+        }
+
+        misses.incrementAndGet();
+        CompletableFuture<Optional<User>> future = new CompletableFuture<>();
+        CompletableFuture<Optional<User>> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            logger.debug("User cache miss for email: {} - waiting on in-flight load", key);
+            return existing.join().map(User::new);
+        }
+
+        try {
+            logger.debug("User cache miss for email: {} - loading from database", key);
+            Optional<User> loaded = userRepository.findByEmail(key);
+            loaded.ifPresent(user -> store(key, user, future));
+            future.complete(loaded);
+            return loaded.map(User::new);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    public void put(User user) {
+        if (!enabled || user == null || user.getEmail() == null) {
+            return;
+        }
+        String key = normalize(user.getEmail());
+        inFlight.remove(key);
+        ensureCapacity();
+        entries.put(key, new CacheEntry(new User(user), System.currentTimeMillis() + ttlSeconds * 1000));
+        logger.debug("User cache updated for email: {}", key);
+    }
+
+    public void evict(String email) {
+        String key = normalize(email);
+        if (key == null) {
+            return;
+        }
+        // Cancel any in-flight load so it cannot repopulate the entry with pre-mutation data
+        inFlight.remove(key);
+        if (entries.remove(key) != null) {
+            logger.debug("User cache entry evicted for email: {}", key);
+        }
+    }
+
+    public void clear() {
+        inFlight.clear();
+        entries.clear();
+        logger.info("User cache cleared");
+    }
+
+    private void store(String key, User user, CompletableFuture<Optional<User>> loader) {
+        ensureCapacity();
+        CacheEntry entry = new CacheEntry(new User(user), System.currentTimeMillis() + ttlSeconds * 1000);
+        // Only store if no invalidation happened while this load was running
+        entries.compute(key, (k, current) -> inFlight.get(k) == loader ? entry : current);
+    }
+
+    // Drops expired entries, then the oldest tenth of the rest, so a full cache sorts once per batch of inserts
+    // rather than on every one. Every entry gets the same TTL, so the earliest expiry is the longest-cached user
+    private void ensureCapacity() {
+        if (entries.size() < maxSize) {
+            return;
+        }
+        synchronized (capacityLock) {
+            if (entries.size() < maxSize) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            int before = entries.size();
+            entries.values().removeIf(entry -> entry.expiresAtMillis <= now);
+            if (entries.size() >= maxSize) {
+                int excess = entries.size() - maxSize + Math.max(1, maxSize / 10);
+                List<Map.Entry<String, CacheEntry>> oldest = entries.entrySet().stream()
+                    .sorted(Comparator.comparingLong(e -> e.getValue().expiresAtMillis))
+                    .limit(excess)
+                    .toList();
+                // A refreshed entry is newer than the one sorted here, so it stays
+                oldest.forEach(e -> entries.remove(e.getKey(), e.getValue()));
+            }
+            evictions.addAndGet(Math.max(0, before - entries.size()));
+            logger.debug("User cache evicted {} entries. Current size: {}", before - entries.size(), entries.size());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", entries.size());
+        stats.put("maxSize", maxSize);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.get());
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        return stats;
+    }
+
+    private static final class CacheEntry {
+        private final User user;
+        private final long expiresAtMillis;
+
+        private CacheEntry(User user, long expiresAtMillis) {
+            this.user = user;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -6,22 +6,29 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
     
     private static final Logger logger = LoggerFactory.getLogger(UserDetailsServiceImpl.class);
     
+    @Autowired
+    private UserCache userCache;
+    
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private PasswordHashingPolicy passwordHashingPolicy;
+    
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
         logger.debug("Loading user details for email: {}", email);
-        User user = userRepository.findByEmail(email)
+        User user = userCache.findByEmail(email)
                 .orElseThrow(() -> {
                     logger.warn("User not found with email: {}", email);
                     return new UsernameNotFoundException("User not found with email: " + email);
@@ -30,4 +37,30 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         logger.info("User details loaded successfully for email: {}", email);
         return user;
     }
+    
+    // Called after a successful login whose stored hash uses an outdated algorithm or cost. The user may be a
+    // cached copy from before a password change on another node, so the new hash is written only over the hash
+    // this login verified; otherwise the old password would be restored
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newEncodedPassword) {
+        User user = (User) userDetails;
+        try {
+            String currentHash = user.getPassword();
+            userCache.evict(user.getEmail());
+            if (userRepository.replacePassword(user.getId(), currentHash, newEncodedPassword) == 0) {
+                passwordHashingPolicy.recordUpgradeConflict();
+                logger.warn("Password hash upgrade skipped - password changed since it was verified for user: {}", user.getEmail());
+                return userDetails;
+            }
+            passwordHashingPolicy.recordUpgrade(currentHash);
+            user.setPassword(newEncodedPassword);
+            logger.info("Password hash upgraded for user: {}", user.getEmail());
+            return user;
+        } catch (Exception e) {
+            // The old hash still works, so a failed upgrade must not fail the login; it is retried next time
+            passwordHashingPolicy.recordUpgradeFailure();
+            logger.warn("Password hash upgrade failed for user: {} - Error: {}", user.getEmail(), e.getMessage());
+            return userDetails;
+        }
+    }
 }
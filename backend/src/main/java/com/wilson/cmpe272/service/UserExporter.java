@@ -0,0 +1,240 @@
+package com.wilson.cmpe272.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams the users table as NDJSON or CSV for audits and warehouse loads.
+ * <p>
+ * Only the columns in {@link #COLUMNS} are read; password hashes, TOTP secrets and verification codes never
+ * leave the database. Rows are fetched in keyset pages of {@code user-export.page-size} (by {@code id}, or by
+ * {@code updated_at, id} for an incremental export) and written out before the next page is read, so memory
+ * use is bounded by one page and the pooled connection is only held while a page is being fetched, not while
+ * a slow client drains the stream.
+ * <p>
+ * An incremental export returns rows with {@code updated_at} at or after the given watermark. Callers should
+ * pass the {@link #watermark()} taken for the previous run. {@code updated_at} is stamped from the writing
+ * node's clock before its transaction commits, so the watermark trails the clock by
+ * {@code user-export.watermark-overlap-seconds}; a row is then missed only if its transaction took longer than
+ * that to commit, or that node's clock was further off. Rows inside the overlap are exported twice, and loaders
+ * upsert by id.
+ * <p>
+ * The last line of a complete export is a trailer, {@code {"exportComplete":true,"rows":N}} in NDJSON and
+ * {@code #exportComplete,N} in CSV. A stream that fails after the response has started just ends, so a
+ * missing trailer is how a consumer tells a truncated export from a short one.
+ */
+@Service
+public class UserExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserExporter.class);
+
+    // Export field names match the bulk-import field names where both exist
+    static final String[] COLUMNS = {"id", "email", "firstName", "lastName", "twoFactorMethod", "twoFactorEnabled",
+        "emailVerified", "status", "createdAt", "updatedAt", "lastLoginAt"};
+
+    private static final String SELECT_COLUMNS = "SELECT id, email, first_name, last_name, two_factor_method, "
+        + "is_two_factor_enabled, is_email_verified, status, created_at, updated_at, last_login_at FROM users ";
+
+    private static final String PAGE_BY_ID = SELECT_COLUMNS + "WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String PAGE_BY_UPDATED_AT = SELECT_COLUMNS
+        + "WHERE updated_at > ? OR (updated_at = ? AND id > ?) ORDER BY updated_at, id LIMIT ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${user-export.page-size:1000}")
+    private int pageSize;
+
+    // Longest a user write may take to commit plus the clock skew between nodes
+    @Value("${user-export.watermark-overlap-seconds:60}")
+    private long watermarkOverlapSeconds;
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong exports = new AtomicLong();
+    private final AtomicLong rowsExported = new AtomicLong();
+    private volatile Map<String, Object> lastResult;
+
+    /**
+     * The {@code since} to pass to the next incremental run. Take it before the export starts.
+     */
+    public LocalDateTime watermark() {
+        return LocalDateTime.now().minusSeconds(watermarkOverlapSeconds);
+    }
+
+    /**
+     * Writes every user, or with {@code since} set only those updated at or after it, to {@code output},
+     * followed by the trailer. The caller owns the stream and closes it.
+     *
+     * @return the number of rows written
+     */
+    public long export(OutputStream output, UserImportReader.Format format, LocalDateTime since) throws IOException {
+        running.incrementAndGet();
+        long start = System.nanoTime();
+        long rows = 0;
+        int pages = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 64 * 1024);
+        JsonGenerator json = null;
+        try {
+            if (format == UserImportReader.Format.CSV) {
+                writer.write(String.join(",", COLUMNS));
+                writer.write('\n');
+            } else {
+                json = objectMapper.getFactory().createGenerator(writer);
+                json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                json.setRootValueSeparator(null);
+            }
+            long lastId = 0;
+            LocalDateTime lastUpdatedAt = since;
+            List<Row> page;
+            do {
+                page = since == null
+                    ? jdbcTemplate.query(PAGE_BY_ID, UserExporter::mapRow, lastId, pageSize)
+                    : jdbcTemplate.query(PAGE_BY_UPDATED_AT, UserExporter::mapRow,
+                        Timestamp.valueOf(lastUpdatedAt), Timestamp.valueOf(lastUpdatedAt), lastId, pageSize);
+                for (Row row : page) {
+                    if (json == null) {
+                        writeCsv(writer, row);
+                    } else {
+                        writeJson(json, row);
+                    }
+                }
+                if (!page.isEmpty()) {
+                    Row last = page.get(page.size() - 1);
+                    lastId = last.id;
+                    lastUpdatedAt = last.updatedAt;
+                    rows += page.size();
+                    pages++;
+                    rowsExported.addAndGet(page.size());
+                    if (json != null) {
+                        json.flush();
+                    }
+                    writer.flush();
+                }
+            } while (page.size() == pageSize);
+            if (json != null) {
+                json.writeStartObject();
+                json.writeBooleanField("exportComplete", true);
+                json.writeNumberField("rows", rows);
+                json.writeEndObject();
+                json.writeRaw('\n');
+                json.close();
+            } else {
+                writer.write("#exportComplete," + rows + "\n");
+            }
+            writer.flush();
+        } finally {
+            running.decrementAndGet();
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("format", format.name());
+            result.put("since", since == null ? null : since.toString());
+            result.put("rows", rows);
+            result.put("pages", pages);
+            result.put("elapsedMillis", elapsedMillis);
+            result.put("rowsPerSecond", elapsedMillis > 0 ? rows * 1000 / elapsedMillis : rows);
+            lastResult = result;
+            exports.incrementAndGet();
+            logger.info("User export finished ({}, since {}): {} rows in {} pages, {} ms",
+                format, since == null ? "the beginning" : since, rows, pages, elapsedMillis);
+        }
+        return rows;
+    }
+
+    private static void writeJson(JsonGenerator json, Row row) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField(COLUMNS[0], row.id);
+        Object[] values = row.values();
+        for (int i = 1; i < COLUMNS.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                json.writeNullField(COLUMNS[i]);
+            } else if (value instanceof Boolean flag) {
+                json.writeBooleanField(COLUMNS[i], flag);
+            } else {
+                json.writeStringField(COLUMNS[i], value.toString());
+            }
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private static void writeCsv(Writer writer, Row row) throws IOException {
+        Object[] values = row.values();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(csvField(values[i].toString()));
+            }
+        }
+        writer.write('\n');
+    }
+
+    static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static Row mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new Row(rs.getLong("id"), rs.getString("email"), rs.getString("first_name"), rs.getString("last_name"),
+            rs.getString("two_factor_method"), rs.getObject("is_two_factor_enabled", Boolean.class),
+            rs.getObject("is_email_verified", Boolean.class), rs.getString("status"),
+            toLocalDateTime(rs.getTimestamp("created_at")), toLocalDateTime(rs.getTimestamp("updated_at")),
+            toLocalDateTime(rs.getTimestamp("last_login_at")));
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", running.get());
+        stats.put("exports", exports.get());
+        stats.put("rowsExported", rowsExported.get());
+        if (lastResult != null) {
+            stats.put("lastExport", lastResult);
+        }
+        return stats;
+    }
+
+    // One exported row, in COLUMNS order
+    private record Row(long id, String email, String firstName, String lastName, String twoFactorMethod,
+                       Boolean twoFactorEnabled, Boolean emailVerified, String status, LocalDateTime createdAt,
+                       LocalDateTime updatedAt, LocalDateTime lastLoginAt) {
+
+        Object[] values() {
+            return new Object[] {id, email, firstName, lastName, twoFactorMethod, twoFactorEnabled, emailVerified,
+                status, createdAt, updatedAt, lastLoginAt};
+        }
+    }
+}
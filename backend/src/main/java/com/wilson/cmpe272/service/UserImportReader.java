@@ -0,0 +1,164 @@
+package com.wilson.cmpe272.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads bulk-import records one line at a time, so input of any size is parsed in constant memory.
+ * <p>
+ * NDJSON: one JSON object per line. CSV: a header line naming the columns, then one record per line; fields
+ * may be double-quoted (with {@code ""} for a quote) but may not span lines. Both formats use the field names
+ * {@code email}, {@code password} or {@code passwordHash}, {@code firstName}, {@code lastName},
+ * {@code emailVerified}, {@code twoFactorMethod} and {@code twoFactorSecret}. Blank lines are skipped.
+ */
+public final class UserImportReader implements Closeable {
+
+    public enum Format {
+        NDJSON, CSV;
+
+        public static Format parse(String value) {
+            return switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "ndjson", "jsonl", "application/x-ndjson" -> NDJSON;
+                case "csv", "text/csv" -> CSV;
+                default -> throw new IllegalArgumentException("Unsupported import format: " + value);
+            };
+        }
+    }
+
+    /**
+     * One input record. {@code error} is set when the line could not be parsed.
+     */
+    public static final class Record {
+        final long line;
+        final Map<String, String> fields;
+        final String error;
+
+        Record(long line, Map<String, String> fields, String error) {
+            this.line = line;
+            this.fields = fields;
+            this.error = error;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String get(String field) {
+            String value = fields.get(field);
+            return value == null || value.isBlank() ? null : value;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    private final BufferedReader reader;
+    private final Format format;
+    private final ObjectMapper objectMapper;
+    private List<String> header;
+    private long line;
+
+    public UserImportReader(InputStream input, Format format, ObjectMapper objectMapper) {
+        this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 64 * 1024);
+        this.format = format;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Returns the next record, or null at the end of the input.
+     */
+    public Record next() throws IOException {
+        String text;
+        do {
+            text = reader.readLine();
+            line++;
+            if (text == null) {
+                return null;
+            }
+        } while (text.isBlank());
+
+        try {
+            if (format == Format.NDJSON) {
+                return new Record(line, parseJson(text), null);
+            }
+            if (header == null) {
+                header = parseCsvLine(text);
+                return next();
+            }
+            List<String> values = parseCsvLine(text);
+            if (values.size() != header.size()) {
+                return new Record(line, Map.of(), "expected " + header.size() + " columns, found " + values.size());
+            }
+            Map<String, String> fields = new HashMap<>();
+            for (int i = 0; i < values.size(); i++) {
+                fields.put(header.get(i).trim(), values.get(i));
+            }
+            return new Record(line, fields, null);
+        } catch (IOException | IllegalArgumentException e) {
+            return new Record(line, Map.of(), e.getMessage());
+        }
+    }
+
+    private Map<String, String> parseJson(String text) throws IOException {
+        JsonNode node = objectMapper.readTree(text);
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("not a JSON object");
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (Map.Entry<String, JsonNode> field : node.properties()) {
+            if (!field.getValue().isNull()) {
+                fields.put(field.getKey(), field.getValue().asText());
+            }
+        }
+        return fields;
+    }
+
+    static List<String> parseCsvLine(String text) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
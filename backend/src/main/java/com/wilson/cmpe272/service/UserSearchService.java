@@ -0,0 +1,296 @@
+package com.wilson.cmpe272.service;
+
+import com.wilson.cmpe272.dto.UserSearchResponse;
+import com.wilson.cmpe272.dto.UserSummary;
+import com.wilson.cmpe272.entity.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Admin search over the users table by email prefix, status, 2FA method, verification state and creation date.
+ * <p>
+ * Results are paged by keyset (seek) rather than OFFSET: each page continues from the last row of the previous
+ * one, carried in an opaque cursor, so page 10,000 costs the same as page 1. Without an email prefix rows come
+ * newest first, by {@code created_at, id}, and each filter has a composite index ending in those columns
+ * (see {@link User}); with a prefix they come in email order along the unique email index. Every query is
+ * timed and logged, and queries slower than {@code user-search.slow-query-ms} are logged as warnings.
+ */
+@Service
+public class UserSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchService.class);
+
+    private static final String SELECT_COLUMNS = "SELECT id, email, first_name, last_name, two_factor_method, "
+        + "is_two_factor_enabled, is_email_verified, status, created_at, last_login_at FROM users";
+
+    private static final String CREATED_CURSOR = "c";
+
+    private static final String EMAIL_CURSOR = "e";
+
+    /**
+     * Search filters; null fields are not filtered on. {@code createdFrom} is inclusive, {@code createdTo}
+     * exclusive.
+     */
+    public record Criteria(String emailPrefix, User.UserStatus status, User.TwoFactorMethod twoFactorMethod,
+                           Boolean emailVerified, LocalDateTime createdFrom, LocalDateTime createdTo) {
+
+        /**
+         * Builds criteria from request parameters. Dates are ISO dates or date-times; a date means its start.
+         *
+         * @throws IllegalArgumentException if a value cannot be parsed
+         */
+        public static Criteria parse(String emailPrefix, String status, String twoFactorMethod, String emailVerified,
+                                     String createdFrom, String createdTo) {
+            return new Criteria(
+                isBlank(emailPrefix) ? null : User.normalizeEmail(emailPrefix),
+                isBlank(status) ? null : parseEnum(User.UserStatus.class, "status", status),
+                isBlank(twoFactorMethod) ? null : parseEnum(User.TwoFactorMethod.class, "twoFactorMethod", twoFactorMethod),
+                isBlank(emailVerified) ? null : parseBoolean(emailVerified),
+                isBlank(createdFrom) ? null : parseDateTime("createdFrom", createdFrom),
+                isBlank(createdTo) ? null : parseDateTime("createdTo", createdTo));
+        }
+
+        // Only the filters in use, for the query log
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            append(text, "emailPrefix", emailPrefix);
+            append(text, "status", status);
+            append(text, "twoFactorMethod", twoFactorMethod);
+            append(text, "emailVerified", emailVerified);
+            append(text, "createdFrom", createdFrom);
+            append(text, "createdTo", createdTo);
+            return text.isEmpty() ? "no filters" : text.toString();
+        }
+
+        private static void append(StringBuilder text, String name, Object value) {
+            if (value != null) {
+                text.append(text.isEmpty() ? "" : ", ").append(name).append('=').append(value);
+            }
+        }
+
+        private static boolean isBlank(String value) {
+            return value == null || value.isBlank();
+        }
+
+        private static <E extends Enum<E>> E parseEnum(Class<E> type, String name, String value) {
+            try {
+                return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid " + name + ": " + value);
+            }
+        }
+
+        private static Boolean parseBoolean(String value) {
+            return switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "true" -> Boolean.TRUE;
+                case "false" -> Boolean.FALSE;
+                default -> throw new IllegalArgumentException("Invalid emailVerified: " + value);
+            };
+        }
+
+        private static LocalDateTime parseDateTime(String name, String value) {
+            try {
+                return value.contains("T") ? LocalDateTime.parse(value.trim()) : LocalDate.parse(value.trim()).atStartOfDay();
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid " + name + ": " + value);
+            }
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${user-search.default-page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${user-search.max-page-size:200}")
+    private int maxPageSize;
+
+    @Value("${user-search.slow-query-ms:200}")
+    private long slowQueryMillis;
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong slowQueries = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Returns one page of matching users.
+     *
+     * @param cursor   {@code nextCursor} of the previous page, or null for the first page
+     * @param pageSize rows per page; null or non-positive means {@code user-search.default-page-size}, and it is
+     *                 capped at {@code user-search.max-page-size}
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to a search with a different order
+     */
+    public UserSearchResponse search(Criteria criteria, String cursor, Integer pageSize) {
+        int limit = Math.min(pageSize == null || pageSize <= 0 ? defaultPageSize : pageSize, maxPageSize);
+        boolean byEmail = criteria.emailPrefix() != null;
+
+        StringBuilder sql = new StringBuilder(SELECT_COLUMNS).append(" WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        // The first equality filter picks the index to walk; naming its column first in ORDER BY lets H2 read
+        // the index in order instead of sorting every match (MySQL does this on its own, and ignores the column)
+        String leadingOrder = null;
+        if (byEmail) {
+            sql.append(" AND email LIKE ? ESCAPE '!'");
+            params.add(escapeLike(criteria.emailPrefix()) + "%");
+        } else {
+            // Every insert path sets created_at; a row without one could not carry a cursor
+            sql.append(" AND created_at IS NOT NULL");
+        }
+        if (criteria.status() != null) {
+            sql.append(" AND status = ?");
+            params.add(criteria.status().name());
+            leadingOrder = "status";
+        }
+        if (criteria.twoFactorMethod() != null) {
+            sql.append(" AND two_factor_method = ?");
+            params.add(criteria.twoFactorMethod().name());
+            leadingOrder = leadingOrder != null ? leadingOrder : "two_factor_method";
+        }
+        if (criteria.emailVerified() != null) {
+            // A plain equality so idx_users_verified_created_at applies; every insert path writes the flag
+            sql.append(" AND is_email_verified = ?");
+            params.add(criteria.emailVerified());
+            leadingOrder = leadingOrder != null ? leadingOrder : "is_email_verified";
+        }
+        if (criteria.createdFrom() != null) {
+            sql.append(" AND created_at >= ?");
+            params.add(Timestamp.valueOf(criteria.createdFrom()));
+        }
+        if (criteria.createdTo() != null) {
+            sql.append(" AND created_at < ?");
+            params.add(Timestamp.valueOf(criteria.createdTo()));
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            String[] position = decodeCursor(cursor, byEmail);
+            if (byEmail) {
+                sql.append(" AND email > ?");
+                params.add(position[1]);
+            } else {
+                // Same as (created_at, id) < (?, ?), with created_at <= ? as an index range bound
+                Timestamp createdAt = Timestamp.valueOf(LocalDateTime.parse(position[1]));
+                sql.append(" AND created_at <= ? AND (created_at < ? OR id < ?)");
+                params.add(createdAt);
+                params.add(createdAt);
+                params.add(Long.parseLong(position[2]));
+            }
+        }
+        if (byEmail) {
+            sql.append(" ORDER BY email");
+        } else {
+            sql.append(" ORDER BY ").append(leadingOrder != null ? leadingOrder + " DESC, " : "").append("created_at DESC, id DESC");
+        }
+        // One extra row tells whether there is a next page
+        sql.append(" LIMIT ?");
+        params.add(limit + 1);
+
+        long start = System.nanoTime();
+        List<UserSummary> users = jdbcTemplate.query(sql.toString(), UserSearchService::mapRow, params.toArray());
+        long elapsedNanos = System.nanoTime() - start;
+        record(criteria, cursor != null, users.size(), elapsedNanos);
+
+        String nextCursor = null;
+        if (users.size() > limit) {
+            users = new ArrayList<>(users.subList(0, limit));
+            UserSummary last = users.get(limit - 1);
+            nextCursor = byEmail ? encodeCursor(EMAIL_CURSOR, last.getEmail())
+                : encodeCursor(CREATED_CURSOR, last.getCreatedAt().toString(), last.getId().toString());
+        }
+        return new UserSearchResponse(users, nextCursor);
+    }
+
+    private void record(Criteria criteria, boolean continued, int rows, long elapsedNanos) {
+        queries.incrementAndGet();
+        totalNanos.addAndGet(elapsedNanos);
+        maxNanos.accumulate(elapsedNanos);
+        long elapsedMillis = elapsedNanos / 1_000_000;
+        if (elapsedMillis >= slowQueryMillis) {
+            slowQueries.incrementAndGet();
+            logger.warn("Slow user search: {} ({} page) returned {} rows in {} ms", criteria,
+                continued ? "next" : "first", rows, elapsedMillis);
+        } else {
+            logger.info("User search: {} ({} page) returned {} rows in {} ms", criteria,
+                continued ? "next" : "first", rows, elapsedMillis);
+        }
+    }
+
+    // '!' rather than backslash, which MySQL also treats as an escape inside string literals
+    static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    private static String encodeCursor(String... parts) {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(String.join("|", parts).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor, boolean byEmail) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                .split("\\|", byEmail ? 2 : 3);
+            boolean valid = byEmail ? parts.length == 2 && parts[0].equals(EMAIL_CURSOR)
+                : parts.length == 3 && parts[0].equals(CREATED_CURSOR);
+            if (valid && !byEmail) {
+                LocalDateTime.parse(parts[1]);
+                Long.parseLong(parts[2]);
+            }
+            if (valid) {
+                return parts;
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid cursor for this search");
+    }
+
+    private static UserSummary mapRow(ResultSet rs, int rowNum) throws SQLException {
+        UserSummary user = new UserSummary();
+        user.setId(rs.getLong("id"));
+        user.setEmail(rs.getString("email"));
+        user.setFirstName(rs.getString("first_name"));
+        user.setLastName(rs.getString("last_name"));
+        String twoFactorMethod = rs.getString("two_factor_method");
+        user.setTwoFactorMethod(twoFactorMethod == null ? null : User.TwoFactorMethod.valueOf(twoFactorMethod));
+        user.setIsTwoFactorEnabled(rs.getObject("is_two_factor_enabled", Boolean.class));
+        user.setIsEmailVerified(rs.getObject("is_email_verified", Boolean.class));
+        String status = rs.getString("status");
+        user.setStatus(status == null ? null : User.UserStatus.valueOf(status));
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        user.setCreatedAt(createdAt == null ? null : createdAt.toLocalDateTime());
+        Timestamp lastLoginAt = rs.getTimestamp("last_login_at");
+        user.setLastLoginAt(lastLoginAt == null ? null : lastLoginAt.toLocalDateTime());
+        return user;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long count = queries.get();
+        stats.put("queries", count);
+        stats.put("slowQueries", slowQueries.get());
+        stats.put("averageMillis", count == 0 ? 0.0 : totalNanos.get() / 1_000_000.0 / count);
+        stats.put("maxMillis", maxNanos.get() / 1_000_000.0);
+        return stats;
+    }
+}
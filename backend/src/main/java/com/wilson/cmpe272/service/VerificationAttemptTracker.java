@@ -0,0 +1,181 @@
+package com.wilson.cmpe272.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-account record of verification attempts with escalating lockouts.
+ * <p>
+ * An attempt is reserved before its code is checked, so concurrent guesses are counted before any of them
+ * can succeed; a correct code forgets the account. Each account keeps the times of its last
+ * {@code maxFailures} attempts in a ring buffer; an attempt made while all of them fall inside the sliding
+ * window is refused and locks the account for {@code baseLockout * 2^level} (capped), the level goes up and
+ * the buffer starts over. An account is forgotten (level included) once it has been quiet for a whole window
+ * after its last attempt or lockout, and at most {@code maxAccounts} are tracked. All times are epoch
+ * milliseconds so lockouts can be shared between nodes.
+ */
+public final class VerificationAttemptTracker {
+
+    /** {@link #reserve} result: the attempt may go ahead. */
+    public static final long GRANTED = 0;
+
+    /** {@link #reserve} result: the account is already locked. */
+    public static final long REFUSED = -1;
+
+    private final int maxFailures;
+    private final long windowMillis;
+    private final long baseLockoutMillis;
+    private final long maxLockoutMillis;
+    private final int maxAccounts;
+    private final ConcurrentHashMap<String, Attempts> accounts = new ConcurrentHashMap<>();
+
+    public VerificationAttemptTracker(int maxFailures, long windowMillis, long baseLockoutMillis,
+                                      long maxLockoutMillis, int maxAccounts) {
+        if (maxFailures < 1) {
+            throw new IllegalArgumentException("maxFailures must be positive: " + maxFailures);
+        }
+        this.maxFailures = maxFailures;
+        this.windowMillis = windowMillis;
+        this.baseLockoutMillis = baseLockoutMillis;
+        this.maxLockoutMillis = Math.max(baseLockoutMillis, maxLockoutMillis);
+        this.maxAccounts = Math.max(1, maxAccounts);
+    }
+
+    /**
+     * Milliseconds the account remains locked, or 0.
+     */
+    public long remainingLockoutMillis(String account, long now) {
+        Attempts attempts = accounts.get(account);
+        return attempts == null ? 0 : Math.max(0, attempts.lockedUntil - now);
+    }
+
+    /**
+     * Counts an attempt before its code is checked. Returns {@link #GRANTED}, {@link #REFUSED} if the account is
+     * locked, or the end of the lockout this attempt started because the account had used up its attempts
+     * (the attempt is refused as well).
+     */
+    public long reserve(String account, long now) {
+        if (!accounts.containsKey(account) && accounts.size() >= maxAccounts && purgeExpired(now) == 0) {
+            // Full of active accounts: this one goes untracked rather than growing the map
+            return GRANTED;
+        }
+        long[] result = new long[1];
+        accounts.compute(account, (key, attempts) -> {
+            if (attempts == null) {
+                attempts = new Attempts(maxFailures);
+            }
+            result[0] = attempts.reserve(now);
+            return attempts;
+        });
+        return result[0];
+    }
+
+    /**
+     * True if the account's next attempt will be refused, i.e. the last {@code maxFailures} attempts all fall
+     * inside the window.
+     */
+    public boolean isExhausted(String account, long now) {
+        boolean[] exhausted = new boolean[1];
+        accounts.computeIfPresent(account, (key, attempts) -> {
+            exhausted[0] = attempts.isExhausted(now);
+            return attempts;
+        });
+        return exhausted[0];
+    }
+
+    public void recordSuccess(String account) {
+        accounts.remove(account);
+    }
+
+    /**
+     * Applies a lockout imposed elsewhere (e.g. by another node). Never shortens an existing one.
+     */
+    public void applyLockout(String account, long lockedUntil, int level) {
+        accounts.compute(account, (key, attempts) -> {
+            if (attempts == null) {
+                attempts = new Attempts(maxFailures);
+            }
+            if (lockedUntil > attempts.lockedUntil) {
+                attempts.lockedUntil = lockedUntil;
+                attempts.lastActivity = Math.max(attempts.lastActivity, lockedUntil);
+            }
+            attempts.level = Math.max(attempts.level, level);
+            return attempts;
+        });
+    }
+
+    public int getLevel(String account) {
+        Attempts attempts = accounts.get(account);
+        return attempts == null ? 0 : attempts.level;
+    }
+
+    /**
+     * Forgets accounts with no attempt or lockout within the last window. Returns the number removed.
+     */
+    public int purgeExpired(long now) {
+        int removed = 0;
+        for (Map.Entry<String, Attempts> entry : accounts.entrySet()) {
+            boolean[] expired = new boolean[1];
+            accounts.computeIfPresent(entry.getKey(), (key, attempts) -> {
+                expired[0] = now - attempts.lastActivity >= windowMillis;
+                return expired[0] ? null : attempts;
+            });
+            if (expired[0]) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return accounts.size();
+    }
+
+    public int lockedCount(long now) {
+        int locked = 0;
+        for (Attempts attempts : accounts.values()) {
+            if (attempts.lockedUntil > now) {
+                locked++;
+            }
+        }
+        return locked;
+    }
+
+    // Mutated only inside ConcurrentHashMap.compute, which serializes updates per account
+    private final class Attempts {
+        private final long[] attempts;
+        private int next;
+        private int count;
+        private int level;
+        private long lastActivity;
+        private volatile long lockedUntil;
+
+        private Attempts(int capacity) {
+            attempts = new long[capacity];
+        }
+
+        private long reserve(long now) {
+            lastActivity = Math.max(lastActivity, now);
+            if (lockedUntil > now) {
+                return REFUSED;
+            }
+            if (!isExhausted(now)) {
+                attempts[next] = now;
+                next = (next + 1) % attempts.length;
+                count = Math.min(count + 1, attempts.length);
+                return GRANTED;
+            }
+            long lockout = Math.min(maxLockoutMillis, baseLockoutMillis << Math.min(level, 30));
+            level++;
+            count = 0;
+            lockedUntil = now + lockout;
+            lastActivity = lockedUntil;
+            return lockedUntil;
+        }
+
+        // With the buffer full, the slot about to be overwritten holds the oldest of the last maxFailures
+        private boolean isExhausted(long now) {
+            return count == attempts.length && now - attempts[next] < windowMillis;
+        }
+    }
+}
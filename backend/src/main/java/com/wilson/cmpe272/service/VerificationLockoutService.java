@@ -0,0 +1,200 @@
+package com.wilson.cmpe272.service;
+
+import com.wilson.cmpe272.entity.VerificationLockout;
+import com.wilson.cmpe272.repository.VerificationLockoutRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Locks an account out of code verification (login, email verification, authenticator setup) after repeated
+ * wrong codes, with lockouts that double each time up to a cap.
+ * <p>
+ * Every attempt is counted before the user is looked up or the code checked, so parallel guesses cannot
+ * slip past the limit and guesses against a locked account are answered from memory. With {@code verification.lockout.store=jdbc} every lockout is also appended to the
+ * {@code verification_lockouts} table and each node pulls the lockouts still in force on a short interval, so an account locked
+ * on one node is locked on all of them. Attempts are counted per node until a lockout is reached.
+ */
+@Service
+public class VerificationLockoutService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VerificationLockoutService.class);
+
+    private static final int SYNC_BATCH_SIZE = 1000;
+
+    @Autowired
+    private VerificationLockoutRepository verificationLockoutRepository;
+
+    @Value("${verification.lockout.max-failures:5}")
+    private int maxFailures;
+
+    @Value("${verification.lockout.window-seconds:900}")
+    private long windowSeconds;
+
+    @Value("${verification.lockout.base-seconds:60}")
+    private long baseLockoutSeconds;
+
+    @Value("${verification.lockout.max-seconds:3600}")
+    private long maxLockoutSeconds;
+
+    @Value("${verification.lockout.max-tracked-accounts:100000}")
+    private int maxTrackedAccounts;
+
+    @Value("${verification.lockout.invalidate-code:false}")
+    private boolean invalidateCode;
+
+    @Value("${verification.lockout.store:memory}")
+    private String store;
+
+    @Value("${verification.lockout.sync-interval-ms:1000}")
+    private long syncIntervalMillis;
+
+    private VerificationAttemptTracker tracker;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "verification-lockout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+
+    private final AtomicLong lockouts = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong syncFailures = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        tracker = new VerificationAttemptTracker(maxFailures, windowSeconds * 1000, baseLockoutSeconds * 1000,
+            maxLockoutSeconds * 1000, maxTrackedAccounts);
+        scheduler.scheduleWithFixedDelay(this::purge, 60, 60, TimeUnit.SECONDS);
+        if (isShared()) {
+            sync();
+            scheduler.scheduleWithFixedDelay(this::sync, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Verification lockout after {} failures in {}s ({} store)", maxFailures, windowSeconds,
+            isShared() ? "jdbc" : "memory");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private boolean isShared() {
+        return "jdbc".equalsIgnoreCase(store);
+    }
+
+    /**
+     * Counts a verification attempt before its code is checked. Throws {@link TooManyRequestsException} if the
+     * account is locked out, or if it has used up its attempts, which starts a lockout.
+     */
+    public void reserveAttempt(String email) {
+        String account = UserCache.normalize(email);
+        long now = System.currentTimeMillis();
+        long result = tracker.reserve(account, now);
+        if (result == VerificationAttemptTracker.GRANTED) {
+            return;
+        }
+        if (result != VerificationAttemptTracker.REFUSED) {
+            shareLockout(account, result);
+        }
+        rejected.incrementAndGet();
+        long retryAfterSeconds = (Math.max(1, tracker.remainingLockoutMillis(account, now)) + 999) / 1000;
+        logger.warn("Verification rejected - account locked for another {}s: {}", retryAfterSeconds, email);
+        throw new TooManyRequestsException("Too many failed verification attempts. Please try again in "
+            + retryAfterSeconds + " seconds.", retryAfterSeconds);
+    }
+
+    /**
+     * Reports a wrong code; the attempt was already counted by {@link #reserveAttempt}. Returns true if the
+     * account has no attempts left, so its next one will lock it.
+     */
+    public boolean recordFailure(String email) {
+        return tracker.isExhausted(UserCache.normalize(email), System.currentTimeMillis());
+    }
+
+    private void shareLockout(String account, long lockedUntil) {
+        lockouts.incrementAndGet();
+        int level = tracker.getLevel(account);
+        logger.warn("Account locked out of verification until {} after repeated failures (level {}): {}",
+            Instant.ofEpochMilli(lockedUntil), level, account);
+        if (isShared()) {
+            try {
+                verificationLockoutRepository.save(new VerificationLockout(account, Instant.ofEpochMilli(lockedUntil), level));
+            } catch (Exception e) {
+                logger.error("Failed to share verification lockout for: {} - Error: {}", account, e.getMessage());
+            }
+        }
+    }
+
+    public void recordSuccess(String email) {
+        tracker.recordSuccess(UserCache.normalize(email));
+    }
+
+    public boolean isInvalidateCode() {
+        return invalidateCode;
+    }
+
+    // Ids become visible in commit order, not id order, so instead of an id cursor every pass re-reads the lockouts
+    // still in force (few at any time); applying one again is a no-op
+    private void sync() {
+        try {
+            Instant now = Instant.now();
+            long cursor = 0;
+            List<VerificationLockout> rows;
+            do {
+                rows = verificationLockoutRepository.findByLockedUntilAfterAndIdGreaterThanOrderByIdAsc(now, cursor,
+                    PageRequest.of(0, SYNC_BATCH_SIZE));
+                for (VerificationLockout row : rows) {
+                    tracker.applyLockout(row.getEmail(), row.getLockedUntil().toEpochMilli(), row.getLockoutLevel());
+                    cursor = row.getId();
+                }
+            } while (rows.size() == SYNC_BATCH_SIZE);
+        } catch (Exception e) {
+            syncFailures.incrementAndGet();
+            logger.error("Verification lockout sync failed - Error: {}", e.getMessage());
+        }
+    }
+
+    private void purge() {
+        long now = System.currentTimeMillis();
+        int removed = tracker.purgeExpired(now);
+        if (removed > 0) {
+            logger.debug("Purged {} idle verification attempt entries. Current size: {}", removed, tracker.size());
+        }
+        if (isShared()) {
+            try {
+                verificationLockoutRepository.deleteExpired(Instant.ofEpochMilli(now - windowSeconds * 1000));
+            } catch (Exception e) {
+                logger.error("Verification lockout cleanup failed - Error: {}", e.getMessage());
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", isShared() ? "jdbc" : "memory");
+        stats.put("trackedAccounts", tracker.size());
+        stats.put("lockedAccounts", tracker.lockedCount(System.currentTimeMillis()));
+        stats.put("lockouts", lockouts.get());
+        stats.put("rejectedWhileLocked", rejected.get());
+        if (isShared()) {
+            stats.put("syncFailures", syncFailures.get());
+        }
+        return stats;
+    }
+}
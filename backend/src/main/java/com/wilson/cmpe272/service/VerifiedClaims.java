@@ -0,0 +1,49 @@
+package com.wilson.cmpe272.service;
+
+import io.jsonwebtoken.Claims;
+
+import java.util.Date;
+
+/**
+ * Immutable result of verifying a JWT once: signature checked, claims parsed.
+ * Shared between the authentication filter and {@link JwtService} so a request never re-parses its token.
+ */
+public final class VerifiedClaims {
+
+    private final TokenDigest digest;
+    private final Claims claims;
+    private final String subject;
+    private final long expiresAtMillis;
+
+    public VerifiedClaims(TokenDigest digest, Claims claims) {
+        this.digest = digest;
+        this.claims = claims;
+        this.subject = claims.getSubject();
+        Date expiration = claims.getExpiration();
+        this.expiresAtMillis = expiration != null ? expiration.getTime() : Long.MAX_VALUE;
+    }
+
+    public TokenDigest getDigest() {
+        return digest;
+    }
+
+    public Claims getClaims() {
+        return claims;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public Date getExpiration() {
+        return claims.getExpiration();
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return expiresAtMillis <= nowMillis;
+    }
+}
@@ -0,0 +1,81 @@
+package com.wilson.cmpe272.service;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PBKDF2-HMAC-SHA256 encoder that records the iteration count in the hash ({@code $pbkdf2-sha256$i=<n>$<hex>}).
+ * <p>
+ * Spring's {@link Pbkdf2PasswordEncoder} stores only salt and hash, so a hash made with an older iteration
+ * count could neither be verified after the count changes nor be detected as outdated. Keeping the count
+ * alongside the hash makes both possible.
+ */
+public final class VersionedPbkdf2PasswordEncoder implements PasswordEncoder {
+
+    private static final String PREFIX = "$pbkdf2-sha256$i=";
+    private static final int SALT_LENGTH = 16;
+
+    private final int iterations;
+    private final ConcurrentHashMap<Integer, Pbkdf2PasswordEncoder> encoders = new ConcurrentHashMap<>();
+
+    public VersionedPbkdf2PasswordEncoder(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("PBKDF2 iterations must be positive: " + iterations);
+        }
+        this.iterations = iterations;
+    }
+
+    /**
+     * Start of every hash produced with the given iteration count.
+     */
+    public static String prefix(int iterations) {
+        return PREFIX + iterations + "$";
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return prefix(iterations) + encoder(iterations).encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        int storedIterations = iterationsOf(encodedPassword);
+        if (storedIterations < 1) {
+            return false;
+        }
+        return encoder(storedIterations).matches(rawPassword, encodedPassword.substring(prefix(storedIterations).length()));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        int storedIterations = iterationsOf(encodedPassword);
+        return storedIterations > 0 && storedIterations < iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    // Iteration count of a stored hash, or -1 if it is not in this encoder's format
+    private static int iterationsOf(String encodedPassword) {
+        if (encodedPassword == null || !encodedPassword.startsWith(PREFIX)) {
+            return -1;
+        }
+        int end = encodedPassword.indexOf('$', PREFIX.length());
+        if (end < 0) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(encodedPassword, PREFIX.length(), end, 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Pbkdf2PasswordEncoder encoder(int iterationCount) {
+        return encoders.computeIfAbsent(iterationCount, count -> new Pbkdf2PasswordEncoder("", SALT_LENGTH, count,
+            Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256));
+    }
+}
@@ -0,0 +1,173 @@
+package com.wilson.cmpe272.service;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reports where virtual threads get pinned to their carrier thread.
+ * <p>
+ * A virtual thread that blocks while holding a monitor (inside {@code synchronized}, or in native code)
+ * cannot unmount, so it occupies one of the few carrier threads for the whole wait; enough of them at once
+ * stalls every request. When {@code spring.threads.virtual.enabled} is set, this listens to the JFR
+ * {@code jdk.VirtualThreadPinned} event in-process, groups pinnings longer than
+ * {@code virtual-threads.pinning.threshold-ms} by the first application or library frame on the stack, logs
+ * each new site once with its stack, and reports the sites that pinned longest under {@code /actuator/metrics}.
+ */
+@Service
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    // Bounds memory if pinning happens from many distinct places; later sites are only counted in the totals
+    private static final int MAX_SITES = 100;
+
+    private static final int REPORTED_SITES = 10;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${virtual-threads.pinning.monitor-enabled:true}")
+    private boolean monitorEnabled;
+
+    @Value("${virtual-threads.pinning.threshold-ms:20}")
+    private long thresholdMillis;
+
+    @Value("${virtual-threads.pinning.stack-depth:12}")
+    private int stackDepth;
+
+    private RecordingStream stream;
+
+    private final ConcurrentHashMap<String, PinningSite> sites = new ConcurrentHashMap<>();
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong pinnedNanos = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        if (!virtualThreads || !monitorEnabled) {
+            return;
+        }
+        try {
+            stream = new RecordingStream();
+            stream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMillis)).withStackTrace();
+            stream.onEvent(PINNED_EVENT, this::onPinned);
+            stream.startAsync();
+            logger.info("Watching for virtual threads pinned longer than {} ms", thresholdMillis);
+        } catch (RuntimeException e) {
+            // e.g. a runtime built without the jdk.jfr module; virtual threads still work, just unobserved
+            stream = null;
+            logger.warn("Virtual thread pinning monitor unavailable - Error: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    public boolean isRunning() {
+        return stream != null;
+    }
+
+    private void onPinned(RecordedEvent event) {
+        long nanos = event.getDuration().toNanos();
+        events.incrementAndGet();
+        pinnedNanos.addAndGet(nanos);
+
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        List<RecordedFrame> frames = stackTrace == null ? List.of() : stackTrace.getFrames();
+        String location = location(frames);
+        PinningSite site = sites.get(location);
+        if (site == null) {
+            if (sites.size() >= MAX_SITES) {
+                return;
+            }
+            site = sites.computeIfAbsent(location, key -> new PinningSite());
+            if (site.count.sum() == 0) {
+                logger.warn("Virtual thread pinned for {} ms at {}:{}{}", nanos / 1_000_000, location,
+                    System.lineSeparator(), describe(frames));
+            }
+        }
+        site.count.increment();
+        site.totalNanos.add(nanos);
+        site.maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    // Skips the JDK's own parking frames so sites are named after the code that blocked while pinned
+    private static String location(List<RecordedFrame> frames) {
+        for (RecordedFrame frame : frames) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return format(frame);
+            }
+        }
+        return frames.isEmpty() ? "unknown" : format(frames.get(0));
+    }
+
+    private String describe(List<RecordedFrame> frames) {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < Math.min(stackDepth, frames.size()); i++) {
+            description.append("    at ").append(format(frames.get(i))).append(System.lineSeparator());
+        }
+        return description.toString();
+    }
+
+    private static String format(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+            + (frame.getLineNumber() > 0 ? ":" + frame.getLineNumber() : "");
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", virtualThreads);
+        if (!virtualThreads) {
+            return stats;
+        }
+        stats.put("pinningMonitor", isRunning());
+        stats.put("thresholdMillis", thresholdMillis);
+        stats.put("pinnedEvents", events.get());
+        stats.put("pinnedMillis", pinnedNanos.get() / 1_000_000);
+        stats.put("sites", sites.size());
+
+        List<Map.Entry<String, PinningSite>> worst = new ArrayList<>(sites.entrySet());
+        worst.sort(Comparator.comparingLong((Map.Entry<String, PinningSite> entry) -> entry.getValue().totalNanos.sum()).reversed());
+        List<Map<String, Object>> report = new ArrayList<>();
+        for (Map.Entry<String, PinningSite> entry : worst.subList(0, Math.min(REPORTED_SITES, worst.size()))) {
+            Map<String, Object> site = new LinkedHashMap<>();
+            site.put("location", entry.getKey());
+            site.put("count", entry.getValue().count.sum());
+            site.put("totalMillis", entry.getValue().totalNanos.sum() / 1_000_000);
+            site.put("maxMillis", entry.getValue().maxNanos.get() / 1_000_000);
+            report.add(site);
+        }
+        stats.put("worstSites", report);
+        return stats;
+    }
+
+    private static final class PinningSite {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+    }
+}
@@ -0,0 +1,30 @@
+package com.wilson.cmpe272.service;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Thread factories for the application's own background executors, following
+ * {@code spring.threads.virtual.enabled} the same way Tomcat's request threads do.
+ * <p>
+ * Only executors that spend their time waiting on I/O should use {@link #factory}; CPU-bound pools
+ * (password hashing) stay on platform threads either way, since virtual threads add nothing there.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Virtual threads named {@code name-1, name-2, ...} when {@code virtual} is set, otherwise platform
+     * daemon threads with the same names.
+     */
+    public static ThreadFactory factory(String name, boolean virtual) {
+        return virtual
+            ? Thread.ofVirtual().name(name + "-", 1).factory()
+            : platformFactory(name);
+    }
+
+    public static ThreadFactory platformFactory(String name) {
+        return Thread.ofPlatform().name(name + "-", 1).daemon(true).factory();
+    }
+}
@@ -0,0 +1,124 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.service.BoundedPasswordEncoder;
+import com.wilson.cmpe272.service.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundedPasswordEncoderTest {
+
+    @Test
+    public void testDelegatesToBCrypt() {
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 2, 8, 2000);
+        try {
+            String hash = encoder.encode("password123");
+            assertTrue(hash.startsWith("$2a$04$"));
+            assertTrue(encoder.matches("password123", hash));
+            assertFalse(encoder.matches("wrong", hash));
+            assertFalse(encoder.upgradeEncoding(hash));
+
+            @SuppressWarnings("unchecked")
+            Map<String, Object> matchesLatency = (Map<String, Object>) encoder.getStats().get("matchesLatency");
+            assertEquals(2L, matchesLatency.get("count"));
+        } finally {
+            encoder.shutdown();
+        }
+    }
+
+    // A burst far larger than the pool plus queue is shed immediately instead of piling up behind BCrypt
+    @Test
+    public void testBurstBeyondCapacityIsRejected() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new SlowEncoder(release), 2, 4, 5000);
+        int callers = 20;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<Boolean>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < callers; i++) {
+                futures.add(pool.submit(() -> {
+                    try {
+                        return encoder.matches("password", "hash");
+                    } catch (TooManyRequestsException e) {
+                        assertEquals(1, e.getRetryAfterSeconds());
+                        rejected.incrementAndGet();
+                        return false;
+                    }
+                }));
+            }
+            // 2 running + 4 queued can be admitted; everyone else must fail without waiting
+            long deadline = System.currentTimeMillis() + 5000;
+            while (rejected.get() < callers - 6 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(callers - 6, rejected.get());
+            release.countDown();
+            int accepted = 0;
+            for (Future<Boolean> future : futures) {
+                if (future.get()) {
+                    accepted++;
+                }
+            }
+            assertEquals(6, accepted);
+            assertEquals((long) callers - 6, encoder.getStats().get("rejected"));
+        } finally {
+            pool.shutdownNow();
+            encoder.shutdown();
+        }
+    }
+
+    @Test
+    public void testQueuedRequestTimesOut() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new SlowEncoder(release), 1, 4, 100);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> running = pool.submit(() -> encoder.matches("password", "hash"));
+            Thread.sleep(50);
+            long begin = System.nanoTime();
+            assertThrows(TooManyRequestsException.class, () -> encoder.matches("password", "hash"));
+            assertTrue(System.nanoTime() - begin < 2_000_000_000L);
+            assertEquals(1L, encoder.getStats().get("timedOutInQueue"));
+            release.countDown();
+            assertTrue(running.get());
+        } finally {
+            pool.shutdownNow();
+            encoder.shutdown();
+        }
+    }
+
+    private static final class SlowEncoder implements PasswordEncoder {
+        private final CountDownLatch release;
+
+        private SlowEncoder(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.wilson.cmpe272;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wilson.cmpe272.entity.User;
+import com.wilson.cmpe272.repository.UserRepository;
+import com.wilson.cmpe272.service.AdminTokenFilter;
+import com.wilson.cmpe272.service.BulkUserImporter;
+import com.wilson.cmpe272.service.EmailService;
+import com.wilson.cmpe272.service.UserImportReader;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.datasource.url=jdbc:h2:mem:bulk-import;DB_CLOSE_DELAY=-1",
+    "admin.api-token=test-admin-token",
+    "bulk-import.batch-size=100",
+    "bulk-import.commit-interval=1000",
+    "password-hashing.bcrypt.strength=4"
+})
+public class BulkImportTest {
+
+    @Autowired
+    private BulkUserImporter bulkUserImporter;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    @Test
+    public void testImportsHashesAndSkipsBadRecords() throws Exception {
+        userRepository.save(new User("existing@example.com", passwordEncoder.encode("password123")));
+        String bareBcrypt = new BCryptPasswordEncoder(4).encode("bare-secret");
+        String ndjson = String.join("\n",
+            "{\"email\":\"Plain@Example.com\",\"password\":\"plain-secret\",\"firstName\":\"Plain\",\"emailVerified\":true}",
+            "{\"email\":\"prehashed@example.com\",\"passwordHash\":\"" + passwordEncoder.encode("hashed-secret") + "\",\"emailVerified\":true}",
+            "{\"email\":\"bare@example.com\",\"passwordHash\":\"" + bareBcrypt + "\",\"emailVerified\":true}",
+            "{\"email\":\"unverified@example.com\",\"password\":\"welcome-secret\"}",
+            "{\"email\":\"EXISTING@example.com\",\"password\":\"password123\"}",
+            "{\"email\":\"plain@example.com\",\"password\":\"again-secret\"}",
+            "",
+            "{\"email\":\"broken@example.com\",",
+            "{\"email\":\"no-at-sign\",\"password\":\"password123\"}",
+            "{\"email\":\"weak@example.com\",\"passwordHash\":\"md5:abc\"}");
+
+        Map<String, Object> result = bulkUserImporter.importUsers(
+            new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), UserImportReader.Format.NDJSON, true);
+        assertEquals(9L, result.get("read"));
+        assertEquals(4L, result.get("inserted"));
+        assertEquals(2L, result.get("duplicates"));
+        assertEquals(3L, result.get("invalid"));
+        assertEquals(2L, result.get("passwordsHashed"));
+
+        User plain = userRepository.findByEmail("plain@example.com").orElseThrow();
+        assertTrue(passwordEncoder.matches("plain-secret", plain.getPassword()));
+        assertEquals("Plain", plain.getFirstName());
+        assertTrue(plain.getIsEmailVerified());
+        assertEquals(User.TwoFactorMethod.EMAIL, plain.getTwoFactorMethod());
+        assertTrue(passwordEncoder.matches("hashed-secret", userRepository.findByEmail("prehashed@example.com").orElseThrow().getPassword()));
+        assertTrue(passwordEncoder.matches("bare-secret", userRepository.findByEmail("bare@example.com").orElseThrow().getPassword()));
+
+        // Only the unverified account is mailed, with the code stored on its row
+        User unverified = userRepository.findByEmail("unverified@example.com").orElseThrow();
+        verify(emailService).sendVerificationCode(eq("unverified@example.com"), eq(unverified.getEmailVerificationCode()));
+        verify(emailService, times(1)).sendVerificationCode(anyString(), anyString());
+    }
+
+    @Test
+    public void testCsvImportEndpointRequiresAdminToken() throws Exception {
+        String csv = "email,password,firstName,lastName,emailVerified\n"
+            + "csv1@example.com,csv-secret,Ada,\"Lovelace, Countess\",true\n"
+            + "csv2@example.com,csv-secret,\"Quoted \"\"Name\"\"\",Smith,true\n";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("text/csv"));
+
+        ResponseEntity<String> rejected = restTemplate.postForEntity("/api/admin/users/import", new HttpEntity<>(csv, headers), String.class);
+        assertEquals(403, rejected.getStatusCode().value());
+        headers.set(AdminTokenFilter.HEADER, "wrong-token");
+        rejected = restTemplate.postForEntity("/api/admin/users/import", new HttpEntity<>(csv, headers), String.class);
+        assertEquals(403, rejected.getStatusCode().value());
+        assertFalse(userRepository.existsByEmail("csv1@example.com"));
+
+        headers.set(AdminTokenFilter.HEADER, "test-admin-token");
+        ResponseEntity<String> accepted = restTemplate.postForEntity("/api/admin/users/import", new HttpEntity<>(csv, headers), String.class);
+        assertEquals(200, accepted.getStatusCode().value());
+        assertEquals(2, objectMapper.readTree(accepted.getBody()).get("inserted").asInt());
+        assertEquals("Lovelace, Countess", userRepository.findByEmail("csv1@example.com").orElseThrow().getLastName());
+        assertEquals("Quoted \"Name\"", userRepository.findByEmail("csv2@example.com").orElseThrow().getFirstName());
+    }
+
+    // Input generated on the fly while it is read, spanning several batches
+    @Test
+    public void testStreamsPreHashedImportInBatches() throws Exception {
+        int rows = 1_000;
+        String hash = passwordEncoder.encode("stream-secret");
+        Enumeration<InputStream> lines = new Enumeration<>() {
+            private int next;
+
+            @Override
+            public boolean hasMoreElements() {
+                return next < rows;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                String line = "{\"email\":\"stream" + next++ + "@example.com\",\"passwordHash\":\"" + hash + "\",\"emailVerified\":true}\n";
+                return new ByteArrayInputStream(line.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+
+        Map<String, Object> result = bulkUserImporter.importUsers(new SequenceInputStream(lines), UserImportReader.Format.NDJSON, false);
+        assertEquals((long) rows, result.get("inserted"));
+        assertEquals(10L, result.get("batches"));
+        assertTrue(userRepository.existsByEmail("stream999@example.com"));
+        verify(emailService, never()).sendVerificationCode(anyString(), anyString());
+    }
+}
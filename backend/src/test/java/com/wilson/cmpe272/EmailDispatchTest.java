@@ -0,0 +1,86 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.dto.SignupRequest;
+import com.wilson.cmpe272.service.EmailService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "email.dispatch.mode=async",
+    "email.dispatch.initial-backoff-ms=20"
+})
+public class EmailDispatchTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private EmailService emailService;
+
+    @MockitoBean
+    private JavaMailSender mailSender;
+
+    @BeforeEach
+    public void resetMailSender() {
+        reset(mailSender);
+    }
+
+    @Test
+    public void testSignupDoesNotWaitForSmtp() throws Exception {
+        // An SMTP handshake that does not finish until the test lets it
+        CountDownLatch smtpReleased = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            smtpReleased.await();
+            return null;
+        }).when(mailSender).send(any(SimpleMailMessage.class));
+
+        SignupRequest signupRequest = new SignupRequest();
+        signupRequest.setEmail("async-signup@example.com");
+        signupRequest.setPassword("password123");
+        signupRequest.setConfirmPassword("password123");
+        signupRequest.setFirstName("Async");
+        signupRequest.setLastName("User");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<SignupRequest> entity = new HttpEntity<>(signupRequest, headers);
+
+        try {
+            ResponseEntity<String> response = restTemplate.postForEntity("/api/auth/signup", entity, String.class);
+            // Answered while the send is still blocked
+            assertEquals(200, response.getStatusCode().value());
+            assertEquals(1, smtpReleased.getCount());
+            verify(mailSender, timeout(5000)).send(any(SimpleMailMessage.class));
+        } finally {
+            smtpReleased.countDown();
+        }
+    }
+
+    @Test
+    public void testFailedSendIsRetried() {
+        doThrow(new MailSendException("SMTP unavailable"))
+            .doNothing()
+            .when(mailSender).send(any(SimpleMailMessage.class));
+
+        emailService.sendTwoFactorCode("retry@example.com", "123456");
+
+        verify(mailSender, timeout(5000).times(2)).send(any(SimpleMailMessage.class));
+    }
+}
@@ -0,0 +1,136 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.entity.EmailOutbox;
+import com.wilson.cmpe272.repository.EmailOutboxRepository;
+import com.wilson.cmpe272.service.EmailService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:email-outbox;DB_CLOSE_DELAY=-1",
+    "email.dispatch.mode=outbox",
+    "email.dispatch.initial-backoff-ms=20",
+    "email.outbox.relay-workers=4",
+    "email.outbox.batch-size=10",
+    "email.outbox.poll-interval-ms=50"
+})
+public class EmailOutboxTest {
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockitoBean
+    private JavaMailSender mailSender;
+
+    @BeforeEach
+    public void clearOutbox() throws InterruptedException {
+        waitUntilNothingPending();
+        emailOutboxRepository.deleteAll();
+        reset(mailSender);
+    }
+
+    @Test
+    public void testEachOutboxRowIsSentExactlyOnce() throws InterruptedException {
+        int count = 200;
+        for (int i = 0; i < count; i++) {
+            emailService.sendTwoFactorCode("outbox-" + i + "@example.com", "123456");
+        }
+
+        waitUntilNothingPending();
+
+        // Four relay workers compete for the same rows; each mail must still go out once
+        verify(mailSender, times(count)).send(any(SimpleMailMessage.class));
+        assertEquals(count, emailOutboxRepository.countByStatus(EmailOutbox.Status.SENT));
+    }
+
+    @Test
+    public void testRolledBackTransactionSendsNothing() throws InterruptedException {
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            emailService.sendVerificationCode("rollback@example.com", "654321");
+            throw new IllegalStateException("user save failed");
+        }));
+
+        Thread.sleep(300);
+        assertEquals(0, emailOutboxRepository.count());
+        verify(mailSender, never()).send(any(SimpleMailMessage.class));
+    }
+
+    @Test
+    public void testFailedSendIsRetriedFromOutbox() throws InterruptedException {
+        doThrow(new MailSendException("SMTP unavailable"))
+            .doNothing()
+            .when(mailSender).send(any(SimpleMailMessage.class));
+
+        emailService.sendTwoFactorCode("outbox-retry@example.com", "123456");
+
+        verify(mailSender, timeout(5000).times(2)).send(any(SimpleMailMessage.class));
+        waitUntilNothingPending();
+        EmailOutbox row = emailOutboxRepository.findAll().get(0);
+        assertEquals(EmailOutbox.Status.SENT, row.getStatus());
+        assertEquals(2, row.getAttempts());
+    }
+
+    @Test
+    public void testLapsedClaimCannotBeRenewedOnceReclaimed() {
+        EmailOutbox row = emailOutboxRepository.save(parkedRow(EmailOutbox.Status.PENDING));
+        Instant now = Instant.now();
+        // The first worker's batch lease runs out before it reaches the row, and another worker claims it
+        assertEquals(1, emailOutboxRepository.claim(List.of(row.getId()), "slow-worker", now, now.minusSeconds(1)));
+        assertEquals(1, emailOutboxRepository.claim(List.of(row.getId()), "other-worker", now, now.plusSeconds(60)));
+
+        assertEquals(0, emailOutboxRepository.renewClaim(row.getId(), "slow-worker", now.plusSeconds(60)));
+        assertEquals(1, emailOutboxRepository.renewClaim(row.getId(), "other-worker", now.plusSeconds(60)));
+        emailOutboxRepository.delete(row);
+    }
+
+    @Test
+    public void testSentAndFailedRowsArePurged() {
+        EmailOutbox sent = parkedRow(EmailOutbox.Status.SENT);
+        sent.setSentAt(Instant.now());
+        emailOutboxRepository.save(sent);
+        emailOutboxRepository.save(parkedRow(EmailOutbox.Status.FAILED));
+        EmailOutbox pending = emailOutboxRepository.save(parkedRow(EmailOutbox.Status.PENDING));
+
+        assertEquals(2, emailOutboxRepository.deleteFinishedBefore(Instant.now().plusSeconds(60)));
+        assertEquals(List.of(pending.getId()), emailOutboxRepository.findAll().stream().map(EmailOutbox::getId).toList());
+        emailOutboxRepository.delete(pending);
+    }
+
+    // Not due for an hour, so the running relay leaves it alone
+    private EmailOutbox parkedRow(EmailOutbox.Status status) {
+        EmailOutbox row = new EmailOutbox();
+        row.setRecipient("parked@example.com");
+        row.setSubject("Your code");
+        row.setBody("123456");
+        row.setStatus(status);
+        row.setNextAttemptAt(Instant.now().plusSeconds(3600));
+        return row;
+    }
+
+    private void waitUntilNothingPending() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (emailOutboxRepository.countByStatus(EmailOutbox.Status.PENDING) > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.dto.VerificationRequest;
+import com.wilson.cmpe272.entity.User;
+import com.wilson.cmpe272.repository.UserRepository;
+import com.wilson.cmpe272.service.AuthService;
+import com.wilson.cmpe272.service.EmailService;
+import com.wilson.cmpe272.service.EntityCacheStatistics;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:entity-cache;DB_CLOSE_DELAY=-1",
+    // Expire the application-level user cache at once so every lookup reaches the repository
+    "user-cache.ttl-seconds=0",
+    "login-telemetry.flush-interval-ms=3600000",
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.wilson.cmpe272.EntityCacheTest$SelectCounter"
+})
+public class EntityCacheTest {
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private EntityCacheStatistics entityCacheStatistics;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    @Test
+    public void testRepeatedLoginAndProfileRunNoSelectsAfterWarmUp() {
+        User user = new User("cached@example.com", passwordEncoder.encode("password123"));
+        user.setTwoFactorMethod(User.TwoFactorMethod.EMAIL);
+        user.setIsTwoFactorEnabled(true);
+        user.setIsEmailVerified(true);
+        user = userRepository.save(user);
+
+        loginAndLoadProfile(user);
+        SelectCounter.start();
+        for (int i = 0; i < 5; i++) {
+            loginAndLoadProfile(user);
+        }
+        assertEquals(0, SelectCounter.stop());
+
+        Map<String, Object> stats = entityCacheStatistics.getStats();
+        assertEquals(true, stats.get("enabled"));
+        assertTrue((Long) ((Map<?, ?>) stats.get(User.NATURAL_ID_CACHE_REGION)).get("hits") > 0);
+        assertTrue((Long) ((Map<?, ?>) stats.get(User.CACHE_REGION)).get("hits") > 0);
+    }
+
+    @Test
+    public void testCachedLookupsFollowWrites() {
+        User user = userRepository.save(new User("writes@example.com", "{bcrypt}encoded-password"));
+        userRepository.findByEmail("writes@example.com");
+
+        SelectCounter.start();
+        assertTrue(userRepository.existsByEmail("writes@example.com"));
+        assertTrue(userRepository.findByEmailAndEmailVerified("writes@example.com").isEmpty());
+        assertEquals(0, SelectCounter.stop());
+
+        // Saves update the cached entity
+        user.setIsEmailVerified(true);
+        userRepository.save(user);
+        assertTrue(userRepository.findByEmailAndEmailVerified("writes@example.com").isPresent());
+
+        userRepository.delete(user);
+        assertFalse(userRepository.existsByEmail("writes@example.com"));
+    }
+
+    private void loginAndLoadProfile(User user) {
+        clearInvocations(emailService);
+        authService.initiateLogin(user.getEmail(), "password123");
+        ArgumentCaptor<String> code = ArgumentCaptor.forClass(String.class);
+        verify(emailService).sendTwoFactorCode(eq(user.getEmail()), code.capture());
+        assertNotNull(authService.completeLogin(new VerificationRequest(user.getEmail(), code.getValue())).getToken());
+
+        SecurityContextHolder.getContext().setAuthentication(
+            new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        try {
+            assertEquals(user.getEmail(), authService.getCurrentUserProfile().getEmail());
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    // Counts the plain SELECTs Hibernate issues on the test thread, ignoring background pollers. Locking reads are
+    // left out: in stored login mode the code lives on the row, so checking it reads the row under a lock by design
+    public static class SelectCounter implements StatementInspector {
+
+        private static final AtomicInteger selects = new AtomicInteger();
+
+        private static volatile Thread counting;
+
+        static void start() {
+            selects.set(0);
+            counting = Thread.currentThread();
+        }
+
+        static int stop() {
+            counting = null;
+            return selects.get();
+        }
+
+        @Override
+        public String inspect(String sql) {
+            String statement = sql.trim().toLowerCase(Locale.ROOT);
+            if (Thread.currentThread() == counting && statement.startsWith("select") && !statement.contains(" for update")) {
+                selects.incrementAndGet();
+            }
+            return sql;
+        }
+    }
+}
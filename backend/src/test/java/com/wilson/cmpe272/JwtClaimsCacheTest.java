@@ -0,0 +1,64 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.entity.User;
+import com.wilson.cmpe272.service.JwtService;
+import com.wilson.cmpe272.service.TokenDigest;
+import com.wilson.cmpe272.service.VerifiedClaims;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:jwt-claims-cache;DB_CLOSE_DELAY=-1",
+    "jwt.claims-cache.max-size=3"
+})
+public class JwtClaimsCacheTest {
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Test
+    public void testFullCacheDropsOldestClaims() {
+        List<String> tokens = new ArrayList<>();
+        List<VerifiedClaims> verified = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            User user = new User("claims" + i + "@example.com", "encoded-password");
+            user.setId(i + 1L);
+            String token = jwtService.generateToken(user);
+            tokens.add(token);
+            verified.add(jwtService.verifyToken(token));
+            assertTrue(jwtService.getClaimsCacheSize() <= 3);
+        }
+        assertEquals(3, jwtService.getClaimsCacheSize());
+
+        // The three newest are served from the cache, the two oldest are verified again
+        for (int i = 2; i < 5; i++) {
+            assertSame(verified.get(i), jwtService.verifyToken(tokens.get(i)));
+        }
+        VerifiedClaims reverified = jwtService.verifyToken(tokens.get(0));
+        assertNotSame(verified.get(0), reverified);
+        assertEquals("claims0@example.com", reverified.getSubject());
+        assertEquals(3, jwtService.getClaimsCacheSize());
+    }
+
+    @Test
+    public void testDigestHashUsesBothHalves() {
+        assertEquals(new TokenDigest(7, 9), new TokenDigest(7, 9));
+        assertEquals(new TokenDigest(7, 9).hashCode(), new TokenDigest(7, 9).hashCode());
+        assertEquals(TokenDigest.of("same-token"), TokenDigest.of("same-token"));
+
+        // Digests that share the high half must still spread across hash buckets
+        Set<Integer> hashes = new HashSet<>();
+        for (long low = 0; low < 1_000; low++) {
+            hashes.add(new TokenDigest(42, low).hashCode());
+        }
+        assertEquals(1_000, hashes.size());
+    }
+}
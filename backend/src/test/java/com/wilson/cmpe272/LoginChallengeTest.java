@@ -0,0 +1,107 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.dto.AuthResponse;
+import com.wilson.cmpe272.dto.VerificationRequest;
+import com.wilson.cmpe272.entity.User;
+import com.wilson.cmpe272.repository.UserRepository;
+import com.wilson.cmpe272.service.AuthService;
+import com.wilson.cmpe272.service.EmailService;
+import com.wilson.cmpe272.service.LoginChallengeCodec;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:login-challenge;DB_CLOSE_DELAY=-1",
+    "login.challenge.mode=signed"
+})
+public class LoginChallengeTest {
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @MockitoSpyBean
+    private UserRepository userRepository;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    @Test
+    public void testChallengeRoundTripAndTampering() {
+        byte[] secret = "test-secret".getBytes(StandardCharsets.UTF_8);
+        LoginChallengeCodec codec = new LoginChallengeCodec(LoginChallengeCodec.deriveKey(secret, "seal"),
+            LoginChallengeCodec.deriveKey(secret, "code"));
+        String token = codec.seal(42, "123456", 1_000_000, new byte[16]);
+        assertEquals(88, token.length());
+
+        LoginChallengeCodec.Challenge challenge = codec.open(token);
+        assertNotNull(challenge);
+        assertEquals(42, challenge.getUserId());
+        assertEquals(1_000_000, challenge.getExpiresAtMillis());
+        assertTrue(codec.matchesCode(challenge, "123456"));
+        assertFalse(codec.matchesCode(challenge, "123457"));
+        assertFalse(token.contains("123456"));
+
+        // Any changed character breaks the tag
+        char[] tampered = token.toCharArray();
+        tampered[5] = tampered[5] == 'A' ? 'B' : 'A';
+        assertNull(codec.open(new String(tampered)));
+        assertNull(codec.open(token.substring(1)));
+        LoginChallengeCodec otherKey = new LoginChallengeCodec(LoginChallengeCodec.deriveKey(secret, "other"),
+            LoginChallengeCodec.deriveKey(secret, "code"));
+        assertNull(otherKey.open(token));
+    }
+
+    @Test
+    public void testSignedLoginWritesUserOnlyOnSuccessAndIsSingleUse() {
+        User user = new User("challenge@example.com", passwordEncoder.encode("password123"));
+        user.setTwoFactorMethod(User.TwoFactorMethod.EMAIL);
+        user.setIsTwoFactorEnabled(true);
+        user.setIsEmailVerified(true);
+        userRepository.save(user);
+
+        clearInvocations(userRepository);
+        AuthResponse initiated = authService.initiateLogin("challenge@example.com", "password123");
+        assertNotNull(initiated.getChallenge());
+        verify(userRepository, never()).save(any());
+        ArgumentCaptor<String> code = ArgumentCaptor.forClass(String.class);
+        verify(emailService).sendTwoFactorCode(eq("challenge@example.com"), code.capture());
+        assertNull(userRepository.findByEmail("challenge@example.com").orElseThrow().getEmailVerificationCode());
+
+        String wrongCode = code.getValue().equals("000000") ? "000001" : "000000";
+        assertThrows(BadCredentialsException.class,
+            () -> authService.completeLogin(request(initiated.getChallenge(), wrongCode)));
+        assertThrows(BadCredentialsException.class,
+            () -> authService.completeLogin(request(null, code.getValue())));
+
+        AuthResponse completed = authService.completeLogin(request(initiated.getChallenge(), code.getValue()));
+        assertNotNull(completed.getToken());
+        // Even success only records the last-login timestamp, which is written behind as a single column
+        verify(userRepository, never()).save(any());
+
+        BadCredentialsException replay = assertThrows(BadCredentialsException.class,
+            () -> authService.completeLogin(request(initiated.getChallenge(), code.getValue())));
+        assertTrue(replay.getMessage().contains("already used"));
+    }
+
+    private VerificationRequest request(String challenge, String code) {
+        VerificationRequest request = new VerificationRequest("challenge@example.com", code);
+        request.setChallenge(challenge);
+        return request;
+    }
+}
@@ -0,0 +1,83 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.entity.User;
+import com.wilson.cmpe272.repository.UserRepository;
+import com.wilson.cmpe272.service.LoginTelemetryWriter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:login-telemetry;DB_CLOSE_DELAY=-1",
+    // Flushed by hand so the test controls the intervals
+    "login-telemetry.flush-interval-ms=3600000"
+})
+public class LoginTelemetryTest {
+
+    @Autowired
+    private LoginTelemetryWriter loginTelemetryWriter;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testLatestLoginIsWrittenAndNeverRegresses() {
+        User user = userRepository.save(new User("telemetry@example.com", "encoded-password"));
+        LocalDateTime first = LocalDateTime.of(2025, 1, 1, 10, 0);
+        loginTelemetryWriter.recordLogin(user.getId(), first.plusMinutes(5));
+        loginTelemetryWriter.recordLogin(user.getId(), first);
+        assertNull(lastLogin(user.getId()));
+
+        assertEquals(1, loginTelemetryWriter.flush());
+        assertEquals(first.plusMinutes(5), lastLogin(user.getId()));
+
+        // An older timestamp flushed later (e.g. from another node) is ignored
+        loginTelemetryWriter.recordLogin(user.getId(), first.plusMinutes(1));
+        loginTelemetryWriter.flush();
+        assertEquals(first.plusMinutes(5), lastLogin(user.getId()));
+
+        // Entity saves no longer touch the column
+        user.setLastLoginAt(first);
+        user.setFirstName("Changed");
+        userRepository.save(user);
+        assertEquals(first.plusMinutes(5), lastLogin(user.getId()));
+    }
+
+    // Repeat logins between flushes coalesce into one row per user, carrying that user's latest login
+    @Test
+    public void testRepeatLoginsAreCoalescedPerFlush() {
+        int users = 50;
+        int logins = 1_000;
+        List<Long> ids = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            ids.add(userRepository.save(new User("coalesce" + i + "@example.com", "encoded-password")).getId());
+        }
+        LocalDateTime now = LocalDateTime.of(2025, 6, 1, 12, 0);
+
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < logins; i++) {
+                loginTelemetryWriter.recordLogin(ids.get(i % users), now.plusSeconds(round * 60L + i));
+            }
+            assertEquals(users, loginTelemetryWriter.flush());
+        }
+        for (int i = 0; i < users; i++) {
+            // Round two's last login for user i was at second 60 + (logins - users + i)
+            assertEquals(now.plusSeconds(60L + logins - users + i), lastLogin(ids.get(i)));
+        }
+        assertEquals(0, loginTelemetryWriter.flush());
+    }
+
+    private LocalDateTime lastLogin(Long id) {
+        return jdbcTemplate.queryForObject("SELECT last_login_at FROM users WHERE id = ?", LocalDateTime.class, id);
+    }
+}
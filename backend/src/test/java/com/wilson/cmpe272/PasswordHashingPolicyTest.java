@@ -0,0 +1,110 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.entity.User;
+import com.wilson.cmpe272.repository.UserRepository;
+import com.wilson.cmpe272.service.AuthService;
+import com.wilson.cmpe272.service.PasswordHashingPolicy;
+import com.wilson.cmpe272.service.UserCache;
+import com.wilson.cmpe272.service.VersionedPbkdf2PasswordEncoder;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:password-hashing;DB_CLOSE_DELAY=-1",
+    "password-hashing.algorithm=argon2",
+    "password-hashing.argon2.memory-kib=4096",
+    "password-hashing.argon2.iterations=1"
+})
+public class PasswordHashingPolicyTest {
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private PasswordHashingPolicy passwordHashingPolicy;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private JavaMailSender mailSender;
+
+    @Test
+    public void testEveryStoredFormatVerifies() {
+        String argon2 = passwordEncoder.encode("password123");
+        assertTrue(argon2.startsWith(passwordHashingPolicy.getCurrentHashPrefix()));
+        assertTrue(passwordEncoder.matches("password123", argon2));
+        assertFalse(passwordEncoder.upgradeEncoding(argon2));
+
+        String legacy = new BCryptPasswordEncoder(4).encode("password123");
+        assertTrue(passwordEncoder.matches("password123", legacy));
+        assertTrue(passwordEncoder.upgradeEncoding(legacy));
+
+        String pbkdf2 = "{pbkdf2}" + new VersionedPbkdf2PasswordEncoder(1000).encode("password123");
+        assertTrue(passwordEncoder.matches("password123", pbkdf2));
+        assertFalse(passwordEncoder.matches("wrong", pbkdf2));
+        assertTrue(passwordEncoder.upgradeEncoding(pbkdf2));
+    }
+
+    @Test
+    public void testOutdatedHashIsUpgradedOnLogin() {
+        User user = new User("rehash@example.com", new BCryptPasswordEncoder(4).encode("password123"));
+        user.setIsEmailVerified(true);
+        user.setTwoFactorMethod(User.TwoFactorMethod.EMAIL);
+        userRepository.save(user);
+        userCache.evict(user.getEmail());
+
+        authService.initiateLogin("rehash@example.com", "password123");
+
+        String stored = userRepository.findByEmail("rehash@example.com").orElseThrow().getPassword();
+        assertTrue(stored.startsWith(passwordHashingPolicy.getCurrentHashPrefix()), stored);
+        assertTrue(passwordEncoder.matches("password123", stored));
+
+        Map<String, Object> upgrades = upgradeStats();
+        assertTrue((Long) upgrades.get("upgraded") >= 1);
+        assertTrue((Long) ((Map<?, ?>) upgrades.get("upgradedFrom")).get("legacyBcrypt") >= 1);
+    }
+
+    @Test
+    public void testUpgradeFromStaleCopyKeepsNewerPassword() {
+        User user = new User("stale-rehash@example.com", new BCryptPasswordEncoder(4).encode("password123"));
+        user.setIsEmailVerified(true);
+        user.setTwoFactorMethod(User.TwoFactorMethod.EMAIL);
+        userRepository.save(user);
+        userCache.findByEmail(user.getEmail());
+
+        // The password is changed on another node while this node still has the old hash cached
+        String changed = passwordEncoder.encode("changed-password");
+        jdbcTemplate.update("UPDATE users SET password = ? WHERE email = ?", changed, user.getEmail());
+        long conflicts = (Long) upgradeStats().get("conflicts");
+
+        authService.initiateLogin("stale-rehash@example.com", "password123");
+
+        assertEquals(changed, jdbcTemplate.queryForObject("SELECT password FROM users WHERE email = ?", String.class, user.getEmail()));
+        assertEquals(conflicts + 1, upgradeStats().get("conflicts"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> upgradeStats() {
+        return (Map<String, Object>) passwordHashingPolicy.getStats().get("upgrades");
+    }
+}
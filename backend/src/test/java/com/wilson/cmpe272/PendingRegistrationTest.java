@@ -0,0 +1,145 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.dto.SignupRequest;
+import com.wilson.cmpe272.dto.VerificationRequest;
+import com.wilson.cmpe272.entity.User;
+import com.wilson.cmpe272.repository.PendingRegistrationRepository;
+import com.wilson.cmpe272.repository.UserRepository;
+import com.wilson.cmpe272.service.AuthService;
+import com.wilson.cmpe272.service.EmailService;
+import com.wilson.cmpe272.service.UnverifiedUserMigration;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:pending-registration;DB_CLOSE_DELAY=-1",
+    "registration.pending.enabled=true",
+    "registration.pending.max-in-memory=1",
+    "registration.pending.migration-batch-size=5"
+})
+public class PendingRegistrationTest {
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PendingRegistrationRepository pendingRegistrationRepository;
+
+    @Autowired
+    private UnverifiedUserMigration unverifiedUserMigration;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    @Test
+    public void testUserRowIsCreatedOnlyOnVerification() {
+        authService.signup(signup("memory@example.com"));
+        // The in-memory slot is taken, so this one goes to the overflow table
+        authService.signup(signup("overflow@example.com"));
+        assertFalse(userRepository.existsByEmail("memory@example.com"));
+        assertFalse(userRepository.existsByEmail("overflow@example.com"));
+        assertTrue(pendingRegistrationRepository.findByEmail("overflow@example.com").isPresent());
+        assertThrows(IllegalArgumentException.class, () -> authService.signup(signup("memory@example.com")));
+
+        for (String email : new String[] {"memory@example.com", "overflow@example.com"}) {
+            String code = sentCode(email);
+            String wrongCode = code.equals("000000") ? "000001" : "000000";
+            assertThrows(IllegalArgumentException.class, () -> authService.verifyEmail(new VerificationRequest(email, wrongCode)));
+            assertFalse(userRepository.existsByEmail(email));
+
+            authService.verifyEmail(new VerificationRequest(email, code));
+            User user = userRepository.findByEmail(email).orElseThrow();
+            assertTrue(user.getIsEmailVerified());
+            assertEquals("First", user.getFirstName());
+            assertEquals(User.TwoFactorMethod.EMAIL, user.getTwoFactorMethod());
+        }
+        assertTrue(pendingRegistrationRepository.findByEmail("overflow@example.com").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> authService.signup(signup("memory@example.com")));
+    }
+
+    @Test
+    public void testMigrationMovesExpiredUnverifiedUsers() {
+        for (String email : new String[] {"recent@example.com", "abandoned@example.com", "verified@example.com"}) {
+            User user = new User(email, "encoded-password");
+            user.setEmailVerificationCode("123456");
+            user.setEmailVerificationExpiresAt(LocalDateTime.now().minusMinutes(1));
+            user.setIsEmailVerified(email.startsWith("verified"));
+            userRepository.save(user);
+        }
+        jdbcTemplate.update("UPDATE users SET created_at = ? WHERE email = ?",
+            LocalDateTime.now().minusDays(30), "abandoned@example.com");
+
+        Map<String, Long> result = unverifiedUserMigration.migrate();
+        assertEquals(1L, result.get("moved"));
+        assertEquals(1L, result.get("deleted"));
+        assertFalse(userRepository.existsByEmail("recent@example.com"));
+        assertFalse(userRepository.existsByEmail("abandoned@example.com"));
+        assertTrue(userRepository.existsByEmail("verified@example.com"));
+        assertTrue(pendingRegistrationRepository.findByEmail("recent@example.com").isPresent());
+        assertTrue(pendingRegistrationRepository.findByEmail("abandoned@example.com").isEmpty());
+
+        // A moved signup can still get a new code and finish
+        authService.resendVerificationCode("recent@example.com", "email");
+        authService.verifyEmail(new VerificationRequest("recent@example.com", sentCode("recent@example.com")));
+        assertTrue(userRepository.findByEmail("recent@example.com").orElseThrow().getIsEmailVerified());
+    }
+
+    @Test
+    public void testMigrationRunningOnEveryNodeMovesEachUserOnce() throws Exception {
+        int users = 40;
+        for (int i = 0; i < users; i++) {
+            User user = new User("parallel-" + i + "@example.com", "encoded-password");
+            user.setEmailVerificationExpiresAt(LocalDateTime.now().minusMinutes(1));
+            userRepository.save(user);
+        }
+
+        // Two nodes starting the job at the same time take turns batch by batch
+        ExecutorService nodes = Executors.newFixedThreadPool(2);
+        try {
+            Future<Map<String, Long>> first = nodes.submit(unverifiedUserMigration::migrate);
+            Future<Map<String, Long>> second = nodes.submit(unverifiedUserMigration::migrate);
+            first.get(30, TimeUnit.SECONDS);
+            second.get(30, TimeUnit.SECONDS);
+        } finally {
+            nodes.shutdownNow();
+        }
+        assertEquals(users, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM pending_registrations WHERE email LIKE 'parallel-%'", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM users WHERE email LIKE 'parallel-%'", Integer.class));
+    }
+
+    private String sentCode(String email) {
+        ArgumentCaptor<String> code = ArgumentCaptor.forClass(String.class);
+        verify(emailService, atLeastOnce()).sendVerificationCode(eq(email), code.capture());
+        return code.getValue();
+    }
+
+    private SignupRequest signup(String email) {
+        SignupRequest request = new SignupRequest(email, "password123", "password123");
+        request.setFirstName("First");
+        request.setLastName("Last");
+        return request;
+    }
+}
@@ -0,0 +1,79 @@
+package com.wilson.cmpe272;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.datasource.url=jdbc:h2:mem:rate-limit;DB_CLOSE_DELAY=-1",
+    "rate-limit.login.ip-per-minute=100",
+    "rate-limit.login.email-per-minute=2",
+    "rate-limit.resend-code.ip-per-minute=2",
+    "rate-limit.resend-code.email-per-minute=100"
+})
+public class RateLimitFilterTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void testLoginIsLimitedPerEmail() {
+        // The body still reaches the controller intact after the filter has read it
+        ResponseEntity<String> first = login("Victim@Example.com");
+        assertEquals(400, first.getStatusCode().value());
+        assertTrue(first.getBody().contains("Invalid email or password"));
+        assertEquals(400, login("victim@example.com").getStatusCode().value());
+
+        ResponseEntity<String> limited = login(" victim@example.com");
+        assertEquals(429, limited.getStatusCode().value());
+        long retryAfter = Long.parseLong(limited.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertTrue(retryAfter >= 1 && retryAfter <= 30);
+
+        assertEquals(400, login("someone-else@example.com").getStatusCode().value());
+    }
+
+    @Test
+    public void testEmailIsReadAsTheControllerBindsIt() {
+        // A duplicate key would let the limiter and the controller see different emails
+        ResponseEntity<String> duplicate = loginBody(
+            "{\"email\": \"decoy@example.com\", \"email\": \"target@example.com\", \"password\": \"password123\"}");
+        assertEquals(400, duplicate.getStatusCode().value());
+        assertTrue(duplicate.getBody().contains("Malformed request body"));
+        assertEquals(400, loginBody(
+            "{\"email\": \"decoy@example.com\", \"\\u0065mail\": \"target@example.com\"}").getStatusCode().value());
+
+        // An escaped key is charged to the email it decodes to
+        String escaped = "{\"\\u0065mail\": \"target@example.com\", \"password\": \"password123\"}";
+        assertEquals(400, loginBody(escaped).getStatusCode().value());
+        assertEquals(400, loginBody(escaped).getStatusCode().value());
+        assertEquals(429, login("target@example.com").getStatusCode().value());
+    }
+
+    @Test
+    public void testResendCodeIsLimitedPerIp() {
+        assertNotEquals(429, resend("a@example.com").getStatusCode().value());
+        assertNotEquals(429, resend("b@example.com").getStatusCode().value());
+        assertEquals(429, resend("c@example.com").getStatusCode().value());
+    }
+
+    private ResponseEntity<String> login(String email) {
+        return loginBody("{\"email\": \"" + email + "\", \"password\": \"password123\"}");
+    }
+
+    private ResponseEntity<String> loginBody(String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return restTemplate.postForEntity("/api/auth/login", new HttpEntity<>(body, headers), String.class);
+    }
+
+    private ResponseEntity<String> resend(String email) {
+        return restTemplate.postForEntity("/api/auth/resend-code?email=" + email + "&type=EMAIL", null, String.class);
+    }
+}
@@ -0,0 +1,106 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.service.RateLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimiterTest {
+
+    @Test
+    public void testBurstThenRejectWithRetryAfter() {
+        RateLimiter limiter = new RateLimiter(5, 100);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(RateLimiter.ALLOWED, limiter.tryAcquire("10.0.0.1"));
+        }
+        long wait = limiter.tryAcquire("10.0.0.1");
+        assertTrue(wait > 0 && wait <= 12_000_000_000L, "wait " + wait);
+        // Other keys are unaffected
+        assertEquals(RateLimiter.ALLOWED, limiter.tryAcquire("10.0.0.2"));
+    }
+
+    @Test
+    public void testTrackedKeysStayBounded() {
+        RateLimiter limiter = new RateLimiter(1, 1_000);
+        // Address spraying: every new key beyond the cap lands in one shared bucket
+        int allowed = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (limiter.tryAcquire("ip-" + i) == RateLimiter.ALLOWED) {
+                allowed++;
+            }
+        }
+        assertTrue(limiter.size() <= 1_001);
+        assertEquals(1_001, allowed);
+        // Keys that have not refilled yet are kept
+        assertEquals(0, limiter.evictIdle());
+    }
+
+    @Test
+    public void testIdleKeysAreEvicted() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(6_000, 100);
+        limiter.tryAcquire("a");
+        limiter.tryAcquire("b");
+        Thread.sleep(50);
+        assertEquals(2, limiter.evictIdle());
+        assertEquals(0, limiter.size());
+    }
+
+    // Hot keys drained from many threads at once, with eviction running alongside: each key admits exactly its
+    // burst (a permit refills only every 10 s, far longer than the test runs)
+    @Test
+    public void testConcurrentCallersNeverExceedTheBurst() throws Exception {
+        RateLimiter limiter = new RateLimiter(6, 1_000);
+        int threads = 8;
+        int perThread = 20_000;
+        String[] keys = new String[100];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "192.168." + (i / 256) + "." + (i % 256);
+        }
+
+        AtomicLong admitted = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    long local = 0;
+                    for (int i = 0; i < perThread; i++) {
+                        if (limiter.tryAcquire(keys[(i + offset * 7) % keys.length]) == RateLimiter.ALLOWED) {
+                            local++;
+                        }
+                    }
+                    admitted.addAndGet(local);
+                    return null;
+                }));
+            }
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 100; i++) {
+                    limiter.evictIdle();
+                    Thread.sleep(1);
+                }
+                return null;
+            }));
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(6L * keys.length, admitted.get());
+        assertEquals(keys.length, limiter.size());
+    }
+}
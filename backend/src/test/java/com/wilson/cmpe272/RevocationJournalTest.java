@@ -0,0 +1,124 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.service.RevocationJournal;
+import com.wilson.cmpe272.service.RevocationStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RevocationJournalTest {
+
+    private static final long NOW = System.currentTimeMillis() / 1000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testReplayRestoresRevocationsAndRemovals() throws Exception {
+        Path path = tempDir.resolve("revocations.journal");
+        try (RevocationJournal journal = new RevocationJournal(path)) {
+            journal.replay(new RevocationStore(30), NOW);
+            journal.append(1, 1, NOW + 3600);
+            journal.append(2, 2, NOW + 3600);
+            journal.append(3, 3, NOW - 10); // already expired
+            journal.appendRemoval(2, 2);
+        }
+
+        RevocationStore store = new RevocationStore(30);
+        try (RevocationJournal journal = new RevocationJournal(path)) {
+            assertEquals(4, journal.replay(store, NOW));
+            assertEquals(4, journal.getRecordCount());
+        }
+        assertTrue(store.contains(1, 1, NOW));
+        assertFalse(store.contains(2, 2, NOW));
+        assertFalse(store.contains(3, 3, NOW));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testReplayStopsAtTornRecord() throws Exception {
+        Path path = tempDir.resolve("revocations.journal");
+        try (RevocationJournal journal = new RevocationJournal(path)) {
+            journal.replay(new RevocationStore(30), NOW);
+            journal.append(1, 1, NOW + 3600);
+            journal.append(2, 2, NOW + 3600);
+        }
+        // Simulate a crash halfway through writing the second record
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(16 + 32 + 10);
+            file.write(0x7F);
+        }
+
+        RevocationStore store = new RevocationStore(30);
+        try (RevocationJournal journal = new RevocationJournal(path)) {
+            assertEquals(1, journal.replay(store, NOW));
+            journal.append(4, 4, NOW + 3600);
+        }
+
+        RevocationStore reopened = new RevocationStore(30);
+        try (RevocationJournal journal = new RevocationJournal(path)) {
+            assertEquals(2, journal.replay(reopened, NOW));
+        }
+        assertTrue(reopened.contains(1, 1, NOW));
+        assertFalse(reopened.contains(2, 2, NOW));
+        assertTrue(reopened.contains(4, 4, NOW));
+    }
+
+    @Test
+    public void testCompactionKeepsOnlyLiveEntries() throws Exception {
+        Path path = tempDir.resolve("revocations.journal");
+        RevocationStore store = new RevocationStore(30);
+        try (RevocationJournal journal = new RevocationJournal(path)) {
+            journal.replay(store, NOW);
+            for (long i = 1; i <= 1000; i++) {
+                journal.append(i, i, NOW + 3600);
+                store.add(i, i, NOW + 3600, NOW);
+                if (i % 2 == 0) {
+                    journal.appendRemoval(i, i);
+                    store.remove(i, i);
+                }
+            }
+            journal.compact(store);
+            assertEquals(500, journal.getRecordCount());
+            journal.append(2000, 2000, NOW + 3600);
+        }
+
+        RevocationStore reopened = new RevocationStore(30);
+        try (RevocationJournal journal = new RevocationJournal(path)) {
+            assertEquals(501, journal.replay(reopened, NOW));
+        }
+        assertEquals(501, reopened.size());
+        assertTrue(reopened.contains(999, 999, NOW));
+        assertFalse(reopened.contains(998, 998, NOW));
+        assertFalse(Files.exists(tempDir.resolve("revocations.journal.compact")));
+    }
+
+    // Large enough for the journal to grow its mapping several times
+    @Test
+    public void testReplayPresizedFromRecordEstimate() throws Exception {
+        Path path = tempDir.resolve("revocations.journal");
+        int count = 100_000;
+        try (RevocationJournal journal = new RevocationJournal(path)) {
+            journal.replay(new RevocationStore(30), NOW);
+            for (int i = 0; i < count; i++) {
+                long high = i * 0x9E3779B97F4A7C15L;
+                journal.append(high, high ^ 0x5DEECE66DL, NOW + 3600 + (i % 86_400));
+            }
+        }
+
+        RevocationStore store;
+        try (RevocationJournal journal = new RevocationJournal(path)) {
+            assertEquals(count, journal.estimateRecordCount());
+            store = new RevocationStore(30, journal.estimateRecordCount());
+            assertEquals(count, journal.replay(store, NOW));
+        }
+        assertEquals(count, store.size());
+        long last = (count - 1) * 0x9E3779B97F4A7C15L;
+        assertTrue(store.contains(last, last ^ 0x5DEECE66DL, NOW));
+    }
+}
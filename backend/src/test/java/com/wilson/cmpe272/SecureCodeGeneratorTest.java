@@ -0,0 +1,96 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.service.SecureCodeGenerator;
+import org.apache.commons.codec.binary.Base32;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SecureCodeGeneratorTest {
+
+    private final SecureCodeGenerator generator = new SecureCodeGenerator(4096, 1 << 20);
+
+    @Test
+    public void testCodeFormats() {
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(generator.numericCode(6).matches("\\d{6}"));
+            assertTrue(generator.recoveryCode(2, 4).matches("[0-9A-HJKMNP-TV-Z]{4}-[0-9A-HJKMNP-TV-Z]{4}"));
+        }
+        String secret = generator.base32Secret(10);
+        assertEquals(16, secret.length());
+        assertEquals(10, new Base32().decode(secret).length);
+        assertThrows(IllegalArgumentException.class, () -> generator.numericCode(0));
+        assertThrows(IllegalArgumentException.class, () -> generator.nextInt(0));
+    }
+
+    // Chi-square over 10 buckets (9 degrees of freedom); 27.88 is the p = 0.001 critical value
+    @Test
+    public void testDigitsAreUniform() {
+        int samples = 200_000;
+        long[][] counts = new long[6][10];
+        for (int i = 0; i < samples; i++) {
+            String code = generator.numericCode(6);
+            for (int position = 0; position < 6; position++) {
+                counts[position][code.charAt(position) - '0']++;
+            }
+        }
+        double expected = samples / 10.0;
+        for (int position = 0; position < 6; position++) {
+            double chiSquare = 0;
+            for (long count : counts[position]) {
+                chiSquare += (count - expected) * (count - expected) / expected;
+            }
+            assertTrue(chiSquare < 27.88, "Digit position " + position + " is skewed: chi-square " + chiSquare);
+        }
+    }
+
+    @Test
+    public void testCodesDoNotRepeat() {
+        Set<String> secrets = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(secrets.add(generator.base32Secret(10)));
+        }
+    }
+
+    // Many threads drawing at once must each get well-formed codes and never share generator state
+    @Test
+    public void testConcurrentCallersGetDistinctSecrets() throws Exception {
+        int threads = 16;
+        int secretsPerThread = 2_000;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    List<String> secrets = new ArrayList<>(secretsPerThread);
+                    for (int i = 0; i < secretsPerThread; i++) {
+                        if (!generator.numericCode(6).matches("\\d{6}")) {
+                            throw new IllegalStateException("Malformed code");
+                        }
+                        secrets.add(generator.base32Secret(10));
+                    }
+                    return secrets;
+                }));
+            }
+            start.countDown();
+            Set<String> secrets = new HashSet<>();
+            for (Future<List<String>> future : futures) {
+                secrets.addAll(future.get());
+            }
+            assertEquals(threads * secretsPerThread, secrets.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
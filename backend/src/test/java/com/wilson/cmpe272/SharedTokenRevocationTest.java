@@ -0,0 +1,114 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.service.TokenBlacklistService;
+import com.wilson.cmpe272.service.TokenDigest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two application nodes sharing one database: a token revoked on one node must be rejected by the other.
+ */
+public class SharedTokenRevocationTest {
+
+    private static final String[] NODE_ARGS = {
+        "--server.port=0",
+        "--spring.datasource.url=jdbc:h2:mem:shared-revocations;DB_CLOSE_DELAY=-1",
+        "--spring.datasource.driver-class-name=org.h2.Driver",
+        "--spring.datasource.username=sa",
+        "--spring.datasource.password=",
+        "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "--spring.jpa.hibernate.ddl-auto=update",
+        "--jwt.blacklist.store=jdbc",
+        "--jwt.blacklist.sync-interval-ms=100"
+    };
+
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+
+    @BeforeEach
+    public void startNodes() {
+        nodeA = new SpringApplicationBuilder(Cmpe272Application.class).run(NODE_ARGS);
+        nodeB = new SpringApplicationBuilder(Cmpe272Application.class).run(NODE_ARGS);
+    }
+
+    @AfterEach
+    public void stopNodes() {
+        nodeB.getBean(TokenBlacklistService.class).clearBlacklist();
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    public void testRevocationPropagatesToOtherNode() throws InterruptedException {
+        TokenBlacklistService blacklistA = nodeA.getBean(TokenBlacklistService.class);
+        TokenBlacklistService blacklistB = nodeB.getBean(TokenBlacklistService.class);
+        String token = "shared-jwt-token-123";
+        
+        assertFalse(blacklistB.isTokenBlacklisted(token));
+        
+        blacklistA.blacklistToken(token, new Date(System.currentTimeMillis() + 60_000));
+        assertTrue(blacklistA.isTokenBlacklisted(token));
+        
+        // Node B picks the revocation up on its next sync
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!blacklistB.isTokenBlacklisted(token) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(blacklistB.isTokenBlacklisted(token));
+    }
+
+    @Test
+    public void testRevocationCommittedOutOfIdOrderIsStillPickedUp() throws InterruptedException {
+        TokenBlacklistService blacklistB = nodeB.getBean(TokenBlacklistService.class);
+        JdbcTemplate jdbcTemplate = nodeA.getBean(JdbcTemplate.class);
+
+        insertRevocation(jdbcTemplate, 1_000_000, "later-id-token");
+        awaitBlacklisted(blacklistB, "later-id-token");
+
+        // A transaction that took its id long before committing shows up far behind node B's cursor
+        insertRevocation(jdbcTemplate, 1, "earlier-id-token");
+        awaitBlacklisted(blacklistB, "earlier-id-token");
+    }
+
+    @Test
+    public void testRevocationRecordedBehindTheNewestSeenIsStillPickedUp() throws InterruptedException {
+        TokenBlacklistService blacklistB = nodeB.getBean(TokenBlacklistService.class);
+        JdbcTemplate jdbcTemplate = nodeA.getBean(JdbcTemplate.class);
+
+        insertRevocation(jdbcTemplate, 2_000_000, "newest-token", Instant.now());
+        awaitBlacklisted(blacklistB, "newest-token");
+
+        // Stamped two seconds earlier by a slower publisher, but only committed now
+        insertRevocation(jdbcTemplate, 2_000_001, "slow-commit-token", Instant.now().minusSeconds(2));
+        awaitBlacklisted(blacklistB, "slow-commit-token");
+    }
+
+    private void insertRevocation(JdbcTemplate jdbcTemplate, long id, String token) {
+        insertRevocation(jdbcTemplate, id, token, Instant.now());
+    }
+
+    private void insertRevocation(JdbcTemplate jdbcTemplate, long id, String token, Instant recordedAt) {
+        TokenDigest digest = TokenDigest.of(token);
+        jdbcTemplate.update("INSERT INTO token_revocations (id, digest_high, digest_low, expires_at, created_at) "
+            + "VALUES (?, ?, ?, ?, ?)", id, digest.getHigh(), digest.getLow(),
+            Timestamp.from(Instant.now().plusSeconds(60)), Timestamp.from(recordedAt));
+    }
+
+    private void awaitBlacklisted(TokenBlacklistService blacklist, String token) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!blacklist.isTokenBlacklisted(token) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(blacklist.isTokenBlacklisted(token));
+    }
+}
@@ -0,0 +1,127 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.dto.SignupRequest;
+import com.wilson.cmpe272.entity.User;
+import com.wilson.cmpe272.repository.UserRepository;
+import com.wilson.cmpe272.service.AuthService;
+import com.wilson.cmpe272.service.EmailNormalizationMigration;
+import com.wilson.cmpe272.service.EmailService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:signup-concurrency;DB_CLOSE_DELAY=-1",
+    "password-hashing.bcrypt.strength=4"
+})
+public class SignupConcurrencyTest {
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EmailNormalizationMigration emailNormalizationMigration;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    // 1k signups for 100 addresses, each address in 10 case and whitespace variants, all started together
+    @Test
+    public void testConcurrentSignupsCreateOneUserPerEmail() throws Exception {
+        int emails = 100;
+        int attemptsPerEmail = 10;
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger duplicates = new AtomicInteger();
+        Map<String, Integer> unexpected = new ConcurrentHashMap<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int attempt = 0; attempt < attemptsPerEmail; attempt++) {
+                for (int i = 0; i < emails; i++) {
+                    String email = attempt % 2 == 0 ? "racer" + i + "@example.com" : " Racer" + i + "@Example.COM ";
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        try {
+                            authService.signup(new SignupRequest(email, "password123", "password123"));
+                            created.incrementAndGet();
+                        } catch (IllegalArgumentException e) {
+                            if ("User with this email already exists".equals(e.getMessage())) {
+                                duplicates.incrementAndGet();
+                            } else {
+                                unexpected.merge(e.getMessage(), 1, Integer::sum);
+                            }
+                        } catch (RuntimeException e) {
+                            unexpected.merge(e.getClass().getSimpleName() + ": " + e.getMessage(), 1, Integer::sum);
+                        }
+                        return null;
+                    }));
+                }
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(unexpected.isEmpty(), unexpected.toString());
+        assertEquals(emails, created.get());
+        assertEquals(emails * (attemptsPerEmail - 1), duplicates.get());
+        for (int i = 0; i < emails; i++) {
+            User user = userRepository.findByEmail("RACER" + i + "@example.com").orElseThrow();
+            assertEquals("racer" + i + "@example.com", user.getEmail());
+        }
+        // Rejected signups never reach the mail server
+        verify(emailService, times(emails)).sendVerificationCode(anyString(), anyString());
+    }
+
+    // Rows written before emails were normalized on the way in
+    @Test
+    public void testExistingMixedCaseEmailsAreNormalized() {
+        insertRaw(" Legacy@Example.COM");
+        insertRaw("Twin@Example.com");
+        insertRaw("twin@example.com");
+
+        Map<String, Long> result = emailNormalizationMigration.normalize();
+        assertEquals(1L, result.get("rewritten"));
+        assertEquals(1L, result.get("conflicts"));
+        assertEquals("legacy@example.com", userRepository.findByEmail("LEGACY@example.com").orElseThrow().getEmail());
+        assertThrows(IllegalArgumentException.class,
+            () -> authService.signup(new SignupRequest("legacy@example.com", "password123", "password123")));
+        // The clashing row keeps its spelling until the accounts are merged
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE email = 'Twin@Example.com'", Integer.class));
+
+        assertEquals(0L, emailNormalizationMigration.normalize().get("rewritten"));
+    }
+
+    private void insertRaw(String email) {
+        jdbcTemplate.update("INSERT INTO users (email, password, is_email_verified, security_version) VALUES (?, ?, ?, ?)",
+            email, "encoded-password", true, 0);
+    }
+}
@@ -0,0 +1,44 @@
+package com.wilson.cmpe272;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatelessAuthenticationTest {
+
+    private static final String[] NODE_ARGS = {
+        "--server.port=0",
+        "--spring.datasource.url=jdbc:h2:mem:stateless-authentication;DB_CLOSE_DELAY=-1",
+        "--spring.datasource.driver-class-name=org.h2.Driver",
+        "--spring.datasource.username=sa",
+        "--spring.datasource.password=",
+        "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "--spring.jpa.hibernate.ddl-auto=update",
+        "--jwt.stateless-authentication.enabled=true"
+    };
+
+    @Test
+    public void testStatelessModeStartsOnASingleNode() {
+        try (ConfigurableApplicationContext node = new SpringApplicationBuilder(Cmpe272Application.class).run(NODE_ARGS)) {
+            assertTrue(node.isActive());
+        }
+    }
+
+    // Staleness is only tracked per node, so a shared store and claims-built principals do not mix
+    @Test
+    public void testStatelessModeRefusesToStartClustered() {
+        String[] args = new String[NODE_ARGS.length + 1];
+        System.arraycopy(NODE_ARGS, 0, args, 0, NODE_ARGS.length);
+        args[NODE_ARGS.length] = "--jwt.blacklist.store=jdbc";
+
+        Exception e = assertThrows(Exception.class, () -> new SpringApplicationBuilder(Cmpe272Application.class).run(args));
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        assertInstanceOf(IllegalStateException.class, cause);
+        assertTrue(cause.getMessage().contains("jwt.stateless-authentication.enabled"));
+    }
+}
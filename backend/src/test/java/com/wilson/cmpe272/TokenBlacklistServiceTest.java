@@ -5,6 +5,8 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.Date;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -69,4 +71,18 @@ public class TokenBlacklistServiceTest {
         tokenBlacklistService.clearBlacklist();
         assertEquals(0, tokenBlacklistService.getBlacklistSize());
     }
+    
+    @Test
+    public void testBlacklistEntryFollowsTokenExpiration() {
+        String expiredToken = "test-jwt-token-expired";
+        String liveToken = "test-jwt-token-live";
+        
+        // Tokens that already expired are not stored
+        tokenBlacklistService.blacklistToken(expiredToken, new Date(System.currentTimeMillis() - 1000));
+        assertFalse(tokenBlacklistService.isTokenBlacklisted(expiredToken));
+        
+        // Tokens are blacklisted until their own expiration
+        tokenBlacklistService.blacklistToken(liveToken, new Date(System.currentTimeMillis() + 60000));
+        assertTrue(tokenBlacklistService.isTokenBlacklisted(liveToken));
+    }
 }
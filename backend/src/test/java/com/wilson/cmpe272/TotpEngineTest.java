@@ -0,0 +1,118 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.service.TotpEngine;
+import org.apache.commons.codec.binary.Base32;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TotpEngineTest {
+
+    private static final String SHA1_SEED = "12345678901234567890";
+    private static final String SHA256_SEED = "12345678901234567890123456789012";
+    private static final String SHA512_SEED = "1234567890123456789012345678901234567890123456789012345678901234";
+
+    // RFC 6238 Appendix B: time (seconds), SHA1, SHA256, SHA512 codes (8 digits, 30 second period)
+    private static final long[][] RFC_6238_VECTORS = {
+        {59L, 94287082, 46119246, 90693936},
+        {1111111109L, 7081804, 68084774, 25091201},
+        {1111111111L, 14050471, 67062674, 99943326},
+        {1234567890L, 89005924, 91819424, 93441116},
+        {2000000000L, 69279037, 90698825, 38618901},
+        {20000000000L, 65353130, 77737706, 47863826}
+    };
+
+    private static String base32(String seed) {
+        return new Base32().encodeToString(seed.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testRfc6238Vectors() {
+        TotpEngine sha1 = new TotpEngine("SHA1", 8, 30, 1, 100);
+        TotpEngine sha256 = new TotpEngine("SHA256", 8, 30, 1, 100);
+        TotpEngine sha512 = new TotpEngine("SHA512", 8, 30, 1, 100);
+        for (long[] vector : RFC_6238_VECTORS) {
+            long step = sha1.currentStep(vector[0] * 1000);
+            assertEquals(vector[1], sha1.generate(base32(SHA1_SEED), step));
+            assertEquals(vector[2], sha256.generate(base32(SHA256_SEED), step));
+            assertEquals(vector[3], sha512.generate(base32(SHA512_SEED), step));
+        }
+    }
+
+    @Test
+    public void testVerifyAcceptsDriftWindowOnly() {
+        TotpEngine engine = new TotpEngine("SHA1", 8, 30, 1, 100);
+        String secret = base32(SHA1_SEED);
+        long now = 1111111111L * 1000;
+        long step = engine.currentStep(now);
+
+        assertEquals(step, engine.verify(secret, "14050471", now));
+        assertEquals(step - 1, engine.verify(secret, String.format("%08d", engine.generate(secret, step - 1)), now));
+        assertEquals(step + 1, engine.verify(secret, String.format("%08d", engine.generate(secret, step + 1)), now));
+        assertEquals(TotpEngine.NO_MATCH, engine.verify(secret, String.format("%08d", engine.generate(secret, step + 2)), now));
+
+        // Wrong length, non-digits and null never match
+        assertEquals(TotpEngine.NO_MATCH, engine.verify(secret, "4050471", now));
+        assertEquals(TotpEngine.NO_MATCH, engine.verify(secret, "1405047a", now));
+        assertEquals(TotpEngine.NO_MATCH, engine.verify(secret, null, now));
+    }
+
+    @Test
+    public void testMatchesPreviousImplementation() {
+        TotpEngine engine = new TotpEngine("SHA1", 6, 30, 1, 100);
+        String secret = "JBSWY3DPEHPK3PXP";
+        for (long step = 50_000_000; step < 50_001_000; step++) {
+            assertEquals(legacyTotpCode(secret, step), String.format("%06d", engine.generate(secret, step)));
+        }
+    }
+
+    @Test
+    public void testVerifyAgreesWithPreviousImplementation() {
+        TotpEngine engine = new TotpEngine("SHA1", 6, 30, 1, 100);
+        String secret = "JBSWY3DPEHPK3PXP";
+        for (long step = 50_000_000; step < 50_000_200; step++) {
+            // Codes from the drift window and just outside it, plus one that is almost never valid
+            for (long codeStep = step - 2; codeStep <= step + 2; codeStep++) {
+                String code = legacyTotpCode(secret, codeStep);
+                boolean legacy = legacyVerify(secret, code, step);
+                long matched = engine.verify(secret, code, step * 30_000);
+                assertEquals(legacy, matched != TotpEngine.NO_MATCH, "code for step " + codeStep + " at step " + step);
+            }
+            assertEquals(legacyVerify(secret, "000000", step), engine.verify(secret, "000000", step * 30_000) != TotpEngine.NO_MATCH);
+        }
+    }
+
+    private static boolean legacyVerify(String secret, String code, long currentTimeStep) {
+        for (int i = -1; i <= 1; i++) {
+            if (code.equals(legacyTotpCode(secret, currentTimeStep + i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The implementation TwoFactorService used before TotpEngine
+    private static String legacyTotpCode(String secret, long timeStep) {
+        try {
+            byte[] key = new Base32().decode(secret);
+            ByteBuffer buffer = ByteBuffer.allocate(8);
+            buffer.putLong(timeStep);
+            Mac mac = Mac.getInstance("HmacSHA1");
+            mac.init(new SecretKeySpec(key, "HmacSHA1"));
+            byte[] hash = mac.doFinal(buffer.array());
+            int offset = hash[hash.length - 1] & 0x0F;
+            int binary = ((hash[offset] & 0x7F) << 24) |
+                        ((hash[offset + 1] & 0xFF) << 16) |
+                        ((hash[offset + 2] & 0xFF) << 8) |
+                        (hash[offset + 3] & 0xFF);
+            return String.format("%06d", binary % 1000000);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
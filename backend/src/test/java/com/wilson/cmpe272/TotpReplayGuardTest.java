@@ -0,0 +1,71 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.entity.User;
+import com.wilson.cmpe272.repository.UserRepository;
+import com.wilson.cmpe272.service.TotpEngine;
+import com.wilson.cmpe272.service.TwoFactorService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:totp-replay;DB_CLOSE_DELAY=-1",
+    "totp.replay-guard.mode=cluster"
+})
+public class TotpReplayGuardTest {
+
+    private static final String SECRET = "JBSWY3DPEHPK3PXP";
+
+    private static final TotpEngine ENGINE = new TotpEngine("SHA1", 6, 30, 1, 10);
+
+    @Autowired
+    private TwoFactorService twoFactorService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    public void testCodeIsAcceptedOnceAndPersisted() {
+        User user = saveUser("replay@example.com");
+        long step = ENGINE.currentStep(System.currentTimeMillis());
+
+        assertTrue(twoFactorService.verifyTotpCode(user, code(step)));
+        assertFalse(twoFactorService.verifyTotpCode(user, code(step)));
+
+        // Recorded in the database as part of accepting the code
+        Long persisted = userRepository.findLastTotpStepById(user.getId());
+        assertNotNull(persisted);
+        assertTrue(persisted >= step - 1 && persisted <= step + 1);
+
+        // Regular entity saves (e.g. from a stale cached copy) never move it
+        user.setLastLoginAt(java.time.LocalDateTime.now());
+        userRepository.save(user);
+        assertEquals(persisted, userRepository.findLastTotpStepById(user.getId()));
+    }
+
+    @Test
+    public void testStepAcceptedOnAnotherNodeIsRejectedForTrackedUser() {
+        User user = saveUser("replay-cluster@example.com");
+        long step = ENGINE.currentStep(System.currentTimeMillis());
+
+        // This node has already seen the user, so only the database knows about the other node's login
+        assertTrue(twoFactorService.verifyTotpCode(user, code(step - 1)));
+        assertEquals(1, userRepository.advanceLastTotpStep(user.getId(), step));
+
+        assertFalse(twoFactorService.verifyTotpCode(user, code(step)));
+        assertEquals(step, userRepository.findLastTotpStepById(user.getId()));
+    }
+
+    private User saveUser(String email) {
+        User user = new User(email, "encoded-password");
+        user.setTwoFactorMethod(User.TwoFactorMethod.AUTHENTICATOR_APP);
+        user.setTwoFactorSecret(SECRET);
+        return userRepository.save(user);
+    }
+
+    private static String code(long step) {
+        return String.format("%06d", ENGINE.generate(SECRET, step));
+    }
+}
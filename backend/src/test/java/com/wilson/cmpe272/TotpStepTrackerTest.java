@@ -0,0 +1,111 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.service.TotpStepTracker;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TotpStepTrackerTest {
+
+    @Test
+    public void testRejectsReusedAndOlderSteps() {
+        TotpStepTracker tracker = new TotpStepTracker();
+        assertTrue(tracker.tryAccept(1L, 100, -1));
+        assertFalse(tracker.tryAccept(1L, 100, -1));
+        assertFalse(tracker.tryAccept(1L, 99, -1));
+        assertTrue(tracker.tryAccept(1L, 101, -1));
+        assertTrue(tracker.tryAccept(2L, 100, -1));
+
+        // A floor loaded from elsewhere blocks steps up to it for users without an entry
+        assertFalse(tracker.tryAccept(3L, 50, 50));
+        assertTrue(tracker.tryAccept(3L, 51, 50));
+    }
+
+    @Test
+    public void testPurgeOnlyDropsIdleUsers() {
+        TotpStepTracker tracker = new TotpStepTracker();
+        tracker.tryAccept(1L, 10, -1);
+        tracker.tryAccept(2L, 20, -1);
+        assertEquals(1, tracker.purgeOlderThan(15));
+        assertFalse(tracker.contains(1L));
+        assertTrue(tracker.contains(2L));
+        assertFalse(tracker.tryAccept(2L, 20, -1));
+    }
+
+    // Many threads submitting the same codes for a small set of accounts while eviction retires idle users
+    // concurrently; every (user, step) must be accepted at most once
+    @Test
+    public void testConcurrentAcceptanceIsExactlyOnce() throws Exception {
+        TotpStepTracker tracker = new TotpStepTracker();
+        int threads = 8;
+        int users = 1_000;
+        int steps = 50;
+        int attemptsPerThread = 50_000;
+        // Active steps start here; idle users sit below it and are evicted throughout the run
+        long firstStep = 1_000;
+        ConcurrentHashMap<Long, Boolean> acceptedPairs = new ConcurrentHashMap<>();
+        AtomicLong duplicates = new AtomicLong();
+        AtomicLong acceptedCount = new AtomicLong();
+        AtomicLong evicted = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    long user = random.nextInt(users);
+                    // Steps advance over the run, with replays of the current and previous step mixed in
+                    long step = firstStep + (long) i * steps / attemptsPerThread - random.nextInt(2);
+                    if (tracker.tryAccept(user, step, -1)) {
+                        acceptedCount.incrementAndGet();
+                        if (acceptedPairs.putIfAbsent(user * 1_000_000 + step, Boolean.TRUE) != null) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        // Eviction below the lowest active step: idle users are added and retired while the active ones are
+        // being advanced, and a fresh active counter may be retired before its first step lands
+        futures.add(pool.submit(() -> {
+            start.await();
+            for (int i = 0; i < 1_000; i++) {
+                for (long idle = 0; idle < 100; idle++) {
+                    tracker.tryAccept(1_000_000 + idle, i % 500, -1);
+                }
+                evicted.addAndGet(tracker.purgeOlderThan(firstStep - 1));
+                Thread.yield();
+            }
+            return null;
+        }));
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        assertEquals(0, duplicates.get());
+        assertTrue(evicted.get() > 0);
+        assertTrue(acceptedCount.get() <= (long) users * (steps + 2));
+        // No accepted step was forgotten by eviction
+        for (long user = 0; user < users; user++) {
+            if (tracker.contains(user)) {
+                assertFalse(tracker.tryAccept(user, firstStep - 1, -1));
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.entity.User;
+import com.wilson.cmpe272.repository.UserRepository;
+import com.wilson.cmpe272.service.EmailService;
+import com.wilson.cmpe272.service.UserCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:user-cache-cluster;DB_CLOSE_DELAY=-1",
+    "jwt.blacklist.store=jdbc"
+})
+public class UserCacheClusterTest {
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    @Test
+    public void testClusteredNodeSeesAnotherNodesPasswordChangeAtOnce() {
+        User user = new User("clustered@example.com", "{bcrypt}original-hash");
+        user.setTwoFactorMethod(User.TwoFactorMethod.EMAIL);
+        userRepository.save(user);
+        assertEquals("{bcrypt}original-hash", userCache.findByEmail("clustered@example.com").orElseThrow().getPassword());
+
+        // Another node changes the password and suspends the account
+        jdbcTemplate.update("UPDATE users SET password = ?, status = ? WHERE email = ?",
+            "{bcrypt}changed-elsewhere", "SUSPENDED", "clustered@example.com");
+
+        User loaded = userCache.findByEmail("clustered@example.com").orElseThrow();
+        assertEquals("{bcrypt}changed-elsewhere", loaded.getPassword());
+        assertEquals(User.UserStatus.SUSPENDED, loaded.getStatus());
+        assertEquals(false, userCache.getStats().get("enabled"));
+        assertEquals(0, userCache.getStats().get("size"));
+    }
+}
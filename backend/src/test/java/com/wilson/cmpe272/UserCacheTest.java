@@ -0,0 +1,94 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.dto.VerificationRequest;
+import com.wilson.cmpe272.entity.User;
+import com.wilson.cmpe272.repository.UserRepository;
+import com.wilson.cmpe272.service.AuthService;
+import com.wilson.cmpe272.service.EmailService;
+import com.wilson.cmpe272.service.UserCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:user-cache;DB_CLOSE_DELAY=-1",
+    "user-cache.max-size=3"
+})
+public class UserCacheTest {
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    @Test
+    public void testWritesStartFromTheCommittedRowNotTheCachedCopy() {
+        User user = new User("stale@example.com", "{bcrypt}original-hash");
+        user.setTwoFactorMethod(User.TwoFactorMethod.EMAIL);
+        user.setEmailVerificationCode("111111");
+        user.setEmailVerificationExpiresAt(LocalDateTime.now().plusMinutes(5));
+        userRepository.save(user);
+        assertEquals("111111", userCache.findByEmail("stale@example.com").orElseThrow().getEmailVerificationCode());
+
+        // Another node changes the password and issues a new code after this node cached the user
+        jdbcTemplate.update("UPDATE users SET password = ?, email_verification_code = ? WHERE email = ?",
+            "{bcrypt}changed-elsewhere", "222222", "stale@example.com");
+        assertEquals("111111", userCache.findByEmail("Stale@Example.com").orElseThrow().getEmailVerificationCode());
+
+        // The code is checked against the row, not the cached copy, and the write keeps the other node's change
+        assertThrows(IllegalArgumentException.class,
+            () -> authService.verifyEmail(new VerificationRequest("stale@example.com", "111111")));
+        authService.verifyEmail(new VerificationRequest("stale@example.com", "222222"));
+        assertEquals("{bcrypt}changed-elsewhere",
+            jdbcTemplate.queryForObject("SELECT password FROM users WHERE email = ?", String.class, "stale@example.com"));
+
+        // Once committed, the cache holds the row as written
+        User cached = userCache.findByEmail("stale@example.com").orElseThrow();
+        assertEquals("{bcrypt}changed-elsewhere", cached.getPassword());
+        assertTrue(cached.getIsEmailVerified());
+        assertNull(cached.getEmailVerificationCode());
+    }
+
+    @Test
+    public void testFullCacheDropsTheLongestCachedUser() throws InterruptedException {
+        userCache.clear();
+        for (String name : new String[] {"first", "second", "third"}) {
+            userCache.put(cacheable(name + "@example.com"));
+            Thread.sleep(5);
+        }
+        // Refreshing the first user makes the second the longest cached
+        userCache.put(cacheable("first@example.com"));
+        Thread.sleep(5);
+        userCache.put(cacheable("fourth@example.com"));
+
+        long hits = (Long) userCache.getStats().get("hits");
+        for (String name : new String[] {"first", "third", "fourth"}) {
+            assertTrue(userCache.findByEmail(name + "@example.com").isPresent());
+        }
+        assertEquals(hits + 3, userCache.getStats().get("hits"));
+        assertTrue(userCache.findByEmail("second@example.com").isEmpty());
+        assertEquals(hits + 3, userCache.getStats().get("hits"));
+    }
+
+    private User cacheable(String email) {
+        User user = new User(email, "{bcrypt}hash");
+        user.setTwoFactorMethod(User.TwoFactorMethod.EMAIL);
+        return user;
+    }
+}
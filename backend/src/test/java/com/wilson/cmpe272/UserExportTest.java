@@ -0,0 +1,166 @@
+package com.wilson.cmpe272;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wilson.cmpe272.controller.AdminController;
+import com.wilson.cmpe272.entity.User;
+import com.wilson.cmpe272.repository.UserRepository;
+import com.wilson.cmpe272.service.AdminTokenFilter;
+import com.wilson.cmpe272.service.BulkUserImporter;
+import com.wilson.cmpe272.service.EmailService;
+import com.wilson.cmpe272.service.UserExporter;
+import com.wilson.cmpe272.service.UserImportReader;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.datasource.url=jdbc:h2:mem:user-export;DB_CLOSE_DELAY=-1",
+    "admin.api-token=test-admin-token",
+    "user-export.page-size=500",
+    "password-hashing.bcrypt.strength=4"
+})
+public class UserExportTest {
+
+    @Autowired
+    private UserExporter userExporter;
+
+    @Autowired
+    private BulkUserImporter bulkUserImporter;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    @Test
+    public void testExportsSafeColumnsAndIncrementalChanges() throws Exception {
+        User secretive = new User("secretive@example.com", passwordEncoder.encode("password123"));
+        secretive.setLastName("Doe, Jr.");
+        secretive.setTwoFactorMethod(User.TwoFactorMethod.AUTHENTICATOR_APP);
+        secretive.setTwoFactorSecret("JBSWY3DPEHPK3PXP");
+        secretive.setEmailVerificationCode("424242");
+        userRepository.save(secretive);
+        userRepository.save(new User("plain@example.com", passwordEncoder.encode("password123")));
+        // Everything so far was written well before the export, outside the watermark overlap
+        jdbcTemplate.update("UPDATE users SET updated_at = ?", Timestamp.valueOf(LocalDateTime.now().minusHours(1)));
+
+        assertEquals(403, restTemplate.getForEntity("/api/admin/users/export", String.class).getStatusCode().value());
+
+        ResponseEntity<String> full = export("/api/admin/users/export");
+        assertEquals(200, full.getStatusCode().value());
+        assertTrue(full.getHeaders().getContentType().toString().startsWith("application/x-ndjson"));
+        String body = full.getBody();
+        assertFalse(body.contains("JBSWY3DPEHPK3PXP"), "TOTP secret must not be exported");
+        assertFalse(body.contains("424242"), "verification code must not be exported");
+        assertFalse(body.contains("$2"), "password hash must not be exported");
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            rows.add(objectMapper.readTree(line));
+        }
+        // The trailer closes a complete export
+        JsonNode trailer = rows.remove(rows.size() - 1);
+        assertTrue(trailer.get("exportComplete").asBoolean());
+        assertEquals(userRepository.count(), trailer.get("rows").asLong());
+        assertEquals(userRepository.count(), rows.size());
+        JsonNode exported = rows.stream().filter(row -> row.get("email").asText().equals("secretive@example.com")).findFirst().orElseThrow();
+        assertEquals("AUTHENTICATOR_APP", exported.get("twoFactorMethod").asText());
+        assertFalse(exported.has("password"));
+        assertFalse(exported.has("twoFactorSecret"));
+
+        ResponseEntity<String> csv = export("/api/admin/users/export?format=csv");
+        String[] csvLines = csv.getBody().split("\n");
+        assertEquals(String.join(",", "id", "email", "firstName", "lastName", "twoFactorMethod", "twoFactorEnabled",
+            "emailVerified", "status", "createdAt", "updatedAt", "lastLoginAt"), csvLines[0]);
+        assertEquals(rows.size() + 2, csvLines.length);
+        assertEquals("#exportComplete," + rows.size(), csvLines[csvLines.length - 1]);
+        assertTrue(csv.getBody().contains(",\"Doe, Jr.\","));
+
+        // A run from the previous watermark returns only what changed since; the watermark trails the clock so
+        // writes still committing when the export started are sent again
+        String watermark = full.getHeaders().getFirst(AdminController.EXPORT_WATERMARK_HEADER);
+        assertNotNull(watermark);
+        assertTrue(LocalDateTime.parse(watermark).isBefore(LocalDateTime.now().minusSeconds(50)));
+        User changed = userRepository.findByEmail("plain@example.com").orElseThrow();
+        changed.setFirstName("Changed");
+        userRepository.save(changed);
+        String incremental = export("/api/admin/users/export?since=" + watermark).getBody();
+        String[] changedLines = incremental.split("\n");
+        assertEquals(2, changedLines.length, incremental);
+        assertEquals("Changed", objectMapper.readTree(changedLines[0]).get("firstName").asText());
+
+        assertEquals(400, export("/api/admin/users/export?format=xml").getStatusCode().value());
+    }
+
+    @Test
+    public void testStreamsExportInPages() throws Exception {
+        int rows = 2_000;
+        String hash = passwordEncoder.encode("stream-secret");
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            ndjson.append("{\"email\":\"bulk").append(i).append("@example.com\",\"passwordHash\":\"").append(hash)
+                .append("\",\"emailVerified\":true}\n");
+        }
+        bulkUserImporter.importUsers(new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)),
+            UserImportReader.Format.NDJSON, false);
+        long total = userRepository.count();
+
+        long[] bytes = new long[1];
+        OutputStream counter = new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytes[0]++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                bytes[0] += len;
+            }
+        };
+        long exported = userExporter.export(counter, UserImportReader.Format.NDJSON, null);
+
+        assertEquals(total, exported);
+        assertTrue(bytes[0] > 0);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> lastExport = (Map<String, Object>) userExporter.getStats().get("lastExport");
+        assertEquals((int) ((total + 499) / 500), lastExport.get("pages"));
+    }
+
+    private ResponseEntity<String> export(String url) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(AdminTokenFilter.HEADER, "test-admin-token");
+        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+}
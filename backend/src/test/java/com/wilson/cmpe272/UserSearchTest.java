@@ -0,0 +1,174 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.dto.UserSearchResponse;
+import com.wilson.cmpe272.dto.UserSummary;
+import com.wilson.cmpe272.service.AdminTokenFilter;
+import com.wilson.cmpe272.service.EmailService;
+import com.wilson.cmpe272.service.UserSearchService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.datasource.url=jdbc:h2:mem:user-search;DB_CLOSE_DELAY=-1",
+    "admin.api-token=test-admin-token",
+    // The paging test walks hundreds of pages; keep the per-query log line out of the test output
+    "logging.level.com.wilson.cmpe272.service.UserSearchService=WARN"
+})
+public class UserSearchTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private static final String[] STATUSES = {"ACTIVE", "INACTIVE", "SUSPENDED"};
+
+    @Autowired
+    private UserSearchService userSearchService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    @Test
+    public void testFiltersAndPagesThroughResults() {
+        // user0000..user0999, one a minute; status by i % 3, 2FA method by i % 2, every fifth unverified
+        insertUsers("user%04d@search.test", 0, 1000);
+        insertUser("under_score@search.test", BASE.minusDays(1), "ACTIVE", "EMAIL", true);
+        insertUser("underxscore@search.test", BASE.minusDays(1), "ACTIVE", "EMAIL", true);
+
+        assertEquals(403, restTemplate.getForEntity("/api/admin/users", String.class).getStatusCode().value());
+
+        // Suspended and unverified: i % 15 == 5, newest first, across pages of 7
+        List<UserSummary> found = walk("/api/admin/users?status=suspended&emailVerified=false&limit=7");
+        List<String> expected = new ArrayList<>();
+        for (int i = 999; i >= 0; i--) {
+            if (i % 15 == 5) {
+                expected.add(String.format("user%04d@search.test", i));
+            }
+        }
+        assertEquals(expected, found.stream().map(UserSummary::getEmail).toList());
+
+        // Email prefix pages in email order
+        found = walk("/api/admin/users?emailPrefix=USER00&twoFactorMethod=AUTHENTICATOR_APP&limit=30");
+        assertEquals(50, found.size());
+        assertEquals("user0001@search.test", found.get(0).getEmail());
+        assertEquals("user0099@search.test", found.get(49).getEmail());
+
+        // '_' is matched literally, not as a wildcard
+        found = walk("/api/admin/users?emailPrefix=under_");
+        assertEquals(List.of("under_score@search.test"), found.stream().map(UserSummary::getEmail).toList());
+
+        found = walk("/api/admin/users?createdFrom=2024-01-01T01:40:00&createdTo=2024-01-01T03:20:00&limit=200");
+        assertEquals(100, found.size());
+        assertEquals("user0199@search.test", found.get(0).getEmail());
+        assertEquals("user0100@search.test", found.get(99).getEmail());
+
+        assertEquals(400, get("/api/admin/users?status=DELETED").getStatusCode().value());
+        assertEquals(400, get("/api/admin/users?createdFrom=yesterday").getStatusCode().value());
+        assertEquals(400, get("/api/admin/users?cursor=not-a-cursor").getStatusCode().value());
+        String emailCursor = search("/api/admin/users?emailPrefix=user&limit=1").get("nextCursor").toString();
+        assertEquals(400, get("/api/admin/users?cursor=" + emailCursor).getStatusCode().value());
+    }
+
+    // Two rows share every created_at, so page boundaries regularly fall between equal timestamps
+    @Test
+    public void testKeysetPagesVisitEveryRowOnce() {
+        insertUsers("deep%05d@search.test", 0, 3_000);
+        insertUsers("tied%05d@search.test", 0, 3_000);
+        try {
+            UserSearchService.Criteria active = UserSearchService.Criteria.parse(null, "ACTIVE", null, null, null, null);
+
+            List<UserSummary> seen = new ArrayList<>();
+            String cursor = null;
+            do {
+                UserSearchResponse page = userSearchService.search(active, cursor, 20);
+                seen.addAll(page.getUsers());
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            long expectedActive = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE status = 'ACTIVE'", Long.class);
+            assertEquals(expectedActive, seen.size());
+            assertEquals(seen.size(), seen.stream().map(UserSummary::getId).distinct().count());
+            for (int i = 1; i < seen.size(); i++) {
+                UserSummary previous = seen.get(i - 1);
+                UserSummary current = seen.get(i);
+                int byCreatedAt = previous.getCreatedAt().compareTo(current.getCreatedAt());
+                assertTrue(byCreatedAt > 0 || byCreatedAt == 0 && previous.getId() > current.getId(),
+                    "out of order at " + i + ": " + previous.getEmail() + " then " + current.getEmail());
+            }
+        } finally {
+            // Leave only the other test's rows behind, whichever runs first
+            jdbcTemplate.update("DELETE FROM users WHERE email LIKE 'deep%' OR email LIKE 'tied%'");
+        }
+    }
+
+    private List<UserSummary> walk(String url) {
+        List<UserSummary> found = new ArrayList<>();
+        String cursor = null;
+        do {
+            String separator = url.contains("?") ? "&" : "?";
+            ResponseEntity<UserSearchResponse> page = restTemplate.exchange(
+                cursor == null ? url : url + separator + "cursor=" + cursor,
+                HttpMethod.GET, new HttpEntity<>(adminHeaders()), UserSearchResponse.class);
+            assertEquals(200, page.getStatusCode().value());
+            found.addAll(page.getBody().getUsers());
+            cursor = page.getBody().getNextCursor();
+        } while (cursor != null);
+        return found;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> search(String url) {
+        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(adminHeaders()), Map.class).getBody();
+    }
+
+    private ResponseEntity<String> get(String url) {
+        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(adminHeaders()), String.class);
+    }
+
+    private HttpHeaders adminHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(AdminTokenFilter.HEADER, "test-admin-token");
+        return headers;
+    }
+
+    private void insertUsers(String emailPattern, int from, int to) {
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            batch.add(row(String.format(emailPattern, i), BASE.plusMinutes(i), STATUSES[i % 3],
+                i % 2 == 0 ? "EMAIL" : "AUTHENTICATOR_APP", i % 5 != 0));
+        }
+        jdbcTemplate.batchUpdate(INSERT, batch);
+    }
+
+    private void insertUser(String email, LocalDateTime createdAt, String status, String twoFactorMethod, boolean verified) {
+        jdbcTemplate.update(INSERT, row(email, createdAt, status, twoFactorMethod, verified));
+    }
+
+    private static final String INSERT = "INSERT INTO users (email, password, status, two_factor_method, "
+        + "is_email_verified, is_two_factor_enabled, security_version, created_at, updated_at) VALUES (?, ?, ?, ?, ?, FALSE, 0, ?, ?)";
+
+    private static Object[] row(String email, LocalDateTime createdAt, String status, String twoFactorMethod, boolean verified) {
+        Timestamp timestamp = Timestamp.valueOf(createdAt);
+        return new Object[] {email, "{noop}unused", status, twoFactorMethod, verified, timestamp, timestamp};
+    }
+}
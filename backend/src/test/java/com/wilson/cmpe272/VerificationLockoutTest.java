@@ -0,0 +1,163 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.dto.VerificationRequest;
+import com.wilson.cmpe272.entity.User;
+import com.wilson.cmpe272.repository.UserRepository;
+import com.wilson.cmpe272.service.AuthService;
+import com.wilson.cmpe272.service.TooManyRequestsException;
+import com.wilson.cmpe272.service.UserCache;
+import com.wilson.cmpe272.service.VerificationAttemptTracker;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:verification-lockout;DB_CLOSE_DELAY=-1",
+    "verification.lockout.max-failures=3",
+    "verification.lockout.invalidate-code=true"
+})
+public class VerificationLockoutTest {
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserCache userCache;
+
+    @MockitoSpyBean
+    private UserRepository userRepository;
+
+    @Test
+    public void testLockoutsEscalateAndExpire() {
+        VerificationAttemptTracker tracker = new VerificationAttemptTracker(3, 60_000, 1_000, 4_000, 100);
+        long now = 1_000_000;
+        assertEquals(VerificationAttemptTracker.GRANTED, tracker.reserve("a", now));
+        assertEquals(VerificationAttemptTracker.GRANTED, tracker.reserve("a", now + 1));
+        assertFalse(tracker.isExhausted("a", now + 1));
+        assertEquals(VerificationAttemptTracker.GRANTED, tracker.reserve("a", now + 2));
+        assertTrue(tracker.isExhausted("a", now + 2));
+        // The attempt after the last allowed one is refused and starts the lockout
+        assertEquals(now + 3 + 1_000, tracker.reserve("a", now + 3));
+        assertEquals(999, tracker.remainingLockoutMillis("a", now + 4));
+        assertEquals(VerificationAttemptTracker.REFUSED, tracker.reserve("a", now + 5));
+
+        // Second round locks for twice as long, then the cap applies
+        long later = now + 2_000;
+        reserve(tracker, "a", later, 3);
+        assertEquals(later + 2_000, tracker.reserve("a", later));
+        later += 3_000;
+        reserve(tracker, "a", later, 3);
+        tracker.reserve("a", later);
+        later += 5_000;
+        reserve(tracker, "a", later, 3);
+        assertEquals(later + 4_000, tracker.reserve("a", later));
+
+        // A correct code gives the attempts back
+        reserve(tracker, "c", now, 3);
+        tracker.recordSuccess("c");
+        assertEquals(VerificationAttemptTracker.GRANTED, tracker.reserve("c", now + 1));
+
+        // Attempts spread wider than the window never lock
+        assertEquals(VerificationAttemptTracker.GRANTED, tracker.reserve("b", now));
+        assertEquals(VerificationAttemptTracker.GRANTED, tracker.reserve("b", now + 30_000));
+        assertEquals(VerificationAttemptTracker.GRANTED, tracker.reserve("b", now + 61_000));
+        assertEquals(VerificationAttemptTracker.GRANTED, tracker.reserve("b", now + 62_000));
+
+        assertEquals(3, tracker.purgeExpired(now + 200_000));
+        assertEquals(0, tracker.remainingLockoutMillis("b", now + 200_000));
+    }
+
+    @Test
+    public void testParallelGuessesAreCountedBeforeTheCodeIsChecked() throws Exception {
+        User user = new User("parallel@example.com", "encoded-password");
+        user.setTwoFactorMethod(User.TwoFactorMethod.EMAIL);
+        user.setIsTwoFactorEnabled(true);
+        user.setEmailVerificationCode("123456");
+        user.setEmailVerificationExpiresAt(LocalDateTime.now().plusMinutes(5));
+        userRepository.save(user);
+
+        int guesses = 12;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(guesses);
+        try {
+            List<Future<Class<?>>> outcomes = new ArrayList<>();
+            for (int i = 0; i < guesses; i++) {
+                String code = String.format("%06d", 900_000 + i);
+                outcomes.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        authService.completeLogin(request("parallel@example.com", code));
+                        return null;
+                    } catch (RuntimeException e) {
+                        return e.getClass();
+                    }
+                }));
+            }
+            start.countDown();
+            int refused = 0;
+            for (Future<Class<?>> outcome : outcomes) {
+                if (outcome.get(30, TimeUnit.SECONDS) == TooManyRequestsException.class) {
+                    refused++;
+                }
+            }
+            // Only max-failures guesses reach the code check, however many arrive together
+            assertEquals(guesses - 3, refused);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLockedAccountIsRejectedWithoutDatabaseAccess() {
+        User user = new User("lockout@example.com", "encoded-password");
+        user.setTwoFactorMethod(User.TwoFactorMethod.EMAIL);
+        user.setIsTwoFactorEnabled(true);
+        user.setEmailVerificationCode("123456");
+        user.setEmailVerificationExpiresAt(LocalDateTime.now().plusMinutes(5));
+        userRepository.save(user);
+        userCache.evict(user.getEmail());
+
+        for (String code : new String[] {"000001", "000002", "000003"}) {
+            assertThrows(RuntimeException.class, () -> authService.completeLogin(request("lockout@example.com", code)));
+        }
+        // Using up the attempts burned the outstanding code
+        assertNull(userRepository.findByEmail("lockout@example.com").orElseThrow().getEmailVerificationCode());
+
+        userCache.evict(user.getEmail());
+        clearInvocations(userRepository);
+        TooManyRequestsException e = assertThrows(TooManyRequestsException.class,
+            () -> authService.completeLogin(request("lockout@example.com", "123456")));
+        assertTrue(e.getRetryAfterSeconds() > 0 && e.getRetryAfterSeconds() <= 60);
+        // The lockout covers every verification endpoint and ignores case
+        assertThrows(TooManyRequestsException.class, () -> authService.verifyEmail(request("Lockout@Example.com", "123456")));
+        verify(userRepository, never()).findByEmail(anyString());
+        verify(userRepository, never()).findByEmailForUpdate(anyString());
+    }
+
+    private void reserve(VerificationAttemptTracker tracker, String account, long now, int times) {
+        for (int i = 0; i < times; i++) {
+            assertEquals(VerificationAttemptTracker.GRANTED, tracker.reserve(account, now));
+        }
+    }
+
+    private VerificationRequest request(String email, String code) {
+        VerificationRequest request = new VerificationRequest();
+        request.setEmail(email);
+        request.setCode(code);
+        return request;
+    }
+}
@@ -0,0 +1,132 @@
+package com.wilson.cmpe272;
+
+import com.wilson.cmpe272.service.EmailDispatcher;
+import com.wilson.cmpe272.service.ReusableState;
+import com.wilson.cmpe272.service.TokenDigest;
+import com.wilson.cmpe272.service.VirtualThreadPinningMonitor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:virtualthreads;DB_CLOSE_DELAY=-1",
+    "spring.threads.virtual.enabled=true",
+    "virtual-threads.pinning.threshold-ms=10"
+})
+public class VirtualThreadsTest {
+
+    @Autowired
+    private EmailDispatcher emailDispatcher;
+
+    @Autowired
+    private VirtualThreadPinningMonitor pinningMonitor;
+
+    @MockitoBean
+    private JavaMailSender mailSender;
+
+    // Jakarta Mail holds monitors during the SMTP exchange, so a virtual caller must not run it itself
+    @Test
+    public void testMailFromVirtualThreadIsSentOnPlatformThread() throws Exception {
+        AtomicReference<Thread> sender = new AtomicReference<>();
+        doAnswer(invocation -> {
+            sender.set(Thread.currentThread());
+            return null;
+        }).when(mailSender).send(any(SimpleMailMessage.class));
+
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo("virtual@example.com");
+        message.setSubject("Test");
+        message.setText("Body");
+        Thread caller = Thread.ofVirtual().start(() -> emailDispatcher.deliver(message, "Test email"));
+        caller.join(5000);
+
+        assertNotNull(sender.get());
+        assertFalse(sender.get().isVirtual());
+        assertTrue(sender.get().getName().startsWith("email-transport-"));
+        assertEquals(1L, emailDispatcher.getStats().get("offloadedSends"));
+    }
+
+    @Test
+    public void testPinningIsReported() throws Exception {
+        assertTrue(pinningMonitor.isRunning());
+        Object lock = new Object();
+        Thread pinned = Thread.ofVirtual().start(() -> {
+            synchronized (lock) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        pinned.join();
+
+        // JFR hands events to the stream about once a second
+        long deadline = System.currentTimeMillis() + 15000;
+        while ((long) pinningMonitor.getStats().get("pinnedEvents") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        Map<String, Object> stats = pinningMonitor.getStats();
+        assertTrue((long) stats.get("pinnedEvents") >= 1);
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> sites = (List<Map<String, Object>>) stats.get("worstSites");
+        assertTrue(sites.stream().anyMatch(site -> ((String) site.get("location")).startsWith(VirtualThreadsTest.class.getName())));
+    }
+
+    // Virtual threads are created per request, so per-call scratch state must come from a bounded pool
+    @Test
+    public void testScratchStateIsPooledOnVirtualThreads() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        ReusableState<int[]> state = new ReusableState<>(() -> {
+            created.incrementAndGet();
+            return new int[1];
+        });
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++) {
+                futures.add(pool.submit(() -> {
+                    int[] counter = state.acquire();
+                    try {
+                        counter[0]++;
+                    } finally {
+                        state.release(counter);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        // One instance per stripe, plus one for each borrower that found its stripe taken
+        assertTrue(created.get() < 1_000, "created " + created.get());
+
+        // Pooled instances give the same results as per-thread ones
+        TokenDigest expected = TokenDigest.of("pooled-token");
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<TokenDigest>> digests = new ArrayList<>();
+            for (int i = 0; i < 1_000; i++) {
+                digests.add(pool.submit(() -> TokenDigest.of("pooled-token")));
+            }
+            for (Future<TokenDigest> digest : digests) {
+                assertEquals(expected, digest.get());
+            }
+        }
+    }
+}
@@ -47,7 +47,8 @@ const Login: React.FC = () => {
       navigate('/verify-login', { 
         state: { 
           email: formData.email,
-          twoFactorMethod: response.twoFactorMethod 
+          twoFactorMethod: response.twoFactorMethod,
+          challenge: response.challenge
         } 
       });
     } catch (err: any) {
@@ -29,6 +29,7 @@ const VerifyLogin: React.FC = () => {
   // Get email and 2FA method from navigation state
   const email = location.state?.email || '';
   const twoFactorMethod = location.state?.twoFactorMethod || TwoFactorMethod.EMAIL;
+  const challenge = location.state?.challenge;
   const [code, setCode] = useState('');
   const [error, setError] = useState('');
   const [loading, setLoading] = useState(false);
@@ -79,7 +80,7 @@ const VerifyLogin: React.FC = () => {
     setLoading(true);
     try {
       // Step 2: Verify login - this will verify the code and return JWT token
-      const response = await authService.verifyLogin(email, code);
+      const response = await authService.verifyLogin(email, code, challenge);
       
       if (response.token) {
         logger.info('Verification successful, logging in', { email });
@@ -42,10 +42,11 @@ export const authService = {
     }
   },
 
-  async verifyLogin(email: string, code: string): Promise<AuthResponse> {
+  async verifyLogin(email: string, code: string, challenge?: string): Promise<AuthResponse> {
     logger.info('Completing login', { email });
     try {
-      const response = await api.post<AuthResponse>('/login-verify', { email, code });
+      // challenge is only returned by /login when the backend issues signed login challenges
+      const response = await api.post<AuthResponse>('/login-verify', { email, code, challenge });
       logger.info('Login completed successfully', { email });
       return response.data;
     } catch (error) {
@@ -24,6 +24,7 @@ export interface AuthResponse {
   requiresTwoFactor?: boolean;
   message?: string;
   qrCode?: string;
+  challenge?: string;
 }
 
 export interface SignupData {